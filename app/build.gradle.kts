@@ -10,6 +10,8 @@ plugins {
     // Apply the application plugin to add support for building a CLI application in Java.
     application
     id("io.freefair.lombok") version "8.0.1"
+    // Microbenchmarks in src/jmh, run with 'gradle jmh'
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 repositories {
@@ -32,9 +34,34 @@ java {
 application {
     // Define the main class for the application.
     mainClass.set("fifiore.logmonitoring.Main")
+    // gradle run -Pjfr: flight recording with the default JDK settings and the monitoring
+    // events, written to build/monitoring.jfr at exit
+    if (project.hasProperty("jfr")) {
+        applicationDefaultJvmArgs = listOf("-XX:StartFlightRecording:settings=default,"
+                + "settings=$projectDir/src/main/resources/logmonitoring.jfc,"
+                + "filename=${layout.buildDirectory.file("monitoring.jfr").get().asFile}")
+    }
+}
+
+// Synthetic access log for load tests: gradle -q generate --args="-lines=1000000" | gradle run
+tasks.register<JavaExec>("generate") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("fifiore.logmonitoring.Generator")
+}
+
+// Columnar log replayed without parsing text: gradle convert --args="Log_File.txt logs.lmc"
+tasks.register<JavaExec>("convert") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("fifiore.logmonitoring.Converter")
 }
 
 tasks.named<Test>("test") {
     // Use JUnit Platform for unit tests.
     useJUnitPlatform()
 }
+
+jmh {
+    // Report the allocation rate next to the throughput
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
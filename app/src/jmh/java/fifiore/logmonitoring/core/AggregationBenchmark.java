@@ -0,0 +1,63 @@
+package fifiore.logmonitoring.core;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// MetricsTracking.pushLog and Alerting.pushLog on parsed logs
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationBenchmark {
+
+    private static final int LOG_COUNT = 100_000;
+
+    private TrafficLog[] logs;
+    private MetricsTracking metricsTracking;
+    private Alerting alerting;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        logs = BenchmarkData.logs(LOG_COUNT);
+        metricsTracking = new MetricsTracking(new BenchmarkData.DiscardPipe<>(), 10, 4);
+        alerting = new Alerting(new BenchmarkData.DiscardPipe<>(), 120, 4);
+    }
+
+    // Each invocation replays the logs after the previous ones
+    @Setup(Level.Invocation)
+    public void shiftDates() {
+        long span = logs[LOG_COUNT - 1].getDate() - logs[0].getDate() + 10;
+        for (TrafficLog log : logs) {
+            log.setDate(log.getDate() + span);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOG_COUNT)
+    public void metricsTracking() {
+        for (TrafficLog log : logs) {
+            metricsTracking.pushLog(log);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOG_COUNT)
+    public void alerting() {
+        for (TrafficLog log : logs) {
+            alerting.pushLog(log);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package fifiore.logmonitoring.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Optional;
+
+// Generated inputs shared by the benchmarks
+final class BenchmarkData {
+
+    private BenchmarkData() {}
+
+    // High rate so that the windows hold many logs, without bursts
+    private static GeneratorOptions options(long lineCount) {
+        GeneratorOptions options = new GeneratorOptions();
+        options.setLineCount(lineCount);
+        options.setRate(100);
+        options.setHostCount(200);
+        options.setBurstPeriod(0);
+        return options;
+    }
+
+    static byte[] csv(int lineCount) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try {
+            new LogGenerator(options(lineCount)).write(stream);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return stream.toByteArray();
+    }
+
+    static void writeCsv(Path file, long lineCount) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file)) {
+            new LogGenerator(options(lineCount)).write(stream);
+        }
+    }
+
+    static TrafficLog[] logs(int count) {
+        ByteCsvLogReader reader =
+                new ByteCsvLogReader(new ByteArrayInputStream(csv(count)), ',');
+        TrafficLog[] logs = new TrafficLog[count];
+        for (int i = 0; i < count; i++) {
+            logs[i] = reader.getLine().orElseThrow();
+        }
+        return logs;
+    }
+
+    // Pipe dropping the messages, to measure the producer alone
+    static class DiscardPipe<T> implements Pipe<T> {
+        @Override
+        public void push(T message) {
+            // Dropped
+        }
+
+        @Override
+        public Optional<T> read() {
+            return Optional.empty();
+        }
+
+        @Override
+        public int drainTo(Collection<? super T> batch, int maxCount) {
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package fifiore.logmonitoring.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Messages pushed by the benchmark thread and read by a consumer thread
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChannelBenchmark {
+
+    private static final int MESSAGE_COUNT = 100_000;
+    private static final int BATCH_SIZE = 1 << 10;
+
+    @Param({"QUEUE", "RING"})
+    public MonitoringOptions.ChannelType channelType;
+
+    private final TrafficLog message = new TrafficLog();
+    private final AtomicLong readCount = new AtomicLong();
+    private long pushedCount = 0;
+    private Pipe<TrafficLog> pipe;
+    private CompletableFuture<Void> consumer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pipe = channelType == MonitoringOptions.ChannelType.RING
+                ? new RingBufferChannel<>(1 << 14, WaitStrategy.YIELD)
+                : new MessageChannel<>();
+        consumer = CompletableFuture.runAsync(this::consume);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pipe.close();
+        consumer.join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public void pushRead() {
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            pipe.push(message);
+        }
+        // Wait for the consumer so that the invocation measures the whole transfer
+        pushedCount += MESSAGE_COUNT;
+        while (readCount.get() < pushedCount) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void consume() {
+        List<TrafficLog> batch = new ArrayList<>(BATCH_SIZE);
+        int count = pipe.drainTo(batch, BATCH_SIZE);
+        while (count >= 0) {
+            readCount.addAndGet(count);
+            batch.clear();
+            count = pipe.drainTo(batch, BATCH_SIZE);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package fifiore.logmonitoring.core;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Parsing of a line by the split and the bytes parsers, and reading of the same log
+// converted into the columnar format
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvParserBenchmark {
+
+    private static final int LINE_COUNT = 100_000;
+
+    private byte[] input;
+    private Path columnarFile;
+
+    @Setup
+    public void setup() throws IOException {
+        input = BenchmarkData.csv(LINE_COUNT);
+        columnarFile = Files.createTempFile("benchmark", ".lmc");
+        columnarFile.toFile().deleteOnExit();
+        try (OutputStream stream = Files.newOutputStream(columnarFile)) {
+            LogConverter.convert(new ByteCsvLogReader(new ByteArrayInputStream(input), ','),
+                    stream);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINE_COUNT)
+    public void split(Blackhole blackhole) {
+        readAll(new CsvLogReader(new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(input))), ','), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINE_COUNT)
+    public void bytes(Blackhole blackhole) {
+        readAll(new ByteCsvLogReader(new ByteArrayInputStream(input), ','), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINE_COUNT)
+    public void columnar(Blackhole blackhole) {
+        readAll(new ColumnarLogReader(columnarFile), blackhole);
+    }
+
+    private void readAll(LogReader reader, Blackhole blackhole) {
+        Optional<TrafficLog> log = reader.getLine();
+        while (log.isPresent()) {
+            blackhole.consume(log.get());
+            log = reader.getLine();
+        }
+    }
+}
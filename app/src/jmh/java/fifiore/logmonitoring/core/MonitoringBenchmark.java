@@ -0,0 +1,63 @@
+package fifiore.logmonitoring.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Complete run of Monitoring.execute on a generated file
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class MonitoringBenchmark {
+
+    @Param({"1000000", "100000000"})
+    public long lineCount;
+
+    @Param({"SPLIT", "BYTES"})
+    public MonitoringOptions.ParserMode parserMode;
+
+    private Path inputFile;
+    private PrintStream standardOutput;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        inputFile = Files.createTempFile("monitoring-benchmark", ".csv");
+        BenchmarkData.writeCsv(inputFile, lineCount);
+        // The displayed metrics are not measured
+        standardOutput = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(standardOutput);
+        Files.deleteIfExists(inputFile);
+    }
+
+    @Benchmark
+    public void execute() {
+        MonitoringOptions options = new MonitoringOptions();
+        options.setInputSource(inputFile.toString());
+        options.setParserMode(parserMode);
+        new Monitoring(options).execute();
+    }
+}
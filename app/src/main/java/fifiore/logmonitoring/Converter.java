@@ -0,0 +1,17 @@
+package fifiore.logmonitoring;
+
+import fifiore.logmonitoring.core.LogConverter;
+import fifiore.logmonitoring.core.LogStream;
+
+// Converts a CSV access log into the columnar format, to replay it without parsing text
+class Converter {
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            LogStream.err("Expected arguments: input CSV file (- for the standard input) "
+                    + "and output file");
+            return;
+        }
+        new LogConverter(args[0], args[1]).execute();
+    }
+}
@@ -0,0 +1,97 @@
+package fifiore.logmonitoring;
+
+import fifiore.logmonitoring.core.GeneratorOptions;
+import fifiore.logmonitoring.core.LogGenerator;
+import fifiore.logmonitoring.core.LogStream;
+
+// Writes a synthetic access log to load test the monitoring
+class Generator {
+
+    private static final String LINES_PARAM = "-lines=";
+    private static final String START_PARAM = "-start=";
+    private static final String RATE_PARAM = "-rate=";
+    private static final String THROUGHPUT_PARAM = "-throughput=";
+    private static final String HOSTS_PARAM = "-hosts=";
+    private static final String SECTIONS_PARAM = "-sections=";
+    private static final String ZIPF_PARAM = "-zipf=";
+    private static final String ERRORS_PARAM = "-errors=";
+    private static final String JITTER_PARAM = "-jitter=";
+    private static final String BURST_PERIOD_PARAM = "-burst_period=";
+    private static final String BURST_LENGTH_PARAM = "-burst_length=";
+    private static final String BURST_FACTOR_PARAM = "-burst_factor=";
+    private static final String SEED_PARAM = "-seed=";
+
+    public static void main(String[] args) {
+        GeneratorOptions options = new GeneratorOptions();
+        boolean outputFileSet = false;
+
+        for (String arg : args) {
+            try {
+                if (arg.startsWith(LINES_PARAM)) {
+                    options.setLineCount(getLong(arg, LINES_PARAM));
+                } else if (arg.startsWith(START_PARAM)) {
+                    options.setStartDate(getLong(arg, START_PARAM));
+                } else if (arg.startsWith(RATE_PARAM)) {
+                    options.setRate(getInt(arg, RATE_PARAM));
+                } else if (arg.startsWith(THROUGHPUT_PARAM)) {
+                    options.setThroughput(getInt(arg, THROUGHPUT_PARAM));
+                } else if (arg.startsWith(HOSTS_PARAM)) {
+                    options.setHostCount(getInt(arg, HOSTS_PARAM));
+                } else if (arg.startsWith(SECTIONS_PARAM)) {
+                    options.setSectionCount(getInt(arg, SECTIONS_PARAM));
+                } else if (arg.startsWith(ZIPF_PARAM)) {
+                    options.setZipfExponent(getDouble(arg, ZIPF_PARAM));
+                } else if (arg.startsWith(ERRORS_PARAM)) {
+                    options.setErrorRate(getDouble(arg, ERRORS_PARAM));
+                } else if (arg.startsWith(JITTER_PARAM)) {
+                    options.setJitter(getInt(arg, JITTER_PARAM));
+                } else if (arg.startsWith(BURST_PERIOD_PARAM)) {
+                    options.setBurstPeriod(getInt(arg, BURST_PERIOD_PARAM));
+                } else if (arg.startsWith(BURST_LENGTH_PARAM)) {
+                    options.setBurstLength(getInt(arg, BURST_LENGTH_PARAM));
+                } else if (arg.startsWith(BURST_FACTOR_PARAM)) {
+                    options.setBurstFactor(getInt(arg, BURST_FACTOR_PARAM));
+                } else if (arg.startsWith(SEED_PARAM)) {
+                    options.setSeed(getLong(arg, SEED_PARAM));
+                } else if (!outputFileSet) {
+                    options.setOutput(arg);
+                    outputFileSet = true;
+                } else {
+                    LogStream.err("Too many arguments");
+                    return;
+                }
+            } catch (IllegalArgumentException | ArithmeticException exception) {
+                LogStream.err("Invalid argument " + arg);
+                return;
+            }
+        }
+        if (options.getRate() <= 0 || options.getHostCount() <= 0
+                || options.getSectionCount() <= 0) {
+            LogStream.err("rate, hosts and sections must be positive");
+            return;
+        }
+
+        new LogGenerator(options).execute();
+    }
+
+    // Value of a numeric argument, which can't be negative
+    private static long getLong(String arg, String param) {
+        long value = Long.parseLong(arg.substring(param.length()));
+        if (value < 0) {
+            throw new IllegalArgumentException();
+        }
+        return value;
+    }
+
+    private static int getInt(String arg, String param) {
+        return Math.toIntExact(getLong(arg, param));
+    }
+
+    private static double getDouble(String arg, String param) {
+        double value = Double.parseDouble(arg.substring(param.length()));
+        if (value < 0) {
+            throw new IllegalArgumentException();
+        }
+        return value;
+    }
+}
@@ -2,47 +2,219 @@ package fifiore.logmonitoring;
 
 import fifiore.logmonitoring.core.LogStream;
 import fifiore.logmonitoring.core.Monitoring;
+import fifiore.logmonitoring.core.MonitoringOptions;
+import fifiore.logmonitoring.core.RollupQuery;
+import fifiore.logmonitoring.core.WaitStrategy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.List;
 
 class Main {
 
     private static final String THRESHOLD_PARAM = "-alert_th=";
+    private static final String PARSER_PARAM = "-parser=";
+    private static final String INGEST_PARAM = "-ingest=";
+    private static final String THREADS_PARAM = "-threads=";
+    private static final String CHANNEL_PARAM = "-channel=";
+    private static final String WAIT_PARAM = "-wait=";
+    private static final String SHARDS_PARAM = "-shards=";
+    private static final String FAN_OUT_PARAM = "-fanout";
+    private static final String TOP_SECTIONS_PARAM = "-top_sections=";
+    private static final String HOST_TABLE_PARAM = "-host_table=";
+    private static final String OUTPUT_PARAM = "-output=";
+    private static final String FOLLOW_PARAM = "-follow";
+    private static final String MERGE_LATENESS_PARAM = "-merge_lateness=";
+    private static final String WAIT_DELAY_PARAM = "-wait_delay=";
+    private static final String ALLOWED_LATENESS_PARAM = "-allowed_lateness=";
+    private static final String STATS_PARAM = "-stats=";
+    private static final String HTTP_PARAM = "-http=";
+    private static final String CHECKPOINT_PARAM = "-checkpoint=";
+    private static final String CHECKPOINT_INTERVAL_PARAM = "-checkpoint_interval=";
+    private static final String STORE_PARAM = "-store=";
+    private static final String STORE_PARTITION_PARAM = "-store_partition=";
+    private static final String QUERY_PARAM = "-query=";
+    private static final String FROM_PARAM = "-from=";
+    private static final String TO_PARAM = "-to=";
+    private static final String AGGREGATE_PARAM = "-aggregate";
 
-    public static void main(String[] args) {
-
-        if (args.length > 2) {
-            LogStream.err("Too many arguments");
-            return;
-        }
+    // Query dates in the local time zone of the display, the time being optional
+    private static final DateTimeFormatter QUERY_DATE_FORMAT = new DateTimeFormatterBuilder()
+            .appendPattern("yyyy/MM/dd[ HH:mm[:ss]]")
+            .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+            .parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+            .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
+            .toFormatter();
 
-        execute(args);
-    }
-
-    private static void execute(String[] args) {
-        int threshold = 0;
-        String inputFile = "-";
-
-        if (args.length > 0) {
-            if (args[0].startsWith(THRESHOLD_PARAM)) {
-                threshold = getThreshold(args[0]);
-            } else {
-                inputFile = args[0];
-            }
-
-            if (args.length == 2) {
-                if (threshold > 0) {
-                    inputFile = args[1];
-                } else {
-                    if (args[1].startsWith(THRESHOLD_PARAM)) {
-                        threshold = getThreshold(args[1]);
-                    } else {
-                        LogStream.err("Invalid argument");
-                    }
+    public static void main(String[] args) {
+        MonitoringOptions options = new MonitoringOptions();
+        List<String> inputSources = new ArrayList<>();
+        String queryStore = null;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        boolean aggregate = false;
 
+        for (String arg : args) {
+            if (arg.startsWith(THRESHOLD_PARAM)) {
+                options.setThreshold(getThreshold(arg));
+            } else if (arg.startsWith(PARSER_PARAM)) {
+                MonitoringOptions.ParserMode parserMode = getParserMode(arg);
+                if (parserMode == null) {
+                    return;
+                }
+                options.setParserMode(parserMode);
+            } else if (arg.startsWith(INGEST_PARAM)) {
+                MonitoringOptions.IngestionMode ingestionMode = getIngestionMode(arg);
+                if (ingestionMode == null) {
+                    return;
+                }
+                options.setIngestionMode(ingestionMode);
+            } else if (arg.startsWith(THREADS_PARAM)) {
+                int threadCount = getPositiveInt(arg, THREADS_PARAM);
+                if (threadCount <= 0) {
+                    LogStream.err("Invalid threads argument");
+                    return;
+                }
+                options.setThreadCount(threadCount);
+            } else if (arg.startsWith(CHANNEL_PARAM)) {
+                MonitoringOptions.ChannelType channelType =
+                        getEnum(arg, CHANNEL_PARAM, MonitoringOptions.ChannelType.class);
+                if (channelType == null) {
+                    LogStream.err("Invalid channel argument");
+                    return;
+                }
+                options.setChannelType(channelType);
+            } else if (arg.startsWith(WAIT_PARAM)) {
+                WaitStrategy waitStrategy = getEnum(arg, WAIT_PARAM, WaitStrategy.class);
+                if (waitStrategy == null) {
+                    LogStream.err("Invalid wait argument");
+                    return;
                 }
+                options.setWaitStrategy(waitStrategy);
+            } else if (arg.startsWith(SHARDS_PARAM)) {
+                int shardCount = getPositiveInt(arg, SHARDS_PARAM);
+                if (shardCount <= 0) {
+                    LogStream.err("Invalid shards argument");
+                    return;
+                }
+                options.setShardCount(shardCount);
+            } else if (arg.equals(FAN_OUT_PARAM)) {
+                options.setFanOut(true);
+            } else if (arg.equals(FOLLOW_PARAM)) {
+                options.setFollow(true);
+            } else if (arg.startsWith(TOP_SECTIONS_PARAM)) {
+                int topSectionCount = getPositiveInt(arg, TOP_SECTIONS_PARAM);
+                if (topSectionCount <= 0) {
+                    LogStream.err("Invalid top sections argument");
+                    return;
+                }
+                options.setTopSectionCount(topSectionCount);
+            } else if (arg.startsWith(HOST_TABLE_PARAM)) {
+                int hostTableSize = getPositiveInt(arg, HOST_TABLE_PARAM);
+                if (hostTableSize <= 0) {
+                    LogStream.err("Invalid host table argument");
+                    return;
+                }
+                options.setHostTableSize(hostTableSize);
+            } else if (arg.startsWith(OUTPUT_PARAM)) {
+                MonitoringOptions.OutputFormat outputFormat =
+                        getEnum(arg, OUTPUT_PARAM, MonitoringOptions.OutputFormat.class);
+                if (outputFormat == null) {
+                    LogStream.err("Invalid output argument");
+                    return;
+                }
+                options.setOutputFormat(outputFormat);
+            } else if (arg.startsWith(MERGE_LATENESS_PARAM)) {
+                int mergeLateness = getPositiveInt(arg, MERGE_LATENESS_PARAM);
+                if (mergeLateness <= 0) {
+                    LogStream.err("Invalid merge lateness argument");
+                    return;
+                }
+                options.setMergeLateness(mergeLateness);
+            } else if (arg.startsWith(WAIT_DELAY_PARAM)) {
+                int waitDelay = getNonNegativeInt(arg, WAIT_DELAY_PARAM);
+                if (waitDelay < 0) {
+                    LogStream.err("Invalid wait delay argument");
+                    return;
+                }
+                options.setWaitDelay(waitDelay);
+            } else if (arg.startsWith(ALLOWED_LATENESS_PARAM)) {
+                int allowedLateness = getNonNegativeInt(arg, ALLOWED_LATENESS_PARAM);
+                if (allowedLateness < 0) {
+                    LogStream.err("Invalid allowed lateness argument");
+                    return;
+                }
+                options.setAllowedLateness(allowedLateness);
+            } else if (arg.startsWith(STATS_PARAM)) {
+                int statsInterval = getNonNegativeInt(arg, STATS_PARAM);
+                if (statsInterval < 0) {
+                    LogStream.err("Invalid stats interval argument");
+                    return;
+                }
+                options.setStatsInterval(statsInterval);
+            } else if (arg.startsWith(HTTP_PARAM)) {
+                options.setHttpAddress(arg.substring(HTTP_PARAM.length()));
+            } else if (arg.startsWith(CHECKPOINT_PARAM)) {
+                options.setCheckpointFile(arg.substring(CHECKPOINT_PARAM.length()));
+            } else if (arg.startsWith(CHECKPOINT_INTERVAL_PARAM)) {
+                int checkpointInterval = getPositiveInt(arg, CHECKPOINT_INTERVAL_PARAM);
+                if (checkpointInterval <= 0) {
+                    LogStream.err("Invalid checkpoint interval argument");
+                    return;
+                }
+                options.setCheckpointInterval(checkpointInterval);
+            } else if (arg.startsWith(STORE_PARAM)) {
+                options.setStoreDirectory(arg.substring(STORE_PARAM.length()));
+            } else if (arg.startsWith(STORE_PARTITION_PARAM)) {
+                MonitoringOptions.StorePartition storePartition = getEnum(arg,
+                        STORE_PARTITION_PARAM, MonitoringOptions.StorePartition.class);
+                if (storePartition == null) {
+                    LogStream.err("Invalid store partition argument");
+                    return;
+                }
+                options.setStorePartition(storePartition);
+            } else if (arg.startsWith(QUERY_PARAM)) {
+                queryStore = arg.substring(QUERY_PARAM.length());
+            } else if (arg.startsWith(FROM_PARAM)) {
+                Long date = getDate(arg, FROM_PARAM);
+                if (date == null) {
+                    LogStream.err("Invalid from argument");
+                    return;
+                }
+                from = date;
+            } else if (arg.startsWith(TO_PARAM)) {
+                Long date = getDate(arg, TO_PARAM);
+                if (date == null) {
+                    LogStream.err("Invalid to argument");
+                    return;
+                }
+                to = date;
+            } else if (arg.equals(AGGREGATE_PARAM)) {
+                aggregate = true;
+            } else if (arg.equals("-") || !arg.startsWith("-")) {
+                inputSources.add(arg);
+            } else {
+                // A mistyped parameter is not read as an input
+                LogStream.err("Unknown argument " + arg);
+                return;
             }
         }
+        if (queryStore != null) {
+            new RollupQuery(queryStore, from, to, aggregate, options.getOutputFormat())
+                    .execute();
+            return;
+        }
+        if (inputSources.size() == 1) {
+            options.setInputSource(inputSources.get(0));
+        } else if (inputSources.size() > 1) {
+            options.setInputSources(inputSources);
+        }
 
-        Monitoring monitoring = new Monitoring(inputFile, threshold);
+        Monitoring monitoring = new Monitoring(options);
         monitoring.execute();
     }
 
@@ -56,4 +228,69 @@ class Main {
         }
         return 0;
     }
+
+    private static MonitoringOptions.ParserMode getParserMode(String arg) {
+        try {
+            String mode = arg.substring(PARSER_PARAM.length());
+            return MonitoringOptions.ParserMode.valueOf(mode.toUpperCase());
+
+        } catch (Exception exception) {
+            LogStream.err("Invalid parser argument");
+        }
+        return null;
+    }
+
+    private static MonitoringOptions.IngestionMode getIngestionMode(String arg) {
+        try {
+            String mode = arg.substring(INGEST_PARAM.length());
+            return MonitoringOptions.IngestionMode.valueOf(mode.toUpperCase());
+
+        } catch (Exception exception) {
+            LogStream.err("Invalid ingestion argument");
+        }
+        return null;
+    }
+
+    // Value of a numeric argument, 0 if it is not a positive integer
+    private static int getPositiveInt(String arg, String param) {
+        try {
+            return Math.max(0, Integer.parseInt(arg.substring(param.length())));
+        } catch (NumberFormatException exception) {
+            return 0;
+        }
+    }
+
+    // Value of a numeric argument, -1 if it is not a non-negative integer
+    private static int getNonNegativeInt(String arg, String param) {
+        try {
+            return Math.max(-1, Integer.parseInt(arg.substring(param.length())));
+        } catch (NumberFormatException exception) {
+            return -1;
+        }
+    }
+
+    // Epoch seconds of a date argument, given in epoch seconds or as a local date,
+    // null if it is neither
+    private static Long getDate(String arg, String param) {
+        String value = arg.substring(param.length());
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException exception) {
+            try {
+                return LocalDateTime.parse(value, QUERY_DATE_FORMAT)
+                        .atZone(ZoneId.systemDefault()).toEpochSecond();
+            } catch (DateTimeParseException parseException) {
+                return null;
+            }
+        }
+    }
+
+    // Enum value of an argument, null if it is not a value of the enum
+    private static <E extends Enum<E>> E getEnum(String arg, String param, Class<E> type) {
+        try {
+            return Enum.valueOf(type, arg.substring(param.length()).toUpperCase());
+        } catch (IllegalArgumentException exception) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,34 @@
+package fifiore.logmonitoring.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timestamp;
+
+// JFR event of a change of the traffic alert status.
+// Disabled unless a recording uses the logmonitoring.jfc settings.
+@Name("fifiore.logmonitoring.AlertTransition")
+@Label("Traffic Alert Transition")
+@Category("Log Monitoring")
+@Description("Traffic alert raised or recovered")
+@Enabled(false)
+@StackTrace(false)
+class AlertTransitionEvent extends jdk.jfr.Event {
+
+    @Label("Alert")
+    @Description("True when the alert is raised, false when the traffic is back to normal")
+    boolean alert;
+
+    @Label("Window End")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long date;
+
+    @Label("Hits per Second")
+    int hitCountAverage;
+
+    @Label("Threshold")
+    int threshold;
+}
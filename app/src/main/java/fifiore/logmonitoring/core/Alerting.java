@@ -1,10 +1,13 @@
 package fifiore.logmonitoring.core;
 
-import java.util.TreeMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 
 class Alerting {
 
-    private final MessageChannel<TrafficAlert> outputPipe;
+    private final Pipe<TrafficAlert> outputPipe;
     private int windowSize = 0;
     private int waitDelay = 0;
     private int threshold = 10;
@@ -12,21 +15,93 @@ class Alerting {
     private boolean isOnAlert = false;
     private int cumulatedHitCount = 0;
     private boolean firstWindowComputed = false;
-
-    // TreeMap + most recent date for the moving time window
+    private long droppedLogCount = 0;
+    // Time to slide the window of each second when the statistics are enabled, else null
+    private LatencyHistogram windowTimes = null;
+    // State served by the HTTP endpoint, null if not enabled
+    private LiveState liveState = null;
+
+    // Circular buffer of hit counts per date + most recent date for the moving time window.
+    // The date of a count is at {date % capacity}.
     private long mostRecentDate = 0;
-    private final TreeMap<Long, Integer> hitCount = new TreeMap<>();
+    private final long[] hitDates;
+    private final int[] hitCount;
+
+    // Dates received before the start of the first window is known
+    private long[] firstDates = new long[64];
+    private int firstDateCount = 0;
+    private long firstDate = 0;
 
-    Alerting(MessageChannel<TrafficAlert> outputPipe, int windowSize, int waitDelay) {
+    Alerting(Pipe<TrafficAlert> outputPipe, int windowSize, int waitDelay) {
         this.outputPipe = outputPipe;
         this.windowSize = windowSize;
         this.waitDelay = waitDelay;
+        // Dates from the one exiting the window to the most recent date, see pushLog
+        this.hitDates = new long[windowSize + waitDelay + 1];
+        this.hitCount = new int[windowSize + waitDelay + 1];
     }
 
     void setTrafficAlertThreshold(int threshold) {
         this.threshold = threshold;
     }
 
+    void setWindowTimes(LatencyHistogram windowTimes) {
+        this.windowTimes = windowTimes;
+    }
+
+    void setLiveState(LiveState liveState) {
+        this.liveState = liveState;
+    }
+
+    long getDroppedLogCount() {
+        return droppedLogCount;
+    }
+
+    // State of the alert window, see Checkpoint
+    void writeState(DataOutput output) throws IOException {
+        output.writeLong(windowStartTime);
+        output.writeBoolean(isOnAlert);
+        output.writeInt(cumulatedHitCount);
+        output.writeBoolean(firstWindowComputed);
+        output.writeLong(droppedLogCount);
+        output.writeLong(mostRecentDate);
+        output.writeInt(hitDates.length);
+        for (int i = 0; i < hitDates.length; i++) {
+            output.writeLong(hitDates[i]);
+            output.writeInt(hitCount[i]);
+        }
+        output.writeLong(firstDate);
+        // Released once the first window start is known
+        int pendingDateCount = firstDates != null ? firstDateCount : 0;
+        output.writeInt(pendingDateCount);
+        for (int i = 0; i < pendingDateCount; i++) {
+            output.writeLong(firstDates[i]);
+        }
+    }
+
+    // Replaces the state with one written by writeState() with the same parameters
+    void readState(DataInput input) throws IOException {
+        windowStartTime = input.readLong();
+        isOnAlert = input.readBoolean();
+        cumulatedHitCount = input.readInt();
+        firstWindowComputed = input.readBoolean();
+        droppedLogCount = input.readLong();
+        mostRecentDate = input.readLong();
+        if (input.readInt() != hitDates.length) {
+            throw new IOException("Different alert window");
+        }
+        for (int i = 0; i < hitDates.length; i++) {
+            hitDates[i] = input.readLong();
+            hitCount[i] = input.readInt();
+        }
+        firstDate = input.readLong();
+        firstDateCount = input.readInt();
+        firstDates = 0 == windowStartTime ? new long[Math.max(64, firstDateCount)] : null;
+        for (int i = 0; i < firstDateCount; i++) {
+            firstDates[i] = input.readLong();
+        }
+    }
+
     void pushLog(TrafficLog log) {
         if (log.getDate() == 0) {
             // invalid logs are ignored
@@ -35,31 +110,76 @@ class Alerting {
         if (mostRecentDate < log.getDate()) {
             mostRecentDate = log.getDate();
         }
+        if (0 == windowStartTime) {
+            waitFirstWindowStart(log.getDate());
+            return;
+        }
+        // Windows ending before the log date don't use its count:
+        // compute them first so that its slot is free to be reused
+        computeTrafficAlert(log.getDate());
         incrementCount(log.getDate());
-        compute();
+        if (firstWindowComputed && log.getDate() >= windowStartTime - 1
+                && log.getDate() <= windowStartTime + windowSize - 2) {
+            // Late log in the last computed window: counted by the next one
+            cumulatedHitCount++;
+        }
+        computeTrafficAlert(Long.MAX_VALUE);
+    }
+
+    private void waitFirstWindowStart(long date) {
+        if (firstDateCount == firstDates.length) {
+            firstDates = Arrays.copyOf(firstDates, firstDateCount * 2);
+        }
+        firstDates[firstDateCount++] = date;
+        if (0 == firstDate || date < firstDate) {
+            firstDate = date;
+        }
+        // Wait a delay before considering the first date
+        if (mostRecentDate - firstDate < waitDelay) {
+            return;
+        }
+        windowStartTime = firstDate;
+        // Count by date order so that the buffer never holds more than the needed dates
+        Arrays.sort(firstDates, 0, firstDateCount);
+        for (int i = 0; i < firstDateCount; i++) {
+            computeTrafficAlert(firstDates[i]);
+            incrementCount(firstDates[i]);
+        }
+        firstDates = null;
+        computeTrafficAlert(Long.MAX_VALUE);
     }
 
     private void incrementCount(long date) {
-        if (hitCount.containsKey(date)) {
-            hitCount.merge(date, 1, Integer::sum);
-        } else {
-            hitCount.put(date, 1);
+        if (date < windowStartTime - 1) {
+            // Older than the date exiting the window: never used anymore
+            droppedLogCount++;
+            return;
         }
+        int index = (int) (date % hitDates.length);
+        if (hitDates[index] != date) {
+            // The slot holds an older date which is not needed anymore
+            hitDates[index] = date;
+            hitCount[index] = 0;
+        }
+        hitCount[index]++;
+    }
+
+    private int count(long date) {
+        int index = (int) (date % hitDates.length);
+        return hitDates[index] == date ? hitCount[index] : 0;
     }
 
     private boolean isCompletePeriodStored() {
-        // Wait a delay before considering the first date
-        if (0 == windowStartTime && mostRecentDate - hitCount.firstKey() >= waitDelay) {
-            windowStartTime = hitCount.firstKey();
-        }
         // We want the complete period plus a delay to compute
         long lastWindowEndDate = windowStartTime + windowSize - 1;
-        return windowStartTime != 0 && mostRecentDate - lastWindowEndDate >= waitDelay;
+        return mostRecentDate - lastWindowEndDate >= waitDelay;
     }
 
-    private void computeTrafficAlert() {
+    // Slide the window up to the windows ending before {dateLimit}
+    private void computeTrafficAlert(long dateLimit) {
 
-        while (isCompletePeriodStored()) {
+        while (isCompletePeriodStored() && windowStartTime + windowSize - 1 < dateLimit) {
+            long start = windowTimes != null ? System.nanoTime() : 0;
             // First and last date in the window
             long startDate = windowStartTime;
             long endDate = windowStartTime + windowSize - 1;
@@ -75,28 +195,29 @@ class Alerting {
                     || isOnAlert && hitCountAverage < threshold) {
                 trafficAlertStatusChanged(hitCountAverage, endDate);
             }
+            if (liveState != null) {
+                liveState.alertWindowSlid(isOnAlert, endDate, hitCountAverage, threshold);
+            }
             // Slide the window of 1 sc
             windowStartTime++;
+            if (windowTimes != null) {
+                windowTimes.record(System.nanoTime() - start);
+            }
         }
     }
 
     private void computeFirstWindow(long startDate, long endDate) {
         // First window: cumulate hits of every date received in the window
-        hitCount.entrySet().stream()
-                .filter(entry -> entry.getKey() >= startDate && entry.getKey() <= endDate)
-                .forEach(entry -> cumulatedHitCount += entry.getValue());
+        for (long date = startDate; date <= endDate; date++) {
+            cumulatedHitCount += count(date);
+        }
     }
 
     private void adaptCountToDateShift(long startDate, long endDate) {
         // Remove hit counts for the date exiting the window (1 before the window)
-        long exitingDate = startDate - 1;
-        if (hitCount.containsKey(exitingDate)) {
-            cumulatedHitCount -= hitCount.get(exitingDate);
-        }
+        cumulatedHitCount -= count(startDate - 1);
         // Add hit counts for date entering the window
-        if (hitCount.containsKey(endDate)) {
-            cumulatedHitCount += hitCount.get(endDate);
-        }
+        cumulatedHitCount += count(endDate);
     }
 
     private void trafficAlertStatusChanged(int hitCountAverage, long windowEndDate) {
@@ -104,25 +225,19 @@ class Alerting {
         TrafficAlert alert = TrafficAlert.builder().isAlert(isOnAlert)
                 .hitCountAverage(hitCountAverage).date(windowEndDate).build();
         emitAlert(alert);
-    }
-
-    private void removeOldLogs() {
-        if (hitCount.isEmpty()) {
-            return;
+        AlertTransitionEvent event = new AlertTransitionEvent();
+        if (event.shouldCommit()) {
+            event.alert = isOnAlert;
+            // Log dates are in seconds
+            event.date = windowEndDate * 1000;
+            event.hitCountAverage = hitCountAverage;
+            event.threshold = threshold;
+            event.commit();
         }
-        hitCount.entrySet().removeIf(entry -> entry.getKey() < windowStartTime - 1);
     }
 
     private void emitAlert(TrafficAlert alert) {
         outputPipe.push(alert);
     }
 
-    private void compute() {
-        if (hitCount.isEmpty()) {
-            return;
-        }
-        computeTrafficAlert();
-        removeOldLogs();
-    }
-
 }
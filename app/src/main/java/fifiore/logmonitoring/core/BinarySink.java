@@ -0,0 +1,94 @@
+package fifiore.logmonitoring.core;
+
+import java.util.Map;
+
+// Compact big-endian records for high-rate consumers:
+// int32 length of the rest of the record, byte type, then the fields of the type.
+// Strings are an int32 byte length followed by UTF-8 bytes.
+// Metrics: int64 start, int64 end, byte 1 if amended by late logs else 0, int32 hits,
+//   then if hits > 0:
+//   int32 most hit section count, int32 n, n strings (most hit sections),
+//   int32 n, n * (string section, int64 count, int64 error) (top sections),
+//   int32 count per verb (POST, GET, PUT, PATCH, DELETE),
+//   bytes summary: int64 total, float64 p50, float64 p95, float64 p99,
+//   int32 n, n * (string section, bytes summary),
+//   float64 success rate, string lowest success rate host, float64 lowest success rate,
+//   int64 distinct hosts (-1 if not estimated).
+// Alert: int64 date, byte 1 for an alert or 0 when back to normal, int32 hits.
+class BinarySink implements OutputSink {
+
+    static final byte METRICS = 1;
+    static final byte ALERT = 2;
+
+    @Override
+    public void metrics(WindowsMetrics metrics, OutputBuffer buffer) {
+        int start = startRecord(METRICS, buffer);
+        buffer.writeLong(metrics.getStartDate());
+        buffer.writeLong(metrics.getEndDate());
+        buffer.write(metrics.isAmended() ? 1 : 0);
+        buffer.writeInt(metrics.getHitNB());
+        if (metrics.getHitNB() > 0) {
+            buffer.writeInt(metrics.getMostHitSectionCount());
+            buffer.writeInt(metrics.getMostHitSections().size());
+            for (String section : metrics.getMostHitSections()) {
+                writeString(section, buffer);
+            }
+            buffer.writeInt(metrics.getTopSections().size());
+            for (SectionCount section : metrics.getTopSections()) {
+                writeString(section.getSection(), buffer);
+                buffer.writeLong(section.getCount());
+                buffer.writeLong(section.getError());
+            }
+            for (int i = 0; i < HttpVerb.Values.NONE.ordinal(); i++) {
+                buffer.writeInt(metrics.getOperationCount()[i]);
+            }
+            writeBytes(metrics.getBytes(), buffer);
+            buffer.writeInt(metrics.getBytesPerSection().size());
+            for (Map.Entry<String, BytesSummary> entry :
+                    metrics.getBytesPerSection().entrySet()) {
+                writeString(entry.getKey(), buffer);
+                writeBytes(entry.getValue(), buffer);
+            }
+            buffer.writeDouble(metrics.getSuccessRate());
+            writeString(metrics.getLowestSuccessRateHost(), buffer);
+            buffer.writeDouble(metrics.getLowestSuccessRate());
+            buffer.writeLong(metrics.getDistinctHostCount());
+        }
+        endRecord(start, buffer);
+    }
+
+    @Override
+    public void alert(TrafficAlert alert, OutputBuffer buffer) {
+        int start = startRecord(ALERT, buffer);
+        buffer.writeLong(alert.getDate());
+        buffer.write(alert.isAlert() ? 1 : 0);
+        buffer.writeInt(alert.getHitCountAverage());
+        endRecord(start, buffer);
+    }
+
+    // Position of the length, set once the record is written
+    private static int startRecord(byte type, OutputBuffer buffer) {
+        int start = buffer.size();
+        buffer.writeInt(0);
+        buffer.write(type);
+        return start;
+    }
+
+    private static void endRecord(int start, OutputBuffer buffer) {
+        buffer.setInt(start, buffer.size() - start - Integer.BYTES);
+    }
+
+    private static void writeBytes(BytesSummary bytes, OutputBuffer buffer) {
+        buffer.writeLong(bytes.getTotal());
+        buffer.writeDouble(bytes.getP50());
+        buffer.writeDouble(bytes.getP95());
+        buffer.writeDouble(bytes.getP99());
+    }
+
+    private static void writeString(String value, OutputBuffer buffer) {
+        int start = buffer.size();
+        buffer.writeInt(0);
+        buffer.writeText(value);
+        buffer.setInt(start, buffer.size() - start - Integer.BYTES);
+    }
+}
@@ -0,0 +1,155 @@
+package fifiore.logmonitoring.core;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Optional;
+
+// Reads the stream by chunks of bytes and parses the lines in place,
+// without building an intermediate String per line. The logs carry the offset of the
+// stream after their line, and the reading can start at an offset after the header.
+class ByteCsvLogReader implements LogReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte NEW_LINE = '\n';
+
+    private InputStream input;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    // Unread bytes are in [position, limit)
+    private int position = 0;
+    private int limit = 0;
+    // Stream offset of buffer[0]
+    private long bufferOffset = 0;
+    // Offset of the first line read after the header, 0 to read every line
+    private long startOffset;
+    private boolean endOfStream = false;
+    private final CsvLineParser parser;
+
+    ByteCsvLogReader(String inputSource, char delimiter) {
+        this(openInput(inputSource), delimiter);
+    }
+
+    ByteCsvLogReader(InputStream input, char delimiter) {
+        this(input, delimiter, 0);
+    }
+
+    ByteCsvLogReader(InputStream input, char delimiter, long startOffset) {
+        this.input = input;
+        this.parser = new CsvLineParser(delimiter);
+        this.startOffset = startOffset;
+    }
+
+    @Override
+    public Optional<TrafficLog> getLine() {
+        if (!parser.hasHeader()) {
+            int lineEnd = nextLineEnd();
+            if (lineEnd < 0) {
+                return Optional.empty();
+            }
+            parser.readHeader(buffer, position, lineEnd);
+            skipLine(lineEnd);
+            if (startOffset > bufferOffset + position) {
+                skipTo(startOffset);
+            }
+        }
+
+        int lineEnd = nextLineEnd();
+        if (lineEnd < 0) {
+            return Optional.empty();
+        }
+        TrafficLog log = parser.parse(buffer, position, lineEnd);
+        skipLine(lineEnd);
+        log.setOffset(bufferOffset + position);
+        return Optional.of(log);
+    }
+
+    private static InputStream openInput(String inputSource) {
+        if ("-".equals(inputSource)) {
+            return System.in;
+        }
+        try {
+            return new FileInputStream(inputSource);
+        } catch (Exception exception) {
+            LogStream.err(exception);
+        }
+        return null;
+    }
+
+    // Index of the end of the next line in the buffer (excluded), -1 at the end of the stream
+    private int nextLineEnd() {
+        int searchStart = position;
+        while (true) {
+            for (int i = searchStart; i < limit; i++) {
+                if (buffer[i] == NEW_LINE) {
+                    return i;
+                }
+            }
+            if (endOfStream) {
+                // Last line without line feed
+                return position < limit ? limit : -1;
+            }
+            searchStart = limit - position;
+            fill();
+        }
+    }
+
+    private void skipLine(int lineEnd) {
+        position = Math.min(lineEnd + 1, limit);
+    }
+
+    // Skip the bytes up to {offset}, without reading them when they are not buffered yet
+    private void skipTo(long offset) {
+        long skipped = offset - bufferOffset - position;
+        if (skipped <= limit - position) {
+            position += (int) skipped;
+            return;
+        }
+        skipped -= limit - position;
+        bufferOffset += limit;
+        position = 0;
+        limit = 0;
+        try {
+            while (skipped > 0 && input != null) {
+                long count = input.skip(skipped);
+                if (count <= 0) {
+                    break;
+                }
+                skipped -= count;
+                bufferOffset += count;
+            }
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+    }
+
+    // Move the unread bytes at the beginning of the buffer and read more bytes after them
+    private void fill() {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            bufferOffset += position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            // Line longer than the buffer
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        if (input == null) {
+            endOfStream = true;
+            return;
+        }
+        try {
+            int count = input.read(buffer, limit, buffer.length - limit);
+            if (count < 0) {
+                endOfStream = true;
+                input.close();
+            } else {
+                limit += count;
+            }
+        } catch (IOException exception) {
+            LogStream.err(exception);
+            endOfStream = true;
+        }
+    }
+}
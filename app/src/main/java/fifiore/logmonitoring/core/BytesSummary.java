@@ -0,0 +1,26 @@
+package fifiore.logmonitoring.core;
+
+import lombok.Getter;
+
+// Response bytes of a set of logs: total and estimated percentiles
+@Getter
+class BytesSummary {
+    private final long total;
+    private final double p50;
+    private final double p95;
+    private final double p99;
+
+    BytesSummary(QuantileSketch sketch) {
+        this.total = sketch.getSum();
+        this.p50 = sketch.quantile(0.5);
+        this.p95 = sketch.quantile(0.95);
+        this.p99 = sketch.quantile(0.99);
+    }
+
+    BytesSummary(long total, double p50, double p95, double p99) {
+        this.total = total;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+    }
+}
@@ -0,0 +1,21 @@
+package fifiore.logmonitoring.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event of a producer waiting for a consumer because a bounded channel is full.
+// Disabled unless a recording uses the logmonitoring.jfc settings.
+// The stack trace tells which stage is stalled.
+@Name("fifiore.logmonitoring.ChannelStall")
+@Label("Channel Stall")
+@Category("Log Monitoring")
+@Description("Producer blocked on a full channel")
+@Enabled(false)
+class ChannelStallEvent extends jdk.jfr.Event {
+
+    @Label("Capacity")
+    int capacity;
+}
@@ -0,0 +1,278 @@
+package fifiore.logmonitoring.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+import java.util.zip.CRC32;
+
+// Snapshot of the analysis state, to resume the monitoring of a file after a restart
+// without reading it again. The log worker encodes the state in memory between two
+// batches, then a background thread writes it to a temporary file renamed over the
+// previous checkpoint: a crash while writing leaves the previous checkpoint complete.
+// The input file is identified by its path, its file key and the bytes before the saved
+// offset, so that the state of a log is never restored for another file.
+// Big-endian layout: int32 magic, int32 version, int32 n, n int32 parameters of the
+// analysis, input path, input file key (empty if the file system has none), int64 offset
+// in the input file, int32 n, int64 CRC32 of the n bytes of the file before the offset,
+// state of the metrics tracking, state of the alerting, int64 CRC32 of the preceding
+// bytes. Texts are an int32 size and UTF-8 bytes.
+class Checkpoint implements AutoCloseable {
+
+    private static final int MAGIC = 0x4C4D4350; // "LMCP"
+    private static final int VERSION = 2;
+    // Bytes of the input before the offset which identify the file
+    private static final int FINGERPRINT_SIZE = 1 << 12;
+
+    private final Path path;
+    private final Path inputFile;
+    private final long interval; // ns
+    // Parameters the state depends on, the checkpoint of other parameters is not restored
+    private final int[] parameters;
+    private final ExecutorService writer;
+    // A checkpoint is being written, the periodic ones are skipped until it is done
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private long nextSaveTime;
+    // Position in the input file of an offset of the logs, in the file at the input path
+    // when its file key is null
+    private LongFunction<FollowFileInputStream.FilePosition> positions =
+            offset -> new FollowFileInputStream.FilePosition(null, offset);
+
+    // State of the {inputFile} file saved every {interval} seconds
+    Checkpoint(Path path, Path inputFile, int interval, int... parameters) {
+        this.path = path;
+        this.inputFile = inputFile.toAbsolutePath().normalize();
+        this.interval = TimeUnit.SECONDS.toNanos(interval);
+        this.parameters = parameters;
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // First saved after the first batch, a checkpoint being at most {interval} old
+        nextSaveTime = System.nanoTime();
+    }
+
+    // Offsets of the logs in a stream of several files, such as a followed file
+    void setPositions(LongFunction<FollowFileInputStream.FilePosition> positions) {
+        this.positions = positions;
+    }
+
+    // Called by the log worker once the logs before {offset} are pushed
+    void saveIfDue(long offset, MetricsTracking metricsTracking, Alerting alerting) {
+        long now = System.nanoTime();
+        if (now - nextSaveTime < 0 || !writing.compareAndSet(false, true)) {
+            return;
+        }
+        nextSaveTime = now + interval;
+        submit(offset, metricsTracking, alerting);
+    }
+
+    // Saved whatever the interval, after the checkpoint being written
+    void save(long offset, MetricsTracking metricsTracking, Alerting alerting) {
+        writing.set(true);
+        submit(offset, metricsTracking, alerting);
+    }
+
+    // Restores the state of a checkpoint of the same input file saved with the same
+    // parameters, if any. Returns the offset in the input file to resume the reading from,
+    // 0 if nothing is restored.
+    long restore(MetricsTracking metricsTracking, Alerting alerting) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            int length = bytes.length - Long.BYTES;
+            if (length < 0 || ByteBuffer.wrap(bytes, length, Long.BYTES).getLong()
+                    != checksum(bytes, length)) {
+                LogStream.err("Checkpoint corrupted, ignored");
+                return 0;
+            }
+            DataInputStream input =
+                    new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+            if (input.readInt() != MAGIC || input.readInt() != VERSION
+                    || !Arrays.equals(parameters, readParameters(input))) {
+                LogStream.err("Checkpoint of other analysis parameters, ignored");
+                return 0;
+            }
+            String inputPath = readText(input);
+            String fileKey = readText(input);
+            long offset = input.readLong();
+            int fingerprintSize = input.readInt();
+            long fingerprint = input.readLong();
+            if (!inputPath.equals(inputFile.toString()) || !fileKey.equals(fileKey())
+                    || fingerprintSize != Math.min(offset, FINGERPRINT_SIZE)
+                    || fingerprint != fingerprint(offset)) {
+                LogStream.err("Checkpoint of another input file, ignored");
+                return 0;
+            }
+            metricsTracking.readState(input);
+            alerting.readState(input);
+            return offset;
+        } catch (IOException exception) {
+            LogStream.err("Checkpoint not restored: " + exception.getMessage());
+            return 0;
+        }
+    }
+
+    // Waits for the checkpoint being written
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException exception) {
+            LogStream.err(exception);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void writeLog(TrafficLog log, DataOutput output) throws IOException {
+        output.writeLong(log.getDate());
+        output.writeInt(log.getStatus());
+        writeText(log.getRequest(), output);
+        output.writeLong(log.getBytes());
+        writeText(log.getRemoteHost(), output);
+    }
+
+    static TrafficLog readLog(DataInput input) throws IOException {
+        TrafficLog log = new TrafficLog();
+        log.setDate(input.readLong());
+        log.setStatus(input.readInt());
+        log.setRequest(readText(input));
+        log.setBytes(input.readLong());
+        log.setRemoteHost(readText(input));
+        return log;
+    }
+
+    // Unlike writeUTF, not limited to 65535 bytes
+    static void writeText(String text, DataOutput output) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readText(DataInput input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void submit(long offset, MetricsTracking metricsTracking, Alerting alerting) {
+        byte[] encoded = null;
+        try {
+            encoded = encode(offset, metricsTracking, alerting);
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+        if (encoded == null) {
+            writing.set(false);
+            return;
+        }
+        byte[] bytes = encoded;
+        writer.execute(() -> {
+            write(bytes);
+            writing.set(false);
+        });
+    }
+
+    // null if the offset is in a file which is not at the input path anymore
+    private byte[] encode(long offset, MetricsTracking metricsTracking, Alerting alerting)
+            throws IOException {
+        FollowFileInputStream.FilePosition position = positions.apply(offset);
+        String fileKey = fileKey();
+        if (position.getFileKey() != null
+                && !String.valueOf(position.getFileKey()).equals(fileKey)) {
+            // Rotated since the log, saved once the logs of the new file are pushed
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(parameters.length);
+        for (int parameter : parameters) {
+            output.writeInt(parameter);
+        }
+        writeText(inputFile.toString(), output);
+        writeText(fileKey, output);
+        output.writeLong(position.getOffset());
+        output.writeInt((int) Math.min(position.getOffset(), FINGERPRINT_SIZE));
+        output.writeLong(fingerprint(position.getOffset()));
+        metricsTracking.writeState(output);
+        alerting.writeState(output);
+        output.writeLong(checksum(bytes.toByteArray(), bytes.size()));
+        return bytes.toByteArray();
+    }
+
+    private void write(byte[] bytes) {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                // On the disk before it replaces the previous checkpoint
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException exception) {
+            LogStream.err("Checkpoint not saved: " + exception.getMessage());
+        }
+    }
+
+    // Key of the file at the input path, empty if the file system has none
+    private String fileKey() throws IOException {
+        Object key = Files.readAttributes(inputFile, BasicFileAttributes.class).fileKey();
+        return key != null ? key.toString() : "";
+    }
+
+    // CRC32 of the bytes of the input file before {offset}, -1 if the file is shorter
+    private long fingerprint(long offset) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(offset, FINGERPRINT_SIZE));
+        try (FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+            long start = offset - bytes.capacity();
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start + bytes.position()) < 0) {
+                    return -1;
+                }
+            }
+        }
+        return checksum(bytes.array(), bytes.capacity());
+    }
+
+    private static int[] readParameters(DataInput input) throws IOException {
+        int[] values = new int[input.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.readInt();
+        }
+        return values;
+    }
+
+    private static long checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+}
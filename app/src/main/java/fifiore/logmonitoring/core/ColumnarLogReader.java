@@ -0,0 +1,241 @@
+package fifiore.logmonitoring.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+// Reads a file of the columnar format written by ColumnarLogWriter. Each block is
+// memory-mapped and its columns are decoded side by side, one log at a time: no text is
+// parsed and the hosts and requests are shared by the logs of the same dictionary entry.
+// The request of a log is rebuilt from its verb and section, as "VERB /section/- HTTP/1.0",
+// which gives them back to the analysis.
+class ColumnarLogReader implements LogReader {
+
+    private static final HttpVerb.Values[] VERBS = HttpVerb.Values.values();
+    private static final int VERB_COUNT = VERBS.length;
+    // Varint columns
+    private static final int DATE = 0;
+    private static final int STATUS = 1;
+    private static final int BYTES = 2;
+    private static final int HOST = 3;
+    private static final int SECTION = 4;
+
+    private FileChannel channel;
+    // Offset of the next block in the file
+    private long blockOffset = 2 * Integer.BYTES;
+    private ByteBuffer block;
+    private int remainingRows = 0;
+    // Positions of the next value of each varint column and of the verb column in the block
+    private final int[] positions = new int[SECTION + 1];
+    private int verbPosition;
+    private long date;
+    private final List<String> hosts = new ArrayList<>();
+    // Packed IPv4 address of each host, Ipv4.NONE for the other hosts
+    private long[] hostAddresses = new long[0];
+    private final List<String> sections = new ArrayList<>();
+    // Id of each section in Sections
+    private int[] sectionIds = new int[0];
+    // Request of each section and verb, built when first read
+    private String[] requests = new String[0];
+
+    ColumnarLogReader(Path file) {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+    }
+
+    // The file starts with the magic number of the format
+    static boolean isColumnar(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            return readFully(channel, magic, 0) && magic.getInt(0) == ColumnarLogWriter.MAGIC;
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    @Override
+    public Optional<TrafficLog> getLine() {
+        if (remainingRows == 0 && !nextBlock()) {
+            return Optional.empty();
+        }
+        remainingRows--;
+        TrafficLog log = new TrafficLog();
+        date += zigzag(readVarint(DATE));
+        log.setDate(date);
+        log.setStatus((int) zigzag(readVarint(STATUS)));
+        log.setBytes(zigzag(readVarint(BYTES)));
+        int verb = block.get(verbPosition++);
+        int host = (int) readVarint(HOST);
+        long address = hostAddresses[host];
+        if (address != Ipv4.NONE) {
+            log.setRemoteAddress(address);
+        } else {
+            log.setRemoteHost(hosts.get(host));
+        }
+        int section = (int) readVarint(SECTION);
+        log.setRequest(request(section, verb), sectionIds[section], VERBS[verb]);
+        return Optional.of(log);
+    }
+
+    // Maps the next block and reads its dictionary entries, false at the end of the file
+    private boolean nextBlock() {
+        if (channel == null) {
+            return false;
+        }
+        try {
+            if (blockOffset == 2 * Integer.BYTES && !checkHeader()) {
+                close();
+                return false;
+            }
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            if (!readFully(channel, length, blockOffset)) {
+                close();
+                return false;
+            }
+            int blockLength = length.getInt(0);
+            if (blockOffset + Integer.BYTES + blockLength > channel.size()) {
+                LogStream.err("Truncated columnar log file");
+                close();
+                return false;
+            }
+            block = channel.map(FileChannel.MapMode.READ_ONLY, blockOffset + Integer.BYTES,
+                    blockLength);
+            blockOffset += Integer.BYTES + blockLength;
+        } catch (IOException exception) {
+            LogStream.err(exception);
+            close();
+            return false;
+        }
+        remainingRows = block.getInt();
+        int knownHosts = hosts.size();
+        readStrings(hosts);
+        hostAddresses = Arrays.copyOf(hostAddresses, hosts.size());
+        for (int i = knownHosts; i < hosts.size(); i++) {
+            hostAddresses[i] = Ipv4.parse(hosts.get(i));
+        }
+        int knownSections = sections.size();
+        readStrings(sections);
+        sectionIds = Arrays.copyOf(sectionIds, sections.size());
+        for (int i = knownSections; i < sections.size(); i++) {
+            sectionIds[i] = Sections.id(sections.get(i));
+        }
+        if (requests.length < sections.size() * VERB_COUNT) {
+            requests = Arrays.copyOf(requests, sections.size() * VERB_COUNT * 2);
+        }
+        int dateLength = block.getInt();
+        int statusLength = block.getInt();
+        int bytesLength = block.getInt();
+        int hostLength = block.getInt();
+        block.getInt(); // Length of the section column, the last one
+        positions[DATE] = block.position();
+        positions[STATUS] = positions[DATE] + dateLength;
+        positions[BYTES] = positions[STATUS] + statusLength;
+        verbPosition = positions[BYTES] + bytesLength;
+        positions[HOST] = verbPosition + remainingRows;
+        positions[SECTION] = positions[HOST] + hostLength;
+        date = 0;
+        return remainingRows > 0 || nextBlock();
+    }
+
+    private boolean checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+        if (!readFully(channel, header, 0) || header.getInt(0) != ColumnarLogWriter.MAGIC
+                || header.getInt(Integer.BYTES) != ColumnarLogWriter.VERSION) {
+            LogStream.err("Not a columnar log file of this version");
+            return false;
+        }
+        return true;
+    }
+
+    private void close() {
+        try {
+            channel.close();
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+        channel = null;
+    }
+
+    // False at the end of the file before the buffer is full
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + buffer.position());
+            if (count < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readStrings(List<String> values) {
+        long count = readVarint(block);
+        for (long i = 0; i < count; i++) {
+            byte[] text = new byte[(int) readVarint(block)];
+            block.get(text);
+            values.add(new String(text, StandardCharsets.UTF_8));
+        }
+    }
+
+    private String request(int section, int verb) {
+        int index = section * VERB_COUNT + verb;
+        String request = requests[index];
+        if (request == null) {
+            String sectionText = sections.get(section);
+            String verbText = verb == HttpVerb.Values.NONE.ordinal()
+                    ? "-"
+                    : VERBS[verb].name();
+            // Without section, a request of a single element
+            request = sectionText.isEmpty()
+                    ? verbText
+                    : verbText + " " + sectionText + "/- HTTP/1.0";
+            requests[index] = request;
+        }
+        return request;
+    }
+
+    // Reads the varint at the position of the column and moves it after the value
+    private long readVarint(int column) {
+        int position = positions[column];
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = block.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        positions[column] = position;
+        return value;
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+}
@@ -0,0 +1,149 @@
+package fifiore.logmonitoring.core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes logs in the binary columnar format read by ColumnarLogReader, to replay them
+// without parsing text. Only the fields used by the analysis are kept: the date, the
+// status, the bytes, the remote host, and the section and verb of the request.
+// Big-endian layout: int32 magic, int32 version, then blocks of at most {BLOCK_ROWS} logs.
+// Block: int32 length of the rest of the block, int32 row count, the hosts and the sections
+// first used by the block (varint count, then varint length and UTF-8 bytes of each one),
+// int32 length of the date, status, bytes, host and section columns, then the columns:
+// - dates: zigzag varint of the difference with the previous date of the block
+// - statuses, bytes: zigzag varint
+// - verbs: one byte, ordinal of HttpVerb.Values
+// - hosts, sections: varint id, the ids of a dictionary being given in the order of
+//   its entries from the first block
+class ColumnarLogWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x4C4D434C; // "LMCL"
+    static final int VERSION = 1;
+    static final int BLOCK_ROWS = 1 << 16;
+
+    private final DataOutputStream output;
+    private final Map<String, Integer> hostIds = new HashMap<>();
+    private final Map<String, Integer> sectionIds = new HashMap<>();
+    // Dictionary entries first used by the current block
+    private final List<String> newHosts = new ArrayList<>();
+    private final List<String> newSections = new ArrayList<>();
+    private final Column dates = new Column();
+    private final Column statuses = new Column();
+    private final Column bytes = new Column();
+    private final Column verbs = new Column();
+    private final Column hosts = new Column();
+    private final Column sections = new Column();
+    private final Column header = new Column();
+    private int rowCount = 0;
+    private long previousDate = 0;
+
+    ColumnarLogWriter(OutputStream output) throws IOException {
+        this.output = new DataOutputStream(output);
+        this.output.writeInt(MAGIC);
+        this.output.writeInt(VERSION);
+    }
+
+    void write(TrafficLog log) throws IOException {
+        dates.putZigzag(log.getDate() - previousDate);
+        previousDate = log.getDate();
+        statuses.putZigzag(log.getStatus());
+        bytes.putZigzag(log.getBytes());
+        verbs.put(log.getVerb().ordinal());
+        hosts.putVarint(id(log.getRemoteHost(), hostIds, newHosts));
+        sections.putVarint(id(log.getSectionText(), sectionIds, newSections));
+        if (++rowCount == BLOCK_ROWS) {
+            writeBlock();
+        }
+    }
+
+    // Writes the last block and flushes the stream, without closing it
+    @Override
+    public void close() throws IOException {
+        if (rowCount > 0) {
+            writeBlock();
+        }
+        output.flush();
+    }
+
+    private static int id(String value, Map<String, Integer> ids, List<String> newValues) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = ids.size();
+            ids.put(value, id);
+            newValues.add(value);
+        }
+        return id;
+    }
+
+    private void writeBlock() throws IOException {
+        header.clear();
+        putStrings(newHosts);
+        putStrings(newSections);
+        output.writeInt(Integer.BYTES * 6 + header.size + dates.size + statuses.size
+                + bytes.size + verbs.size + hosts.size + sections.size);
+        output.writeInt(rowCount);
+        header.writeTo(output);
+        for (Column column : new Column[] {dates, statuses, bytes, hosts, sections}) {
+            output.writeInt(column.size);
+        }
+        for (Column column : new Column[] {dates, statuses, bytes, verbs, hosts, sections}) {
+            column.writeTo(output);
+            column.clear();
+        }
+        newHosts.clear();
+        newSections.clear();
+        rowCount = 0;
+        previousDate = 0;
+    }
+
+    private void putStrings(List<String> values) {
+        header.putVarint(values.size());
+        for (String value : values) {
+            byte[] text = value.getBytes(StandardCharsets.UTF_8);
+            header.putVarint(text.length);
+            for (byte b : text) {
+                header.put(b);
+            }
+        }
+    }
+
+    // Growable array of the encoded values of a column
+    private static final class Column {
+        private byte[] values = new byte[1 << 12];
+        private int size = 0;
+
+        void put(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = (byte) value;
+        }
+
+        void putVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                put((int) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            put((int) value);
+        }
+
+        void putZigzag(long value) {
+            putVarint(value << 1 ^ value >> 63);
+        }
+
+        void writeTo(OutputStream output) throws IOException {
+            output.write(values, 0, size);
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
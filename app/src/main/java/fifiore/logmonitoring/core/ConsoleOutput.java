@@ -0,0 +1,141 @@
+package fifiore.logmonitoring.core;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Single output of the metrics and alerts, shared by the display workers.
+// Messages are encoded by the sink into a reused buffer and written through one buffered
+// stream, flushed when its buffer is full or {flushInterval} ms after the first unflushed
+// message.
+// An alert is held until the metrics window containing its date is written, so that the
+// output follows the log dates, but at most {alertHoldDelay} ms when the metrics lag.
+class ConsoleOutput implements AutoCloseable {
+
+    static final long FLUSH_INTERVAL = 200; // ms
+    static final long ALERT_HOLD_DELAY = 1000; // ms
+
+    private static final int BUFFER_SIZE = 1 << 16; // bytes
+
+    private final OutputStream stream;
+    private final OutputSink sink;
+    private final long flushInterval;
+    private final long alertHoldDelay;
+    private final OutputBuffer buffer = new OutputBuffer();
+    private final Deque<HeldAlert> heldAlerts = new ArrayDeque<>();
+    // End date of the last written metrics window
+    private long metricsEndDate = Long.MIN_VALUE;
+    private boolean metricsEnded = false;
+    // Time of the first unflushed message, 0 if everything is flushed
+    private long unflushedSince = 0;
+    private final ScheduledExecutorService timer;
+
+    ConsoleOutput(OutputSink sink) {
+        this(new BufferedOutputStream(System.out, BUFFER_SIZE), sink, FLUSH_INTERVAL,
+                ALERT_HOLD_DELAY);
+    }
+
+    ConsoleOutput(OutputStream stream, OutputSink sink, long flushInterval,
+            long alertHoldDelay) {
+        this.stream = stream;
+        this.sink = sink;
+        this.flushInterval = flushInterval;
+        this.alertHoldDelay = alertHoldDelay;
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "console-output");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, Math.min(flushInterval, alertHoldDelay) / 2);
+        timer.scheduleAtFixedRate(this::tick, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void metrics(WindowsMetrics metrics) {
+        sink.metrics(metrics, buffer);
+        write();
+        // Amended windows are older than the last one
+        metricsEndDate = Math.max(metricsEndDate, metrics.getEndDate());
+        while (!heldAlerts.isEmpty() && heldAlerts.peekFirst().alert.getDate() <= metricsEndDate) {
+            writeAlert(heldAlerts.pollFirst().alert);
+        }
+    }
+
+    synchronized void alert(TrafficAlert alert) {
+        // Alerts arrive in order: hold this one behind the others
+        if (heldAlerts.isEmpty() && (metricsEnded || alert.getDate() <= metricsEndDate)) {
+            writeAlert(alert);
+        } else {
+            heldAlerts.addLast(new HeldAlert(alert, System.currentTimeMillis()));
+        }
+    }
+
+    // No more metrics: the held alerts do not wait for them anymore
+    synchronized void metricsEnded() {
+        metricsEnded = true;
+        releaseAlerts(Long.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void close() {
+        timer.shutdown();
+        releaseAlerts(Long.MAX_VALUE);
+        flush();
+    }
+
+    private synchronized void tick() {
+        long now = System.currentTimeMillis();
+        releaseAlerts(now - alertHoldDelay);
+        if (unflushedSince != 0 && now - unflushedSince >= flushInterval) {
+            flush();
+        }
+    }
+
+    // Writes the alerts held since {heldBefore} at the latest
+    private void releaseAlerts(long heldBefore) {
+        while (!heldAlerts.isEmpty() && heldAlerts.peekFirst().heldSince <= heldBefore) {
+            writeAlert(heldAlerts.pollFirst().alert);
+        }
+    }
+
+    private void writeAlert(TrafficAlert alert) {
+        sink.alert(alert, buffer);
+        write();
+    }
+
+    private void write() {
+        try {
+            buffer.writeTo(stream);
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+        buffer.reset();
+        if (unflushedSince == 0) {
+            unflushedSince = System.currentTimeMillis();
+        }
+    }
+
+    private void flush() {
+        try {
+            stream.flush();
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+        unflushedSince = 0;
+    }
+
+    private static class HeldAlert {
+        private final TrafficAlert alert;
+        // Wall-clock time when the alert was received
+        private final long heldSince;
+
+        HeldAlert(TrafficAlert alert, long heldSince) {
+            this.alert = alert;
+            this.heldSince = heldSince;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package fifiore.logmonitoring.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Parses CSV lines straight from raw bytes in a single pass.
+// Numeric columns are decoded into primitives and Strings are only created
+// for the columns read by the analysis.
+class CsvLineParser {
+
+    private static final byte QUOTE = '"';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final byte delimiter;
+    private CsvLogReader.Columns[] columns = new CsvLogReader.Columns[0];
+    private final RequestCache requests = new RequestCache();
+
+    CsvLineParser(char delimiter) {
+        this.delimiter = (byte) delimiter;
+    }
+
+    // Parser of the same header, with its own request cache for another thread
+    CsvLineParser(CsvLineParser parser) {
+        this.delimiter = parser.delimiter;
+        this.columns = parser.columns;
+    }
+
+    boolean hasHeader() {
+        return columns.length > 0;
+    }
+
+    void readHeader(byte[] buffer, int start, int end) {
+        CsvLogReader.Columns[] header = new CsvLogReader.Columns[8];
+        int count = 0;
+        int position = start;
+        int lineEnd = trimLineEnd(buffer, start, end);
+        while (position <= lineEnd) {
+            int fieldEnd = fieldEnd(buffer, position, lineEnd);
+            int valueStart = position;
+            int valueEnd = fieldEnd;
+            if (valueEnd - valueStart >= 2 && buffer[valueStart] == QUOTE
+                    && buffer[valueEnd - 1] == QUOTE) {
+                valueStart++;
+                valueEnd--;
+            }
+            if (count == header.length) {
+                header = Arrays.copyOf(header, count * 2);
+            }
+            header[count++] = CsvLogReader.Columns.fromText(
+                    new String(buffer, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8));
+            position = fieldEnd + 1;
+        }
+        columns = Arrays.copyOf(header, count);
+    }
+
+    TrafficLog parse(byte[] buffer, int start, int end) {
+        TrafficLog log = new TrafficLog();
+        int lineEnd = trimLineEnd(buffer, start, end);
+        int position = start;
+        int columnIndex = 0;
+        while (position <= lineEnd && columnIndex < columns.length) {
+            int fieldEnd = fieldEnd(buffer, position, lineEnd);
+            fillLog(log, columns[columnIndex], buffer, position, fieldEnd);
+            position = fieldEnd + 1;
+            columnIndex++;
+        }
+        return log;
+    }
+
+    private void fillLog(TrafficLog log, CsvLogReader.Columns column, byte[] buffer, int start,
+            int end) {
+        switch (column) {
+            case DATE:
+                log.setDate(parseLong(buffer, start, end));
+                break;
+            case STATUS:
+                log.setStatus((int) parseLong(buffer, start, end));
+                break;
+            case REQUEST:
+                requests.fill(log, buffer, start, end);
+                break;
+            case REMOTE_HOST:
+                fillRemoteHost(log, buffer, start, end);
+                break;
+            case BYTES:
+                log.setBytes(parseLong(buffer, start, end));
+                break;
+            default:
+                break;
+        }
+    }
+
+    // IPv4 addresses are kept packed, the host String is only built if it is read
+    private static void fillRemoteHost(TrafficLog log, byte[] buffer, int start, int end) {
+        long address = end - start >= 2 && buffer[start] == QUOTE && buffer[end - 1] == QUOTE
+                ? Ipv4.parse(buffer, start + 1, end - 1)
+                : Ipv4.parse(buffer, start, end);
+        if (address != Ipv4.NONE) {
+            log.setRemoteAddress(address);
+        } else {
+            log.setRemoteHost(text(buffer, start, end));
+        }
+    }
+
+    // End of the field starting at {start}: index of the next delimiter
+    // outside quotes, or {lineEnd}
+    private int fieldEnd(byte[] buffer, int start, int lineEnd) {
+        int position = start;
+        if (position < lineEnd && buffer[position] == QUOTE) {
+            position++;
+            while (position < lineEnd) {
+                if (buffer[position] == QUOTE) {
+                    // A doubled quote is an escaped quote inside the field
+                    if (position + 1 < lineEnd && buffer[position + 1] == QUOTE) {
+                        position += 2;
+                        continue;
+                    }
+                    position++;
+                    break;
+                }
+                position++;
+            }
+        }
+        while (position < lineEnd && buffer[position] != delimiter) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int trimLineEnd(byte[] buffer, int start, int end) {
+        if (end > start && buffer[end - 1] == CARRIAGE_RETURN) {
+            return end - 1;
+        }
+        return end;
+    }
+
+    // Invalid numbers are decoded as 0 so that the log is ignored by the analysis
+    private static long parseLong(byte[] buffer, int start, int end) {
+        if (end - start >= 2 && buffer[start] == QUOTE && buffer[end - 1] == QUOTE) {
+            start++;
+            end--;
+        }
+        if (start == end) {
+            return 0;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return 0;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    static String text(byte[] buffer, int start, int end) {
+        if (end - start < 2 || buffer[start] != QUOTE || buffer[end - 1] != QUOTE) {
+            return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+        }
+        start++;
+        end--;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == QUOTE) {
+                return unescape(buffer, start, end);
+            }
+        }
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static String unescape(byte[] buffer, int start, int end) {
+        byte[] value = new byte[end - start];
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            value[length++] = buffer[i];
+            if (buffer[i] == QUOTE && i + 1 < end && buffer[i + 1] == QUOTE) {
+                i++;
+            }
+        }
+        return new String(value, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -7,12 +7,13 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
-class CsvLogReader {
+class CsvLogReader implements LogReader {
 
     private char delimiter = 0;
     private boolean firstRow = true;
     private BufferedReader buffer;
     private Map<Integer, Columns> columnIndexes = new HashMap<>();
+    private final RequestCache requests = new RequestCache();
 
     CsvLogReader(String inputSource, char delimiter) {
         this.delimiter = delimiter;
@@ -28,7 +29,13 @@ class CsvLogReader {
         }
     }
 
-    Optional<TrafficLog> getLine() {
+    CsvLogReader(BufferedReader buffer, char delimiter) {
+        this.delimiter = delimiter;
+        this.buffer = buffer;
+    }
+
+    @Override
+    public Optional<TrafficLog> getLine() {
         if (firstRow) {
             String line = getStreamLine();
             if (line == null) {
@@ -59,7 +66,7 @@ class CsvLogReader {
                     log.setDate(Long.parseLong(value));
                     break;
                 case REQUEST:
-                    log.setRequest(value);
+                    requests.fill(log, value);
                     break;
                 case STATUS:
                     log.setStatus(Integer.parseInt(value));
@@ -67,6 +74,9 @@ class CsvLogReader {
                 case REMOTE_HOST:
                     log.setRemoteHost(value);
                     break;
+                case BYTES:
+                    log.setBytes(parseBytes(value));
+                    break;
                 default:
                     break;
             }
@@ -74,6 +84,15 @@ class CsvLogReader {
 
     }
 
+    // "-" is logged for responses without a body
+    private static long parseBytes(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException exception) {
+            return 0;
+        }
+    }
+
     private String removeQuotes(String value) {
         if (value == null) {
             return null;
@@ -116,8 +135,8 @@ class CsvLogReader {
         return null;
     }
 
-    private enum Columns {
-        DATE, REQUEST, STATUS, REMOTE_HOST, NONE;
+    enum Columns {
+        DATE, REQUEST, STATUS, REMOTE_HOST, BYTES, NONE;
 
         static Columns fromText(String value) {
             if ("date".equals(value)) {
@@ -128,6 +147,8 @@ class CsvLogReader {
                 return STATUS;
             } else if ("remotehost".equals(value)) {
                 return REMOTE_HOST;
+            } else if ("bytes".equals(value)) {
+                return BYTES;
             }
             return NONE;
         }
@@ -1,47 +1,72 @@
 package fifiore.logmonitoring.core;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
 
+// Text of the metrics and alerts, appended to the buffer of the caller
 class Display {
 
+    private static final DateTimeFormatter MINUTE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:").withZone(ZoneId.systemDefault());
+
+    // Last formatted minute, shared by the output threads:
+    // consecutive messages are most often in the same minute
+    private static volatile FormattedMinute lastMinute = new FormattedMinute(Long.MIN_VALUE, "");
+
     private Display() {}
 
-    static void alert(TrafficAlert alert) {
-        StringBuilder stringBuilder = new StringBuilder();
-        String endPeriod = dateFormatted(alert.getDate());
+    static void alert(TrafficAlert alert, StringBuilder stringBuilder) {
         if (alert.isAlert()) {
             stringBuilder.append("*** High traffic generated an alert - hits = ")
-                    .append(alert.getHitCountAverage()).append(", triggered at ").append(endPeriod)
-                    .append(" ***");
+                    .append(alert.getHitCountAverage()).append(", triggered at ");
         } else {
-            stringBuilder.append("*** Traffic back to normal at " + endPeriod + " ***");
+            stringBuilder.append("*** Traffic back to normal at ");
         }
-        LogStream.out(stringBuilder.toString());
+        appendDate(stringBuilder, alert.getDate());
+        stringBuilder.append(" ***");
     }
 
-    static void metrics(WindowsMetrics metrics) {
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append("-----\n").append("Time window: ")
-                .append(dateFormatted(metrics.getStartDate())).append(", ")
-                .append(dateFormatted(metrics.getEndDate())).append("\n").append("Number of hits: ")
-                .append(metrics.getHitNB()).append("\n");
+    static void metrics(WindowsMetrics metrics, StringBuilder stringBuilder) {
+        stringBuilder.append("-----\n").append("Time window: ");
+        appendDate(stringBuilder, metrics.getStartDate());
+        stringBuilder.append(", ");
+        appendDate(stringBuilder, metrics.getEndDate());
+        if (metrics.isAmended()) {
+            stringBuilder.append(" (amended)");
+        }
+        stringBuilder.append("\n").append("Number of hits: ").append(metrics.getHitNB())
+                .append("\n");
 
         if (metrics.getHitNB() > 0) {
-            mostHitSections(stringBuilder, metrics);
+            if (metrics.getTopSections().isEmpty()) {
+                mostHitSections(stringBuilder, metrics);
+            } else {
+                topSections(stringBuilder, metrics);
+            }
             countPerOperation(stringBuilder, metrics);
+            responseBytes(stringBuilder, metrics);
             successRate(stringBuilder, metrics);
         }
-        LogStream.out(stringBuilder.toString());
     }
 
-    private static String dateFormatted(long date) {
-        String pattern = "yyyy/MM/dd HH:mm:ss";
-        DateFormat df = new SimpleDateFormat(pattern);
-        java.util.Date startDate = new java.util.Date(date * 1000);
-        return df.format(startDate);
+    // yyyy/MM/dd HH:mm:ss in the local time zone, whose offset is a whole number of minutes
+    static void appendDate(StringBuilder stringBuilder, long date) {
+        long minute = Math.floorDiv(date, 60);
+        FormattedMinute formatted = lastMinute;
+        if (formatted.minute != minute) {
+            formatted = new FormattedMinute(minute,
+                    MINUTE_FORMAT.format(Instant.ofEpochSecond(minute * 60)));
+            lastMinute = formatted;
+        }
+        int second = Math.floorMod(date, 60);
+        stringBuilder.append(formatted.text);
+        if (second < 10) {
+            stringBuilder.append('0');
+        }
+        stringBuilder.append(second);
     }
 
     private static void mostHitSections(StringBuilder stringBuilder, WindowsMetrics metrics) {
@@ -64,6 +89,19 @@ class Display {
         }
     }
 
+    // Estimated counts shown as a range when they may be over-estimated
+    private static void topSections(StringBuilder stringBuilder, WindowsMetrics metrics) {
+        stringBuilder.append("Top sections: ");
+        for (SectionCount section : metrics.getTopSections()) {
+            stringBuilder.append(section.getSection()).append(" (");
+            if (section.getError() > 0) {
+                stringBuilder.append(section.getCount() - section.getError()).append('-');
+            }
+            stringBuilder.append(section.getCount()).append(") ");
+        }
+        stringBuilder.append("\n");
+    }
+
     private static void countPerOperation(StringBuilder stringBuilder, WindowsMetrics metrics) {
         stringBuilder.append("Operations: ");
         Arrays.stream(HttpVerb.Values.values()).filter(op -> op != HttpVerb.Values.NONE)
@@ -76,12 +114,32 @@ class Display {
         stringBuilder.append("\n");
     }
 
+    private static void responseBytes(StringBuilder stringBuilder, WindowsMetrics metrics) {
+        BytesSummary bytes = metrics.getBytes();
+        stringBuilder.append("Bytes served: ").append(bytes.getTotal()).append(" (p50 ")
+                .append(Math.round(bytes.getP50())).append(", p95 ")
+                .append(Math.round(bytes.getP95())).append(", p99 ")
+                .append(Math.round(bytes.getP99())).append(")\n");
+    }
+
     private static void successRate(StringBuilder stringBuilder, WindowsMetrics metrics) {
         stringBuilder.append("Success rate: " + Math.round(metrics.getSuccessRate()) + "%\n")
                 .append("Remote host with lowest success rate: ")
                 .append(metrics.getLowestSuccessRateHost()).append(" (")
                 .append(Math.round(metrics.getLowestSuccessRate())).append("%)");
+        if (metrics.getDistinctHostCount() >= 0) {
+            stringBuilder.append("\nDistinct remote hosts: ~")
+                    .append(metrics.getDistinctHostCount());
+        }
     }
-}
 
+    private static class FormattedMinute {
+        private final long minute;
+        private final String text;
 
+        FormattedMinute(long minute, String text) {
+            this.minute = minute;
+            this.text = text;
+        }
+    }
+}
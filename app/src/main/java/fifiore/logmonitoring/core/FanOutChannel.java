@@ -0,0 +1,137 @@
+package fifiore.logmonitoring.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded ring buffer publishing every message of a single producer to several consumers.
+// Each consumer reads at its own pace with its own cursor, the producer waits for the
+// slowest one when the buffer is full.
+class FanOutChannel<T> {
+
+    // Pushed by close() after the last message
+    private static final Object END_OF_STREAM = new Object();
+
+    private final Object[] buffer;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final List<Cursor> cursors = new ArrayList<>();
+
+    // Sequence of the next message to write, written by the producer only
+    private final AtomicLong tail = new AtomicLong();
+    // Lowest consumer sequence last seen by the producer
+    private long producerMinCursorCache = 0;
+
+    // {capacity} is rounded up to a power of 2
+    FanOutChannel(int capacity, int consumerCount, WaitStrategy waitStrategy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < consumerCount; i++) {
+            cursors.add(new Cursor());
+        }
+    }
+
+    Cursor consumer(int index) {
+        return cursors.get(index);
+    }
+
+    void push(T message) {
+        offer(message);
+    }
+
+    void close() {
+        offer(END_OF_STREAM);
+    }
+
+    private void offer(Object message) {
+        long sequence = tail.get();
+        int attempt = 0;
+        ChannelStallEvent stall = null;
+        while (sequence - producerMinCursorCache >= buffer.length) {
+            producerMinCursorCache = minCursor();
+            if (sequence - producerMinCursorCache >= buffer.length) {
+                // Full: wait for the slowest consumer
+                if (stall == null) {
+                    stall = new ChannelStallEvent();
+                    stall.begin();
+                }
+                waitStrategy.idle(attempt++);
+            }
+        }
+        if (stall != null && stall.shouldCommit()) {
+            stall.capacity = buffer.length;
+            stall.commit();
+        }
+        buffer[(int) sequence & mask] = message;
+        // Publish the message after writing it
+        tail.lazySet(sequence + 1);
+    }
+
+    private long minCursor() {
+        long min = Long.MAX_VALUE;
+        for (Cursor cursor : cursors) {
+            min = Math.min(min, cursor.sequence.get());
+        }
+        return min;
+    }
+
+    // Reading side of one consumer, to be used by a single thread
+    class Cursor {
+        // Sequence of the next message to read
+        private final AtomicLong sequence = new AtomicLong();
+        private long tailCache = 0;
+        private boolean closed = false;
+        private volatile long maxLag = 0;
+
+        // Move the available messages to {batch}, up to {maxCount}, waiting for at least one.
+        // Returns the number of messages moved, -1 once the channel is closed
+        int drainTo(Collection<? super T> batch, int maxCount) {
+            if (closed) {
+                return -1;
+            }
+            long next = sequence.get();
+            int attempt = 0;
+            while (next >= tailCache) {
+                tailCache = tail.get();
+                if (next >= tailCache) {
+                    waitStrategy.idle(attempt++);
+                }
+            }
+            if (tailCache - next > maxLag) {
+                maxLag = tailCache - next;
+            }
+            long end = Math.min(tailCache, next + maxCount);
+            int count = 0;
+            while (next < end) {
+                Object message = buffer[(int) next++ & mask];
+                if (message == END_OF_STREAM) {
+                    closed = true;
+                    break;
+                }
+                batch.add(cast(message));
+                count++;
+            }
+            // Release the slots for the producer once for the whole batch
+            sequence.lazySet(next);
+            return closed && count == 0 ? -1 : count;
+        }
+
+        // Number of published messages not read yet by this consumer
+        long lag() {
+            return Math.max(0, tail.get() - sequence.get());
+        }
+
+        // Highest lag seen by this consumer when reading
+        long maxLag() {
+            return maxLag;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T cast(Object message) {
+            return (T) message;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package fifiore.logmonitoring.core;
+
+import lombok.Getter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+// Stream of a growing file, like tail -F: at the end of the file, the read waits for
+// appended bytes instead of returning the end of the stream.
+// The file is polled with a delay doubling while it stays idle, so an idle file costs
+// almost no CPU. A rotation (new file key at the path) or a truncation (size below the
+// read position) reopens the file from its beginning once the old one is read to its end.
+// A line cut by the rotation is ended, and the header line repeated at the beginning of
+// the new file is skipped, so that the readers see a single CSV stream.
+// The stream offsets are mapped back to the positions in the followed files, which can
+// be saved to resume the following of the current file.
+class FollowFileInputStream extends InputStream {
+
+    static final long MIN_POLL_DELAY = 1_000_000; // ns
+    static final long MAX_POLL_DELAY = 250_000_000; // ns
+
+    // Longest header line kept to recognize it in the new files
+    private static final int MAX_HEADER_SIZE = 1 << 12;
+    private static final byte NEW_LINE = '\n';
+
+    private final Path path;
+    private final long maxPollDelay;
+    private FileChannel channel;
+    // Identity of the open file, null if the file system has none
+    private Object fileKey;
+    private long position = 0;
+    private long pollDelay = MIN_POLL_DELAY;
+    // First line of the first file, with its line feed once complete
+    private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+    private boolean headerComplete = false;
+    private byte lastByte = NEW_LINE;
+    // Line feed to deliver before the bytes of a new file
+    private boolean endLine = false;
+    // Beginning of the new file read while it can still be the header line, null once the
+    // header is skipped or is not repeated
+    private ByteBuffer newFileStart = null;
+    private volatile boolean closed = false;
+    // Stream offset of the next byte, skipped bytes included
+    private long streamOffset = 0;
+    // Files whose bytes may not be read yet by the consumers of the stream, oldest first,
+    // guarded by itself
+    private final List<Segment> segments = new ArrayList<>();
+    // The new file has no segment until its first byte is read
+    private boolean segmentPending = false;
+
+    FollowFileInputStream(Path path) throws IOException {
+        this(path, MAX_POLL_DELAY);
+    }
+
+    FollowFileInputStream(Path path, long maxPollDelay) throws IOException {
+        this.path = path;
+        this.maxPollDelay = maxPollDelay;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        segments.add(new Segment(0, 0, fileKey));
+    }
+
+    // Position in the followed files of the stream offset {offset}, which can be called by
+    // another thread than the reader, with increasing offsets
+    FilePosition filePosition(long offset) {
+        synchronized (segments) {
+            int index = 0;
+            while (index + 1 < segments.size()
+                    && segments.get(index + 1).streamStart <= offset) {
+                index++;
+            }
+            // The files before the one of {offset} are not needed anymore
+            segments.subList(0, index).clear();
+            Segment segment = segments.get(0);
+            return new FilePosition(segment.fileKey,
+                    segment.fileStart + offset - segment.streamStart);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (true) {
+            int count = poll(bytes, offset, length);
+            if (count != 0) {
+                pollDelay = MIN_POLL_DELAY;
+                return count;
+            }
+            LockSupport.parkNanos(pollDelay);
+            pollDelay = Math.min(pollDelay * 2, maxPollDelay);
+        }
+    }
+
+    // Reads the bytes available without waiting, after a rotation or a truncation if any:
+    // 0 if there is none yet, -1 once closed
+    int poll(byte[] bytes, int offset, int length) throws IOException {
+        while (!closed) {
+            if (endLine) {
+                endLine = false;
+                bytes[offset] = NEW_LINE;
+                lastByte = NEW_LINE;
+                streamOffset++;
+                return 1;
+            }
+            if (newFileStart != null && !skipHeader()) {
+                // The new file can also be rotated or truncated before its header is complete
+                if (!reopened()) {
+                    return 0;
+                }
+                continue;
+            }
+            int count = channel.read(ByteBuffer.wrap(bytes, offset, length), position);
+            if (count > 0) {
+                delivered(bytes, offset, count);
+                return count;
+            }
+            if (!reopened()) {
+                return 0;
+            }
+        }
+        return -1;
+    }
+
+    // Skips within the current file, without waiting for appended bytes
+    @Override
+    public long skip(long count) throws IOException {
+        long skipped = Math.max(0, Math.min(count, channel.size() - position));
+        advance(skipped);
+        return skipped;
+    }
+
+    // Bytes readable without waiting
+    @Override
+    public int available() throws IOException {
+        if (newFileStart != null) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, channel.size() - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    private void delivered(byte[] bytes, int offset, int count) {
+        advance(count);
+        lastByte = bytes[offset + count - 1];
+        for (int i = offset; i < offset + count && !headerComplete; i++) {
+            header.write(bytes[i]);
+            headerComplete = bytes[i] == NEW_LINE || header.size() == MAX_HEADER_SIZE;
+        }
+    }
+
+    private void advance(long count) {
+        if (segmentPending) {
+            segmentPending = false;
+            synchronized (segments) {
+                segments.add(new Segment(streamOffset, position, fileKey));
+            }
+        }
+        position += count;
+        streamOffset += count;
+    }
+
+    // Switches to the new file after a rotation or a truncation, false if there is none
+    private boolean reopened() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException exception) {
+            // Rotated, the new file is not created yet
+            return false;
+        }
+        boolean rotated = !Objects.equals(fileKey, attributes.fileKey());
+        // Bytes read from the file, header included while it is being skipped
+        long readSize = newFileStart != null ? newFileStart.position() : position;
+        boolean truncated = !rotated && attributes.size() < readSize;
+        if (!rotated && !truncated) {
+            return false;
+        }
+        // Bytes appended to the old file before its rotation
+        if (rotated && channel.size() > readSize) {
+            return true;
+        }
+        FileChannel newChannel;
+        try {
+            newChannel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException exception) {
+            return false;
+        }
+        channel.close();
+        channel = newChannel;
+        fileKey = attributes.fileKey();
+        position = 0;
+        segmentPending = true;
+        endLine = lastByte != NEW_LINE;
+        // A header cut by a second rotation is not delivered
+        newFileStart = headerComplete && header.size() > 0
+                ? ByteBuffer.allocate(header.size())
+                : null;
+        return true;
+    }
+
+    // Reads the beginning of the new file, false while it can still be the header line.
+    // The header is skipped, other bytes are delivered from the beginning of the file.
+    private boolean skipHeader() throws IOException {
+        byte[] expected = header.toByteArray();
+        channel.read(newFileStart, newFileStart.position());
+        int count = newFileStart.position();
+        if (!Arrays.equals(expected, 0, count, newFileStart.array(), 0, count)) {
+            newFileStart = null;
+            return true;
+        }
+        if (count == expected.length) {
+            position = count;
+            newFileStart = null;
+            return true;
+        }
+        return false;
+    }
+
+    // Position in a followed file, with the identity of the file, null if the file system
+    // has none
+    @Getter
+    static final class FilePosition {
+        private final Object fileKey;
+        private final long offset;
+
+        FilePosition(Object fileKey, long offset) {
+            this.fileKey = fileKey;
+            this.offset = offset;
+        }
+    }
+
+    // Bytes of a file in the stream from {streamStart}, from {fileStart} in the file
+    private static final class Segment {
+        private final long streamStart;
+        private final long fileStart;
+        private final Object fileKey;
+
+        private Segment(long streamStart, long fileStart, Object fileKey) {
+            this.streamStart = streamStart;
+            this.fileStart = fileStart;
+            this.fileKey = fileKey;
+        }
+    }
+}
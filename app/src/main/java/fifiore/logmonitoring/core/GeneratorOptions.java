@@ -0,0 +1,35 @@
+package fifiore.logmonitoring.core;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class GeneratorOptions {
+
+    // Output file, "-" for the standard output
+    private String output = "-";
+    // Number of lines to generate, 0 for an endless stream
+    private long lineCount = 1_000_000;
+    // Date of the first log, in seconds
+    private long startDate = 1549573860;
+    // Logs per second of log date outside the bursts
+    private int rate = 5;
+    // Lines written per second of wall time, 0 to write as fast as possible
+    private int throughput = 0;
+    private int hostCount = 50;
+    private int sectionCount = 20;
+    // Exponent of the Zipf distribution of the sections, 0 for a uniform distribution
+    private double zipfExponent = 1.0;
+    // Share of the logs with an error status
+    private double errorRate = 0.05;
+    // Highest delay of a log behind the most recent date, in seconds.
+    // Logs stay in order for the analysis while it is within the wait delay.
+    private int jitter = 2;
+    // A burst of {burstLength} seconds at {burstFactor} times the rate every {burstPeriod}
+    // seconds, 0 to disable the bursts
+    private int burstPeriod = 600;
+    private int burstLength = 180;
+    private int burstFactor = 4;
+    private long seed = 42;
+}
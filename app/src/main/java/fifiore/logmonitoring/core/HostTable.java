@@ -0,0 +1,276 @@
+package fifiore.logmonitoring.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Successes/failures of at most {capacity} remote hosts, in a fixed memory.
+// When the table is full a new host replaces the host with the lowest request count and
+// inherits it as error (Space-Saving): hosts with a real volume stay tracked whatever the
+// number of distinct hosts. IPv4 hosts are keyed by their packed address, other hosts by
+// the hash of their name, the name being compared on equal hashes.
+class HostTable {
+
+    // Requests needed for a host to be reported with the lowest success rate,
+    // unless no host has that many
+    static final int MIN_HOST_REQUESTS = 5;
+
+    private static final long EMPTY = -1;
+    // Set on the keys of the hosts which are not IPv4 addresses
+    private static final long NAME_KEY = 1L << 40;
+
+    private final int capacity;
+    // Open addressing index from host key to slot, with linear probing
+    private final long[] indexKeys;
+    private final int[] indexSlots;
+    private final int indexMask;
+
+    // Host of each slot: key, and name if the host is not an IPv4 address
+    private final long[] keys;
+    private final String[] names;
+    // Request count used to choose the replaced host, with the inherited error
+    private final long[] volumes;
+    private final long[] errors;
+    private final int[] successCounts;
+    private final int[] failureCounts;
+    private final SlotHeap heap;
+    private int size = 0;
+
+    HostTable(int capacity) {
+        this.capacity = capacity;
+        int indexSize = Integer.highestOneBit(Math.max(2, capacity * 2) - 1) << 1;
+        this.indexKeys = new long[indexSize];
+        this.indexSlots = new int[indexSize];
+        this.indexMask = indexSize - 1;
+        Arrays.fill(indexKeys, EMPTY);
+        this.keys = new long[capacity];
+        this.names = new String[capacity];
+        this.volumes = new long[capacity];
+        this.errors = new long[capacity];
+        this.successCounts = new int[capacity];
+        this.failureCounts = new int[capacity];
+        this.heap = new SlotHeap(volumes);
+    }
+
+    // {name} is only read if {address} is not an IPv4 address
+    void add(long address, String name, boolean success) {
+        long key = key(address, name);
+        int slot = find(key, name);
+        if (slot < 0) {
+            slot = size < capacity ? insert(key, name, 0, 0) : replaceMin(key, name);
+        }
+        volumes[slot]++;
+        if (success) {
+            successCounts[slot]++;
+        } else {
+            failureCounts[slot]++;
+        }
+        heap.increased(slot);
+    }
+
+    // Once merged, the volume of a host missing in a table includes the lowest volume of
+    // this table: the host could have been replaced in it with up to this volume.
+    void merge(HostTable other) {
+        if (other.size == 0) {
+            return;
+        }
+        long minVolume = minVolume();
+        long otherMinVolume = other.minVolume();
+        HostTable merged = new HostTable(size + other.size);
+        for (int slot = 0; slot < size; slot++) {
+            int otherSlot = other.find(keys[slot], names[slot]);
+            int mergedSlot = merged.insert(keys[slot], names[slot], volumes[slot],
+                    errors[slot]);
+            merged.addCounts(mergedSlot, successCounts[slot], failureCounts[slot]);
+            if (otherSlot >= 0) {
+                merged.volumes[mergedSlot] += other.volumes[otherSlot];
+                merged.errors[mergedSlot] += other.errors[otherSlot];
+                merged.addCounts(mergedSlot, other.successCounts[otherSlot],
+                        other.failureCounts[otherSlot]);
+            } else {
+                merged.volumes[mergedSlot] += otherMinVolume;
+                merged.errors[mergedSlot] += otherMinVolume;
+            }
+        }
+        for (int slot = 0; slot < other.size; slot++) {
+            if (find(other.keys[slot], other.names[slot]) < 0) {
+                int mergedSlot = merged.insert(other.keys[slot], other.names[slot],
+                        other.volumes[slot] + minVolume, other.errors[slot] + minVolume);
+                merged.addCounts(mergedSlot, other.successCounts[slot],
+                        other.failureCounts[slot]);
+            }
+        }
+
+        clear();
+        // Keep the hosts with the highest volumes
+        Integer[] order = new Integer[merged.size];
+        for (int i = 0; i < merged.size; i++) {
+            order[i] = i;
+        }
+        if (merged.size > capacity) {
+            Arrays.sort(order, (first, second) ->
+                    Long.compare(merged.volumes[second], merged.volumes[first]));
+        }
+        for (int i = 0; i < Math.min(capacity, merged.size); i++) {
+            int from = order[i];
+            int slot = insert(merged.keys[from], merged.names[from], merged.volumes[from],
+                    merged.errors[from]);
+            addCounts(slot, merged.successCounts[from], merged.failureCounts[from]);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(indexKeys, EMPTY);
+        Arrays.fill(names, 0, size, null);
+        size = 0;
+        heap.clear();
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeInt(size);
+        for (int slot = 0; slot < size; slot++) {
+            output.writeLong(keys[slot]);
+            output.writeBoolean(names[slot] != null);
+            if (names[slot] != null) {
+                Checkpoint.writeText(names[slot], output);
+            }
+            output.writeLong(volumes[slot]);
+            output.writeLong(errors[slot]);
+            output.writeInt(successCounts[slot]);
+            output.writeInt(failureCounts[slot]);
+        }
+    }
+
+    // Replaces the content with a table of the same capacity written by write()
+    void read(DataInput input) throws IOException {
+        clear();
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            long key = input.readLong();
+            String name = input.readBoolean() ? Checkpoint.readText(input) : null;
+            int slot = insert(key, name, input.readLong(), input.readLong());
+            addCounts(slot, input.readInt(), input.readInt());
+        }
+    }
+
+    // Lowest success rate among the hosts with at least MIN_HOST_REQUESTS requests,
+    // ties broken by host name
+    void fillLowestSuccessRate(WindowsMetrics metrics) {
+        int lowestSlot = -1;
+        double lowestSuccessRate = 100;
+        boolean volumeFound = false;
+        for (int slot = 0; slot < size; slot++) {
+            int requestCount = successCounts[slot] + failureCounts[slot];
+            boolean hasVolume = requestCount >= MIN_HOST_REQUESTS;
+            if (requestCount == 0 || volumeFound && !hasVolume) {
+                continue;
+            }
+            double successRate = (double) successCounts[slot] * 100 / requestCount;
+            if (lowestSlot < 0 || hasVolume && !volumeFound
+                    || successRate < lowestSuccessRate || successRate == lowestSuccessRate
+                    && hostName(slot).compareTo(hostName(lowestSlot)) < 0) {
+                lowestSlot = slot;
+                lowestSuccessRate = successRate;
+            }
+            volumeFound |= hasVolume;
+        }
+        if (lowestSlot >= 0) {
+            metrics.setLowestSuccessRateHost(hostName(lowestSlot));
+            metrics.setLowestSuccessRate(lowestSuccessRate);
+        }
+    }
+
+    private String hostName(int slot) {
+        return names[slot] != null ? names[slot] : Ipv4.format(keys[slot]);
+    }
+
+    // Key of a host: its packed IPv4 address, or the tagged hash of its name, {address}
+    // being Ipv4.NONE. The keys of the names never collide with an address.
+    static long key(long address, String name) {
+        return address != Ipv4.NONE ? address : NAME_KEY | (name.hashCode() & 0xFFFFFFFFL);
+    }
+
+    // Highest volume of a host which is not tracked anymore
+    private long minVolume() {
+        return size < capacity ? 0 : volumes[heap.min()];
+    }
+
+    private void addCounts(int slot, int successCount, int failureCount) {
+        successCounts[slot] += successCount;
+        failureCounts[slot] += failureCount;
+    }
+
+    private int home(long key) {
+        return (int) HyperLogLog.hash(key) & indexMask;
+    }
+
+    // Slot of the host, -1 if it is not tracked
+    private int find(long key, String name) {
+        for (int i = home(key); indexKeys[i] != EMPTY; i = (i + 1) & indexMask) {
+            if (indexKeys[i] == key
+                    && (key < NAME_KEY || names[indexSlots[i]].equals(name))) {
+                return indexSlots[i];
+            }
+        }
+        return -1;
+    }
+
+    private int insert(long key, String name, long volume, long error) {
+        int slot = size++;
+        keys[slot] = key;
+        names[slot] = key < NAME_KEY ? null : name;
+        volumes[slot] = volume;
+        errors[slot] = error;
+        successCounts[slot] = 0;
+        failureCounts[slot] = 0;
+        index(key, slot);
+        heap.add(slot);
+        return slot;
+    }
+
+    // Reuse the slot of the host with the lowest volume
+    private int replaceMin(long key, String name) {
+        int slot = heap.min();
+        unindex(keys[slot], slot);
+        keys[slot] = key;
+        names[slot] = key < NAME_KEY ? null : name;
+        errors[slot] = volumes[slot];
+        successCounts[slot] = 0;
+        failureCounts[slot] = 0;
+        index(key, slot);
+        return slot;
+    }
+
+    private void index(long key, int slot) {
+        int i = home(key);
+        while (indexKeys[i] != EMPTY) {
+            i = (i + 1) & indexMask;
+        }
+        indexKeys[i] = key;
+        indexSlots[i] = slot;
+    }
+
+    // Backward shift deletion: the following keys are moved so that no probe sequence
+    // is broken by the freed position
+    private void unindex(long key, int slot) {
+        int hole = home(key);
+        while (indexSlots[hole] != slot || indexKeys[hole] != key) {
+            hole = (hole + 1) & indexMask;
+        }
+        int i = hole;
+        while (true) {
+            i = (i + 1) & indexMask;
+            if (indexKeys[i] == EMPTY) {
+                break;
+            }
+            int ideal = home(indexKeys[i]);
+            if (((i - ideal) & indexMask) >= ((i - hole) & indexMask)) {
+                indexKeys[hole] = indexKeys[i];
+                indexSlots[hole] = indexSlots[i];
+                hole = i;
+            }
+        }
+        indexKeys[hole] = EMPTY;
+    }
+}
@@ -0,0 +1,188 @@
+package fifiore.logmonitoring.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Local HTTP server of the live state, on a small pool of daemon threads:
+// GET /window   latest metrics window, in the JSON Lines format of the output
+// GET /alert    alert status and rolling hit average
+// GET /metrics  counters of the monitor in the Prometheus text format
+// The responses are encoded from the published snapshots, see LiveState.
+class HttpEndpoint implements AutoCloseable {
+
+    private static final int THREAD_COUNT = 2;
+    private static final String JSON = "application/json";
+    private static final String PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LiveState state;
+    private final PipelineStats stats;
+    private final JsonLinesSink json = new JsonLinesSink();
+
+    HttpEndpoint(InetSocketAddress address, LiveState state, PipelineStats stats)
+            throws IOException {
+        this.state = state;
+        this.stats = stats;
+        server = HttpServer.create(address, 0);
+        executor = Executors.newFixedThreadPool(THREAD_COUNT, runnable -> {
+            Thread thread = new Thread(runnable, "http-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/window", exchange -> respond(exchange, JSON, this::window));
+        server.createContext("/alert", exchange -> respond(exchange, JSON, this::alert));
+        server.createContext("/metrics",
+                exchange -> respond(exchange, PROMETHEUS, this::prometheus));
+    }
+
+    void start() {
+        server.start();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private static void respond(HttpExchange exchange, String contentType,
+            Consumer<OutputBuffer> body) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            OutputBuffer buffer = new OutputBuffer();
+            body.accept(buffer);
+            if (buffer.size() == 0) {
+                // Nothing published yet
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, buffer.size());
+            try (OutputStream output = exchange.getResponseBody()) {
+                buffer.writeTo(output);
+            }
+        }
+    }
+
+    private void window(OutputBuffer buffer) {
+        LiveState.WindowSnapshot window = state.getWindow();
+        if (window != null) {
+            json.metrics(window.getMetrics(), buffer);
+        }
+    }
+
+    private void alert(OutputBuffer buffer) {
+        LiveState.AlertSnapshot alert = state.getAlert();
+        if (alert == null) {
+            return;
+        }
+        buffer.writeText(alert.isAlert() ? "{\"alert\":true" : "{\"alert\":false");
+        buffer.writeText(",\"date\":");
+        buffer.writeDecimal(alert.getDate());
+        buffer.writeText(",\"hits\":");
+        buffer.writeDecimal(alert.getHitCountAverage());
+        buffer.writeText(",\"threshold\":");
+        buffer.writeDecimal(alert.getThreshold());
+        buffer.writeText(",\"transitions\":");
+        buffer.writeDecimal(alert.getTransitionCount());
+        buffer.writeText("}\n");
+    }
+
+    private void prometheus(OutputBuffer buffer) {
+        LiveState.WindowSnapshot window = state.getWindow();
+        LiveState.AlertSnapshot alert = state.getAlert();
+        metric(buffer, "logmonitoring_lines_read_total", "counter", "Log lines read",
+                stats.getLinesRead());
+        metric(buffer, "logmonitoring_invalid_lines_total", "counter",
+                "Log lines ignored because they could not be parsed", stats.getInvalidLines());
+        metric(buffer, "logmonitoring_windows_total", "counter", "Metrics windows emitted",
+                window != null ? window.getWindowCount() : 0);
+        metric(buffer, "logmonitoring_amended_windows_total", "counter",
+                "Metrics windows emitted again with late logs",
+                window != null ? window.getAmendedWindowCount() : 0);
+        if (window != null) {
+            metric(buffer, "logmonitoring_window_hits", "gauge",
+                    "Hits of the latest metrics window", window.getMetrics().getHitNB());
+            metric(buffer, "logmonitoring_window_end_timestamp_seconds", "gauge",
+                    "Last log date of the latest metrics window",
+                    window.getMetrics().getEndDate());
+        }
+        metric(buffer, "logmonitoring_alert_transitions_total", "counter",
+                "Traffic alerts raised or recovered",
+                alert != null ? alert.getTransitionCount() : 0);
+        if (alert != null) {
+            metric(buffer, "logmonitoring_alert_active", "gauge",
+                    "1 while the traffic alert is raised", alert.isAlert() ? 1 : 0);
+            metric(buffer, "logmonitoring_alert_hits_per_second", "gauge",
+                    "Average hits per second over the alert window", alert.getHitCountAverage());
+            metric(buffer, "logmonitoring_alert_threshold", "gauge",
+                    "Hits per second raising the traffic alert", alert.getThreshold());
+        }
+        header(buffer, "logmonitoring_queue_depth", "gauge", "Messages waiting in a queue");
+        queue(buffer, "logmonitoring_queue_depth", "logs", stats.getLogQueueDepth());
+        queue(buffer, "logmonitoring_queue_depth", "metrics", stats.getMetricsQueueDepth());
+        queue(buffer, "logmonitoring_queue_depth", "alerts", stats.getAlertQueueDepth());
+        if (stats.hasConsumerLags()) {
+            header(buffer, "logmonitoring_consumer_lag", "gauge",
+                    "Logs not read yet by a worker of the fan-out mode");
+            consumer(buffer, "logmonitoring_consumer_lag", "metrics",
+                    stats.getMetricsConsumerLag());
+            consumer(buffer, "logmonitoring_consumer_lag", "alerts",
+                    stats.getAlertConsumerLag());
+        }
+        header(buffer, "logmonitoring_queue_wait_p99_microseconds", "gauge",
+                "99th percentile of the wait of the sampled messages in a queue");
+        queue(buffer, "logmonitoring_queue_wait_p99_microseconds", "logs",
+                stats.getLogQueueLatencyP99());
+        queue(buffer, "logmonitoring_queue_wait_p99_microseconds", "metrics",
+                stats.getMetricsQueueLatencyP99());
+        queue(buffer, "logmonitoring_queue_wait_p99_microseconds", "alerts",
+                stats.getAlertQueueLatencyP99());
+        metric(buffer, "logmonitoring_metrics_window_max_microseconds", "gauge",
+                "Longest computation of a metrics window", stats.getMetricsWindowMaxTime());
+        metric(buffer, "logmonitoring_alert_window_max_microseconds", "gauge",
+                "Longest slide of the alert window", stats.getAlertWindowMaxTime());
+    }
+
+    private static void metric(OutputBuffer buffer, String name, String type, String help,
+            long value) {
+        header(buffer, name, type, help);
+        buffer.writeText(name);
+        buffer.write(' ');
+        buffer.writeDecimal(value);
+        buffer.write('\n');
+    }
+
+    private static void header(OutputBuffer buffer, String name, String type, String help) {
+        buffer.writeText("# HELP " + name + " " + help + "\n# TYPE " + name + " " + type
+                + "\n");
+    }
+
+    private static void queue(OutputBuffer buffer, String name, String queue, long value) {
+        buffer.writeText(name + "{queue=\"" + queue + "\"} ");
+        buffer.writeDecimal(value);
+        buffer.write('\n');
+    }
+
+    private static void consumer(OutputBuffer buffer, String name, String consumer,
+            long value) {
+        buffer.writeText(name + "{consumer=\"" + consumer + "\"} ");
+        buffer.writeDecimal(value);
+        buffer.write('\n');
+    }
+}
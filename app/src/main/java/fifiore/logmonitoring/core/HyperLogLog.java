@@ -0,0 +1,77 @@
+package fifiore.logmonitoring.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Estimate of the number of distinct values in a fixed memory of 2^PRECISION bytes,
+// with a standard error of 1.04 / sqrt(2^PRECISION), about 1.6%. Mergeable.
+class HyperLogLog {
+
+    private static final int PRECISION = 12;
+    private static final int REGISTER_COUNT = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+    // Highest rank of the hashes falling in each register
+    private final byte[] registers = new byte[REGISTER_COUNT];
+
+    // {hash} has to be uniformly distributed on 64 bits, see hash(long)
+    void add(long hash) {
+        int register = (int) (hash >>> (64 - PRECISION));
+        // Rank of the first 1 bit after the register bits, bounded by the guard bit
+        byte rank = (byte) (Long.numberOfLeadingZeros(hash << PRECISION | 1L << (PRECISION - 1))
+                + 1);
+        if (registers[register] < rank) {
+            registers[register] = rank;
+        }
+    }
+
+    void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.write(registers);
+    }
+
+    void read(DataInput input) throws IOException {
+        input.readFully(registers);
+    }
+
+    long estimate() {
+        double sum = 0;
+        int zeroCount = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeroCount++;
+            }
+        }
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if (estimate <= 2.5 * REGISTER_COUNT && zeroCount > 0) {
+            // Linear counting is more accurate for small cardinalities
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeroCount);
+        }
+        return Math.round(estimate);
+    }
+
+    // Final mix of MurmurHash3, spreading close values over the 64 bits
+    static long hash(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
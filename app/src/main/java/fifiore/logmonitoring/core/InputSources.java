@@ -0,0 +1,95 @@
+package fifiore.logmonitoring.core;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+// Inputs of the monitoring: a file, a glob pattern of files in a directory, the standard
+// input "-", or a local listener "tcp:[host:]port" or "udp:[host:]port".
+final class InputSources {
+
+    static final String TCP_PREFIX = "tcp:";
+    static final String UDP_PREFIX = "udp:";
+
+    private InputSources() {}
+
+    // A file or the standard input, read without merge
+    static boolean isSingleStream(String source) {
+        return !source.startsWith(TCP_PREFIX) && !source.startsWith(UDP_PREFIX)
+                && !isPattern(source);
+    }
+
+    // Every source merged by date. {streamReaders} reads a file or the standard input.
+    static MergingLogReader open(List<String> sources, long allowedLateness, char delimiter,
+            Function<String, LogReader> streamReaders) {
+        MergingLogReader reader = new MergingLogReader(allowedLateness);
+        for (String source : sources) {
+            try {
+                if (source.startsWith(TCP_PREFIX)) {
+                    ServerSocket server = new ServerSocket();
+                    server.bind(address(source.substring(TCP_PREFIX.length())));
+                    reader.addListener(source, server, delimiter);
+                } else if (source.startsWith(UDP_PREFIX)) {
+                    DatagramSocket socket =
+                            new DatagramSocket(address(source.substring(UDP_PREFIX.length())));
+                    reader.addSource(source, new UdpLogReader(socket, delimiter));
+                } else if (isPattern(source)) {
+                    for (Path file : matchingFiles(source)) {
+                        reader.addSource(file.toString(), streamReaders.apply(file.toString()));
+                    }
+                } else {
+                    reader.addSource(source, streamReaders.apply(source));
+                }
+            } catch (IOException | IllegalArgumentException exception) {
+                LogStream.err("Invalid source " + source + ": " + exception.getMessage());
+            }
+        }
+        return reader;
+    }
+
+    private static boolean isPattern(String source) {
+        return source.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    // The pattern only applies to the file names, in name order
+    private static List<Path> matchingFiles(String pattern) throws IOException {
+        Path path = Paths.get(pattern);
+        Path directory = path.getParent() != null ? path.getParent() : Paths.get(".");
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(directory, path.getFileName().toString())) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            LogStream.err("No file matches " + pattern);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    // [host:]port, the loopback address without host: the listeners and the endpoint are
+    // only reachable from other hosts when bound to an explicit host such as 0.0.0.0
+    static InetSocketAddress address(String value) {
+        int separator = value.lastIndexOf(':');
+        if (separator < 0) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    Integer.parseInt(value));
+        }
+        return new InetSocketAddress(value.substring(0, separator),
+                Integer.parseInt(value.substring(separator + 1)));
+    }
+}
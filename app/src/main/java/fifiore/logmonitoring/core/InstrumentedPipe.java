@@ -0,0 +1,95 @@
+package fifiore.logmonitoring.core;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Pipe measuring the time its messages wait, only used when the statistics are enabled.
+// One message out of {SAMPLE_PERIOD} is timed: its push time is kept by sequence number
+// and compared to the time the consumer reads the same sequence, the pipe being FIFO.
+class InstrumentedPipe<T> implements Pipe<T> {
+
+    static final int SAMPLE_PERIOD = 1 << 6;
+    // Timed messages kept at once, older ones are overwritten when the consumer lags
+    private static final int SAMPLE_SLOTS = 1 << 10;
+
+    private final Pipe<T> pipe;
+    private final LatencyHistogram latency;
+    private final AtomicLong pushed = new AtomicLong();
+    // Sequence and push time of the timed messages
+    private final AtomicLongArray sampleSequences = new AtomicLongArray(SAMPLE_SLOTS);
+    private final AtomicLongArray sampleTimes = new AtomicLongArray(SAMPLE_SLOTS);
+    // Only used by the consumer
+    private long read = 0;
+
+    InstrumentedPipe(Pipe<T> pipe, LatencyHistogram latency) {
+        this.pipe = pipe;
+        this.latency = latency;
+        for (int i = 0; i < SAMPLE_SLOTS; i++) {
+            sampleSequences.set(i, -1);
+        }
+    }
+
+    @Override
+    public void push(T message) {
+        long sequence = pushed.getAndIncrement();
+        if (sequence % SAMPLE_PERIOD == 0) {
+            int slot = (int) (sequence / SAMPLE_PERIOD % SAMPLE_SLOTS);
+            // The slot is invalid while it is written
+            sampleSequences.set(slot, -1);
+            sampleTimes.set(slot, System.nanoTime());
+            sampleSequences.set(slot, sequence);
+        }
+        pipe.push(message);
+    }
+
+    @Override
+    public Optional<T> read() {
+        Optional<T> message = pipe.read();
+        if (message.isPresent()) {
+            consumed(1);
+        }
+        return message;
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> batch, int maxCount) {
+        int count = pipe.drainTo(batch, maxCount);
+        if (count > 0) {
+            consumed(count);
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        pipe.close();
+    }
+
+    @Override
+    public int size() {
+        return pipe.size();
+    }
+
+    // Records the wait of the timed messages among the {count} messages read
+    private void consumed(int count) {
+        long first = (read + SAMPLE_PERIOD - 1) / SAMPLE_PERIOD * SAMPLE_PERIOD;
+        read += count;
+        if (first >= read) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (long sequence = first; sequence < read; sequence += SAMPLE_PERIOD) {
+            int slot = (int) (sequence / SAMPLE_PERIOD % SAMPLE_SLOTS);
+            if (sampleSequences.get(slot) != sequence) {
+                continue;
+            }
+            long time = sampleTimes.get(slot);
+            // Not overwritten while reading the time
+            if (sampleSequences.get(slot) == sequence) {
+                latency.record(now - time);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package fifiore.logmonitoring.core;
+
+import java.nio.charset.StandardCharsets;
+
+// IPv4 addresses packed in the low 32 bits of a long, -1 for a text which is not an address.
+// Only the canonical form is packed (no leading zero) so that formatting gives back the text.
+final class Ipv4 {
+
+    static final long NONE = -1;
+
+    private Ipv4() {}
+
+    static long parse(String text) {
+        // Longer than 255.255.255.255
+        if (text.length() > 15) {
+            return NONE;
+        }
+        // A character outside Latin-1 becomes '?', rejected like any other non-digit
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    static long parse(byte[] buffer, int start, int end) {
+        long address = 0;
+        int part = 0;
+        int digits = 0;
+        int partCount = 1;
+        for (int i = start; i < end; i++) {
+            byte c = buffer[i];
+            if (c == '.') {
+                if (digits == 0 || ++partCount > 4) {
+                    return NONE;
+                }
+                address = address << 8 | part;
+                part = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && !(digits == 1 && part == 0)) {
+                part = part * 10 + c - '0';
+                if (++digits > 3 || part > 255) {
+                    return NONE;
+                }
+            } else {
+                return NONE;
+            }
+        }
+        if (digits == 0 || partCount != 4) {
+            return NONE;
+        }
+        return address << 8 | part;
+    }
+
+    static String format(long address) {
+        return new StringBuilder(15).append(address >>> 24 & 0xFF).append('.')
+                .append(address >>> 16 & 0xFF).append('.').append(address >>> 8 & 0xFF)
+                .append('.').append(address & 0xFF).toString();
+    }
+}
@@ -0,0 +1,158 @@
+package fifiore.logmonitoring.core;
+
+import java.util.Map;
+
+// One JSON object per line, written field by field. Dates are in epoch seconds.
+// {"type":"metrics","start":..,"end":..,"hits":..,...}
+// {"type":"alert","date":..,"alert":true,"hits":..}
+class JsonLinesSink implements OutputSink {
+
+    @Override
+    public void metrics(WindowsMetrics metrics, OutputBuffer buffer) {
+        buffer.writeText("{\"type\":\"metrics\",\"start\":");
+        buffer.writeDecimal(metrics.getStartDate());
+        buffer.writeText(",\"end\":");
+        buffer.writeDecimal(metrics.getEndDate());
+        if (metrics.isAmended()) {
+            buffer.writeText(",\"amended\":true");
+        }
+        buffer.writeText(",\"hits\":");
+        buffer.writeDecimal(metrics.getHitNB());
+        if (metrics.getHitNB() > 0) {
+            sections(metrics, buffer);
+            operations(metrics, buffer);
+            buffer.writeText(",\"bytes\":");
+            bytes(metrics.getBytes(), buffer);
+            buffer.writeText(",\"successRate\":");
+            writeDouble(metrics.getSuccessRate(), buffer);
+            buffer.writeText(",\"lowestSuccessRateHost\":");
+            writeString(metrics.getLowestSuccessRateHost(), buffer);
+            buffer.writeText(",\"lowestSuccessRate\":");
+            writeDouble(metrics.getLowestSuccessRate(), buffer);
+            if (metrics.getDistinctHostCount() >= 0) {
+                buffer.writeText(",\"distinctHosts\":");
+                buffer.writeDecimal(metrics.getDistinctHostCount());
+            }
+        }
+        buffer.writeText("}\n");
+    }
+
+    @Override
+    public void alert(TrafficAlert alert, OutputBuffer buffer) {
+        buffer.writeText("{\"type\":\"alert\",\"date\":");
+        buffer.writeDecimal(alert.getDate());
+        buffer.writeText(alert.isAlert() ? ",\"alert\":true" : ",\"alert\":false");
+        if (alert.isAlert()) {
+            buffer.writeText(",\"hits\":");
+            buffer.writeDecimal(alert.getHitCountAverage());
+        }
+        buffer.writeText("}\n");
+    }
+
+    private static void sections(WindowsMetrics metrics, OutputBuffer buffer) {
+        buffer.writeText(",\"mostHitSections\":[");
+        for (int i = 0; i < metrics.getMostHitSections().size(); i++) {
+            if (i > 0) {
+                buffer.write(',');
+            }
+            writeString(metrics.getMostHitSections().get(i), buffer);
+        }
+        buffer.writeText("],\"mostHitSectionCount\":");
+        buffer.writeDecimal(metrics.getMostHitSectionCount());
+        if (!metrics.getTopSections().isEmpty()) {
+            buffer.writeText(",\"topSections\":[");
+            for (int i = 0; i < metrics.getTopSections().size(); i++) {
+                SectionCount section = metrics.getTopSections().get(i);
+                buffer.writeText(i > 0 ? ",{\"section\":" : "{\"section\":");
+                writeString(section.getSection(), buffer);
+                buffer.writeText(",\"count\":");
+                buffer.writeDecimal(section.getCount());
+                buffer.writeText(",\"error\":");
+                buffer.writeDecimal(section.getError());
+                buffer.write('}');
+            }
+            buffer.write(']');
+        }
+        buffer.writeText(",\"sectionBytes\":{");
+        boolean first = true;
+        for (Map.Entry<String, BytesSummary> entry : metrics.getBytesPerSection().entrySet()) {
+            if (!first) {
+                buffer.write(',');
+            }
+            first = false;
+            writeString(entry.getKey(), buffer);
+            buffer.write(':');
+            bytes(entry.getValue(), buffer);
+        }
+        buffer.write('}');
+    }
+
+    private static void operations(WindowsMetrics metrics, OutputBuffer buffer) {
+        buffer.writeText(",\"operations\":{");
+        boolean first = true;
+        for (HttpVerb.Values op : HttpVerb.Values.values()) {
+            if (op == HttpVerb.Values.NONE || metrics.getOperationCount()[op.ordinal()] == 0) {
+                continue;
+            }
+            buffer.writeText(first ? "\"" : ",\"");
+            first = false;
+            buffer.writeText(op.name());
+            buffer.writeText("\":");
+            buffer.writeDecimal(metrics.getOperationCount()[op.ordinal()]);
+        }
+        buffer.write('}');
+    }
+
+    private static void bytes(BytesSummary bytes, OutputBuffer buffer) {
+        buffer.writeText("{\"total\":");
+        buffer.writeDecimal(bytes.getTotal());
+        buffer.writeText(",\"p50\":");
+        buffer.writeDecimal(Math.round(bytes.getP50()));
+        buffer.writeText(",\"p95\":");
+        buffer.writeDecimal(Math.round(bytes.getP95()));
+        buffer.writeText(",\"p99\":");
+        buffer.writeDecimal(Math.round(bytes.getP99()));
+        buffer.write('}');
+    }
+
+    // JSON has no NaN nor infinity
+    private static void writeDouble(double value, OutputBuffer buffer) {
+        if (Double.isFinite(value)) {
+            buffer.writeText(Double.toString(value));
+        } else {
+            buffer.writeText("null");
+        }
+    }
+
+    private static void writeString(String value, OutputBuffer buffer) {
+        buffer.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                buffer.writeText(value.subSequence(start, i));
+                escape(c, buffer);
+                start = i + 1;
+            }
+        }
+        buffer.writeText(start == 0 ? value : value.subSequence(start, value.length()));
+        buffer.write('"');
+    }
+
+    private static void escape(char c, OutputBuffer buffer) {
+        buffer.write('\\');
+        if (c == '"' || c == '\\') {
+            buffer.write(c);
+        } else if (c == '\n') {
+            buffer.write('n');
+        } else if (c == '\r') {
+            buffer.write('r');
+        } else if (c == '\t') {
+            buffer.write('t');
+        } else {
+            buffer.writeText("u00");
+            buffer.write(Character.forDigit(c >> 4, 16));
+            buffer.write(Character.forDigit(c & 0xF, 16));
+        }
+    }
+}
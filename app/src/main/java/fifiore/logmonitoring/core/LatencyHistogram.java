@@ -0,0 +1,56 @@
+package fifiore.logmonitoring.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Durations in ns counted by power of two, recorded from any thread without lock.
+// Quantiles are the upper bound of their bucket: at most 2 times the real value.
+class LatencyHistogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long duration) {
+        long value = Math.max(0, duration);
+        // Bucket i holds [2^i, 2^(i+1)), and 0 is in the first one
+        buckets.incrementAndGet(value == 0 ? 0 : Long.SIZE - 1 - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    double mean() {
+        long total = count.sum();
+        return total > 0 ? (double) sum.sum() / total : 0;
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    // Upper bound of the bucket of the {q} quantile, 0 if empty
+    long quantile(double q) {
+        long total = 0;
+        long[] counts = new long[Long.SIZE];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long rank = (long) Math.ceil(q * total);
+        long cumulated = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulated += counts[i];
+            if (cumulated >= rank && cumulated > 0) {
+                return i >= Long.SIZE - 2 ? Long.MAX_VALUE : (2L << i) - 1;
+            }
+        }
+        return 0;
+    }
+}
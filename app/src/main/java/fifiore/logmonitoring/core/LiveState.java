@@ -0,0 +1,75 @@
+package fifiore.logmonitoring.core;
+
+import lombok.Getter;
+
+// Latest state of the monitor served by the HTTP endpoint.
+// Each stage publishes an immutable snapshot through a volatile reference: the endpoint
+// reads the last one without lock and never makes the pipeline wait.
+class LiveState {
+
+    // Written by the metrics output only, null before the first window
+    private volatile WindowSnapshot window = null;
+    // Written by the alerting only, on every slide of the alert window
+    private volatile AlertSnapshot alert = null;
+
+    @Getter
+    static final class WindowSnapshot {
+        // Not modified once emitted
+        private final WindowsMetrics metrics;
+        private final long windowCount;
+        private final long amendedWindowCount;
+
+        private WindowSnapshot(WindowsMetrics metrics, long windowCount,
+                long amendedWindowCount) {
+            this.metrics = metrics;
+            this.windowCount = windowCount;
+            this.amendedWindowCount = amendedWindowCount;
+        }
+    }
+
+    @Getter
+    static final class AlertSnapshot {
+        private final boolean isAlert;
+        // Last date of the alert window
+        private final long date;
+        // Rolling average of the hits per second over the alert window
+        private final int hitCountAverage;
+        private final int threshold;
+        private final long transitionCount;
+
+        private AlertSnapshot(boolean isAlert, long date, int hitCountAverage, int threshold,
+                long transitionCount) {
+            this.isAlert = isAlert;
+            this.date = date;
+            this.hitCountAverage = hitCountAverage;
+            this.threshold = threshold;
+            this.transitionCount = transitionCount;
+        }
+    }
+
+    WindowSnapshot getWindow() {
+        return window;
+    }
+
+    AlertSnapshot getAlert() {
+        return alert;
+    }
+
+    void windowEmitted(WindowsMetrics metrics) {
+        WindowSnapshot last = window;
+        long windowCount = last != null ? last.windowCount : 0;
+        long amendedWindowCount = last != null ? last.amendedWindowCount : 0;
+        window = new WindowSnapshot(metrics, windowCount + 1,
+                amendedWindowCount + (metrics.isAmended() ? 1 : 0));
+    }
+
+    void alertWindowSlid(boolean isAlert, long date, int hitCountAverage, int threshold) {
+        AlertSnapshot last = alert;
+        long transitionCount = last != null ? last.transitionCount : 0;
+        boolean wasAlert = last != null && last.isAlert;
+        if (wasAlert != isAlert) {
+            transitionCount++;
+        }
+        alert = new AlertSnapshot(isAlert, date, hitCountAverage, threshold, transitionCount);
+    }
+}
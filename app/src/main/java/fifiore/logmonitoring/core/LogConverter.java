@@ -0,0 +1,52 @@
+package fifiore.logmonitoring.core;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+
+// Converts a CSV access log into the columnar format, read many times faster by the
+// monitoring: the text is parsed once. The lines without a valid date are not converted.
+public class LogConverter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String input;
+    private final String output;
+
+    // {input} is a CSV file or the standard input "-"
+    public LogConverter(String input, String output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    public void execute() {
+        try (OutputStream stream =
+                new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE)) {
+            long[] counts = convert(new ByteCsvLogReader(input, ','), stream);
+            LogStream.err("Converted " + counts[0] + " logs, " + counts[1]
+                    + " invalid lines skipped");
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+    }
+
+    // Count of the converted logs and of the skipped lines
+    static long[] convert(LogReader reader, OutputStream stream) throws IOException {
+        long[] counts = new long[2];
+        try (ColumnarLogWriter writer = new ColumnarLogWriter(stream)) {
+            Optional<TrafficLog> log = reader.getLine();
+            while (log.isPresent()) {
+                if (log.get().getDate() == 0) {
+                    counts[1]++;
+                } else {
+                    writer.write(log.get());
+                    counts[0]++;
+                }
+                log = reader.getLine();
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,154 @@
+package fifiore.logmonitoring.core;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Writes a synthetic CSV access log, in the format read by the monitoring.
+// Lines are generated one date at a time: the memory used does not depend on the line count.
+public class LogGenerator {
+
+    static final String HEADER =
+            "\"remotehost\",\"rfc931\",\"authuser\",\"date\",\"request\",\"status\",\"bytes\"";
+
+    private static final String[] VERBS = {"GET", "POST", "PUT", "PATCH", "DELETE"};
+    // Cumulated share of each verb
+    private static final int[] VERB_WEIGHTS = {70, 85, 93, 96, 100};
+    private static final int[] ERROR_STATUS = {400, 401, 403, 404, 500, 503};
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final GeneratorOptions options;
+    private final SplittableRandom random;
+    // Cumulated probability of each section, for the Zipf distribution
+    private final double[] sectionDistribution;
+    private final StringBuilder line = new StringBuilder(128);
+
+    public LogGenerator(GeneratorOptions options) {
+        this.options = options;
+        this.random = new SplittableRandom(options.getSeed());
+        this.sectionDistribution = zipfDistribution(Math.max(1, options.getSectionCount()),
+                options.getZipfExponent());
+    }
+
+    public void execute() {
+        try {
+            if ("-".equals(options.getOutput())) {
+                // Written without the buffering of System.out, and not closed
+                write(new FileOutputStream(FileDescriptor.out));
+            } else {
+                try (OutputStream stream = new FileOutputStream(options.getOutput())) {
+                    write(stream);
+                }
+            }
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+    }
+
+    // {stream} is flushed but not closed
+    void write(OutputStream stream) throws IOException {
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(stream, StandardCharsets.US_ASCII), BUFFER_SIZE);
+        writer.write(HEADER);
+        writer.write('\n');
+
+        long lineCount = options.getLineCount();
+        long written = 0;
+        long startTime = System.nanoTime();
+        long date = options.getStartDate();
+        while (lineCount <= 0 || written < lineCount) {
+            long count = logCount(date);
+            if (lineCount > 0) {
+                count = Math.min(count, lineCount - written);
+            }
+            for (long i = 0; i < count; i++) {
+                line.setLength(0);
+                appendLine(line, date);
+                writer.append(line);
+            }
+            written += count;
+            date++;
+            if (options.getThroughput() > 0) {
+                writer.flush();
+                throttle(startTime, written);
+            }
+        }
+        writer.flush();
+    }
+
+    // Number of logs dated {date}
+    long logCount(long date) {
+        long second = date - options.getStartDate();
+        if (options.getBurstPeriod() > 0 && second % options.getBurstPeriod()
+                >= options.getBurstPeriod() - options.getBurstLength()) {
+            return (long) options.getRate() * options.getBurstFactor();
+        }
+        return options.getRate();
+    }
+
+    void appendLine(StringBuilder text, long date) {
+        int host = random.nextInt(Math.max(1, options.getHostCount()));
+        int section = nextSection();
+        long logDate = date;
+        if (options.getJitter() > 0 && random.nextInt(10) == 0) {
+            // Late log
+            logDate -= 1 + random.nextInt(options.getJitter());
+        }
+        int status = random.nextDouble() < options.getErrorRate()
+                ? ERROR_STATUS[random.nextInt(ERROR_STATUS.length)]
+                : 200;
+
+        text.append("\"10.").append((host >>> 16) & 0xFF).append('.')
+                .append((host >>> 8) & 0xFF).append('.').append(host & 0xFF)
+                .append("\",\"-\",\"apache\",").append(logDate).append(",\"")
+                .append(nextVerb()).append(" /section").append(section)
+                .append("/page").append(random.nextInt(100)).append(" HTTP/1.0\",")
+                .append(status).append(',').append(100 + random.nextInt(5000)).append('\n');
+    }
+
+    private int nextSection() {
+        int index = Arrays.binarySearch(sectionDistribution, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, sectionDistribution.length - 1);
+    }
+
+    private String nextVerb() {
+        int value = random.nextInt(VERB_WEIGHTS[VERB_WEIGHTS.length - 1]);
+        int verb = 0;
+        while (value >= VERB_WEIGHTS[verb]) {
+            verb++;
+        }
+        return VERBS[verb];
+    }
+
+    private void throttle(long startTime, long written) {
+        long expectedTime = startTime
+                + written * TimeUnit.SECONDS.toNanos(1) / options.getThroughput();
+        long delay = expectedTime - System.nanoTime();
+        if (delay > 0) {
+            LockSupport.parkNanos(delay);
+        }
+    }
+
+    // Probability of the rank k proportional to 1 / k^exponent
+    private static double[] zipfDistribution(int count, double exponent) {
+        double[] distribution = new double[count];
+        double total = 0;
+        for (int k = 0; k < count; k++) {
+            total += 1 / Math.pow(k + 1.0, exponent);
+            distribution[k] = total;
+        }
+        for (int k = 0; k < count; k++) {
+            distribution[k] /= total;
+        }
+        return distribution;
+    }
+}
@@ -0,0 +1,9 @@
+package fifiore.logmonitoring.core;
+
+import java.util.Optional;
+
+interface LogReader {
+
+    // Next log of the stream, empty at the end of the stream
+    Optional<TrafficLog> getLine();
+}
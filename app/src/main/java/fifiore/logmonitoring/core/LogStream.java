@@ -3,14 +3,6 @@ package fifiore.logmonitoring.core;
 public class LogStream {
     private LogStream() {}
 
-    public static void out(String message) {
-        System.out.println(message);
-    }
-
-    public static void out(int value) {
-        System.out.println(value);
-    }
-
     public static void err(String message) {
         System.err.println(message);
     }
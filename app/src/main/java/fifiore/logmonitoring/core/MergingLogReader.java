@@ -0,0 +1,237 @@
+package fifiore.logmonitoring.core;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Merges the logs of several sources into one stream ordered by date.
+// Each source is read on its own thread. The oldest pending log is emitted once every
+// running source has a pending log (k-way merge): the dates of the sources are the
+// watermark of the merge. A source without pending log only holds the merge back for
+// {allowedLateness} ms, then it is ignored until it sends logs again, so that a slow or
+// idle source does not stop the stream. Its logs received later are still emitted.
+// A source has at most {SOURCE_CAPACITY} logs received and not emitted yet, its thread
+// waits for the merge beyond: the merge of a late source with an early one holds a few
+// logs of each in memory, not the whole early source.
+class MergingLogReader implements LogReader {
+
+    private static final int QUEUE_CAPACITY = 1 << 14;
+    private static final int BATCH_SIZE = 1 << 10;
+    static final int SOURCE_CAPACITY = 1 << 12;
+    // Source of the message waking up the merge when a listener stops
+    private static final int NO_SOURCE = -1;
+
+    private final long allowedLateness; // ns
+    // Logs of the source threads, a null log at the end of a source
+    private final BlockingQueue<SourceLog> received = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<SourceLog> batch = new ArrayList<>(BATCH_SIZE);
+    private final PriorityQueue<SourceLog> pending = new PriorityQueue<>();
+    private long sequence = 0;
+
+    // Sources state, guarded by this
+    private int sourceCount = 0;
+    private int[] pendingCount = new int[4];
+    private boolean[] ended = new boolean[4];
+    // Time since when each source has no pending log
+    private long[] waitedSince = new long[4];
+    // Logs each source may still send before one of its logs is emitted
+    private Semaphore[] credits = new Semaphore[4];
+    private int runningSourceCount = 0;
+    // Running sources without pending log
+    private int waitedSourceCount = 0;
+    // Servers adding sources, the stream does not end while they run
+    private int listenerCount = 0;
+
+    MergingLogReader(long allowedLateness) {
+        this.allowedLateness = TimeUnit.MILLISECONDS.toNanos(allowedLateness);
+    }
+
+    void addSource(String name, LogReader reader) {
+        Semaphore sourceCredits = new Semaphore(SOURCE_CAPACITY);
+        int source = register(sourceCredits);
+        Thread thread = new Thread(() -> readSource(source, name, reader, sourceCredits),
+                "source-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Every connection accepted by {server} is a source sending CSV lines with their header
+    void addListener(String name, ServerSocket server, char delimiter) {
+        synchronized (this) {
+            listenerCount++;
+        }
+        Thread thread = new Thread(() -> accept(name, server, delimiter), "listener-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public Optional<TrafficLog> getLine() {
+        while (true) {
+            long timeout = -1;
+            synchronized (this) {
+                if (!pending.isEmpty()) {
+                    timeout = remainingWait();
+                    if (timeout == 0) {
+                        return Optional.of(emit());
+                    }
+                } else if (runningSourceCount == 0 && listenerCount == 0 && received.isEmpty()) {
+                    return Optional.empty();
+                }
+            }
+            if (!receive(timeout)) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    private synchronized int register(Semaphore sourceCredits) {
+        if (sourceCount == pendingCount.length) {
+            pendingCount = Arrays.copyOf(pendingCount, sourceCount * 2);
+            ended = Arrays.copyOf(ended, sourceCount * 2);
+            waitedSince = Arrays.copyOf(waitedSince, sourceCount * 2);
+            credits = Arrays.copyOf(credits, sourceCount * 2);
+        }
+        credits[sourceCount] = sourceCredits;
+        waitedSince[sourceCount] = System.nanoTime();
+        runningSourceCount++;
+        waitedSourceCount++;
+        return sourceCount++;
+    }
+
+    // Time the merge still waits for the sources without pending log, 0 if it does not wait
+    private long remainingWait() {
+        if (waitedSourceCount == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long remaining = 0;
+        for (int source = 0; source < sourceCount; source++) {
+            if (!ended[source] && pendingCount[source] == 0) {
+                remaining = Math.max(remaining, waitedSince[source] + allowedLateness - now);
+            }
+        }
+        return remaining;
+    }
+
+    // Waits for logs of the sources, at most {timeout} ns if positive, false if interrupted
+    private boolean receive(long timeout) {
+        try {
+            SourceLog first = timeout < 0
+                    ? received.take()
+                    : received.poll(timeout, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                return true;
+            }
+            batch.add(first);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        received.drainTo(batch, BATCH_SIZE - 1);
+        synchronized (this) {
+            for (SourceLog sourceLog : batch) {
+                if (sourceLog.source == NO_SOURCE) {
+                    continue;
+                }
+                if (sourceLog.log == null) {
+                    ended[sourceLog.source] = true;
+                    runningSourceCount--;
+                    if (pendingCount[sourceLog.source] == 0) {
+                        waitedSourceCount--;
+                    }
+                    continue;
+                }
+                sourceLog.sequence = sequence++;
+                pending.add(sourceLog);
+                if (pendingCount[sourceLog.source]++ == 0 && !ended[sourceLog.source]) {
+                    waitedSourceCount--;
+                }
+            }
+        }
+        batch.clear();
+        return true;
+    }
+
+    private TrafficLog emit() {
+        SourceLog first = pending.poll();
+        credits[first.source].release();
+        if (--pendingCount[first.source] == 0 && !ended[first.source]) {
+            waitedSourceCount++;
+            waitedSince[first.source] = System.nanoTime();
+        }
+        return first.log;
+    }
+
+    // The end of the source is always sent, the merge waits for it otherwise
+    private void readSource(int source, String name, LogReader reader,
+            Semaphore sourceCredits) {
+        try {
+            Optional<TrafficLog> log = reader.getLine();
+            while (log.isPresent()) {
+                sourceCredits.acquire();
+                received.put(new SourceLog(source, log.get()));
+                log = reader.getLine();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException exception) {
+            LogStream.err("Input " + name + " stopped: " + exception);
+        } finally {
+            try {
+                received.put(new SourceLog(source, null));
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void accept(String name, ServerSocket server, char delimiter) {
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                addSource(name + "-" + socket.getRemoteSocketAddress(),
+                        new ByteCsvLogReader(socket.getInputStream(), delimiter));
+            }
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+        synchronized (this) {
+            listenerCount--;
+        }
+        // Wakes up the merge which may be waiting for this listener
+        try {
+            received.put(new SourceLog(NO_SOURCE, null));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class SourceLog implements Comparable<SourceLog> {
+        private final int source;
+        // null at the end of the source
+        private final TrafficLog log;
+        // Reception order, to keep the order of logs with the same date
+        private long sequence;
+
+        SourceLog(int source, TrafficLog log) {
+            this.source = source;
+            this.log = log;
+        }
+
+        @Override
+        public int compareTo(SourceLog other) {
+            int compare = Long.compare(log.getDate(), other.log.getDate());
+            return compare != 0 ? compare : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package fifiore.logmonitoring.core;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
-class MessageChannel<T> {
+class MessageChannel<T> implements Pipe<T> {
 
     private final BlockingQueue<Optional<T>> queue = new LinkedBlockingQueue<>();
+    // End of stream read by the consumer
+    private boolean closed = false;
 
-    void push(T message) {
+    @Override
+    public void push(T message) {
         try {
             queue.put(Optional.of(message));
         } catch (InterruptedException exception) {
@@ -17,9 +21,15 @@ class MessageChannel<T> {
         }
     }
 
-    Optional<T> read() {
+    @Override
+    public Optional<T> read() {
+        if (closed) {
+            return Optional.empty();
+        }
         try {
-            return queue.take();
+            Optional<T> message = queue.take();
+            closed = message.isEmpty();
+            return message;
         } catch (InterruptedException exception) {
             LogStream.err(exception);
             Thread.currentThread().interrupt();
@@ -27,7 +37,36 @@ class MessageChannel<T> {
         return Optional.empty();
     }
 
-    void close() {
+    @Override
+    public int drainTo(Collection<? super T> batch, int maxCount) {
+        Optional<T> message = read();
+        if (message.isEmpty()) {
+            return -1;
+        }
+        batch.add(message.get());
+        int count = 1;
+        while (count < maxCount) {
+            message = queue.poll();
+            if (message == null) {
+                break;
+            }
+            if (message.isEmpty()) {
+                closed = true;
+                break;
+            }
+            batch.add(message.get());
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
         try {
             queue.put(Optional.empty());
         } catch (InterruptedException exception) {
@@ -0,0 +1,381 @@
+package fifiore.logmonitoring.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Counters of a set of logs, mergeable with other aggregates
+class MetricsAggregate {
+
+    // Sections tracked by the top sections summary for each reported one
+    private static final int SKETCH_CAPACITY_FACTOR = 10;
+
+    private int hitCount = 0;
+    // Response bytes of every section by section id, which also count its hits,
+    // when there is no top sections summary
+    private QuantileSketch[] hitPerSection = new QuantileSketch[0];
+    // Ids of the sections counted since the last clear
+    private int[] countedSections = new int[16];
+    private int countedSectionCount = 0;
+    // Ids of the sections counted before the last clear: their sketches are kept for the
+    // next counts, and released at the next clear if the section is not counted again
+    private int[] keptSections = new int[16];
+    private int keptSectionCount = 0;
+    // Same for the sections without id, by text
+    private final Map<String, QuantileSketch> hitPerSectionText = new HashMap<>();
+    private final QuantileSketch bytes = new QuantileSketch();
+    // Approximate counts of the most hit sections, null in exact mode
+    private final SpaceSavingSketch topSections;
+    private final int topSectionCount;
+    private final int[] operationCount = new int[HttpVerb.Values.NONE.ordinal()];
+    // Successes/failures by remote host, when there is no host table
+    private final Map<String, StatusCount> statsPerRemoteHost = new HashMap<>();
+    // Bounded host statistics, null in exact mode
+    private final HostTable hostTable;
+    private final HyperLogLog distinctHosts;
+    private int successCount = 0;
+    private int requestCount = 0;
+
+    MetricsAggregate() {
+        this(0, 0);
+    }
+
+    // {topSectionCount} most hit sections reported with a bounded memory, 0 for exact counts.
+    // {hostTableSize} remote hosts tracked at most, 0 to track every host.
+    MetricsAggregate(int topSectionCount, int hostTableSize) {
+        this.topSectionCount = topSectionCount;
+        this.topSections = topSectionCount > 0
+                ? new SpaceSavingSketch(topSectionCount * SKETCH_CAPACITY_FACTOR)
+                : null;
+        this.hostTable = hostTableSize > 0 ? new HostTable(hostTableSize) : null;
+        this.distinctHosts = hostTableSize > 0 ? new HyperLogLog() : null;
+    }
+
+    void add(TrafficLog log) {
+        hitCount++;
+        bytes.add(log.getBytes());
+        int section = log.getSection();
+        if (topSections != null) {
+            topSections.add(log.getSectionText(), log.getBytes());
+        } else if (section != Sections.NONE) {
+            sectionSketch(section).add(log.getBytes());
+        } else {
+            hitPerSectionText.computeIfAbsent(log.getSectionText(), key -> new QuantileSketch())
+                    .add(log.getBytes());
+        }
+        // Aggregate hits per HTTP verb (PUT,GET...)
+        HttpVerb.Values httpVerb = log.getVerb();
+        if (httpVerb != HttpVerb.Values.NONE) {
+            operationCount[httpVerb.ordinal()]++;
+        }
+        if (log.getStatus() > 0 && hostTable != null) {
+            addHost(log);
+        } else if (log.getStatus() > 0) {
+            StatusCount status = statusCount(log.getRemoteHost());
+            if (log.getStatus() < 300) {
+                status.setSuccessCount(status.getSuccessCount() + 1);
+            } else {
+                status.setFailureCount(status.getFailureCount() + 1);
+            }
+        }
+    }
+
+    void merge(MetricsAggregate other) {
+        hitCount += other.hitCount;
+        bytes.merge(other.bytes);
+        if (topSections != null) {
+            topSections.merge(other.topSections);
+        }
+        for (int i = 0; i < other.countedSectionCount; i++) {
+            int section = other.countedSections[i];
+            sectionSketch(section).merge(other.hitPerSection[section]);
+        }
+        for (Map.Entry<String, QuantileSketch> entry : other.hitPerSectionText.entrySet()) {
+            hitPerSectionText.computeIfAbsent(entry.getKey(), key -> new QuantileSketch())
+                    .merge(entry.getValue());
+        }
+        for (int i = 0; i < operationCount.length; i++) {
+            operationCount[i] += other.operationCount[i];
+        }
+        if (hostTable != null) {
+            hostTable.merge(other.hostTable);
+            distinctHosts.merge(other.distinctHosts);
+            successCount += other.successCount;
+            requestCount += other.requestCount;
+        }
+        for (Map.Entry<String, StatusCount> entry : other.statsPerRemoteHost.entrySet()) {
+            StatusCount status = statusCount(entry.getKey());
+            status.setSuccessCount(status.getSuccessCount() + entry.getValue().getSuccessCount());
+            status.setFailureCount(status.getFailureCount() + entry.getValue().getFailureCount());
+        }
+    }
+
+    void clear() {
+        hitCount = 0;
+        bytes.clear();
+        clearSections();
+        hitPerSectionText.clear();
+        if (topSections != null) {
+            topSections.clear();
+        }
+        statsPerRemoteHost.clear();
+        if (hostTable != null) {
+            hostTable.clear();
+            distinctHosts.clear();
+            successCount = 0;
+            requestCount = 0;
+        }
+        for (int i = 0; i < operationCount.length; i++) {
+            operationCount[i] = 0;
+        }
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeInt(hitCount);
+        bytes.write(output);
+        output.writeInt(countedSectionCount + hitPerSectionText.size());
+        for (int i = 0; i < countedSectionCount; i++) {
+            Checkpoint.writeText(Sections.text(countedSections[i]), output);
+            hitPerSection[countedSections[i]].write(output);
+        }
+        for (Map.Entry<String, QuantileSketch> entry : hitPerSectionText.entrySet()) {
+            Checkpoint.writeText(entry.getKey(), output);
+            entry.getValue().write(output);
+        }
+        if (topSections != null) {
+            topSections.write(output);
+        }
+        for (int count : operationCount) {
+            output.writeInt(count);
+        }
+        output.writeInt(statsPerRemoteHost.size());
+        for (Map.Entry<String, StatusCount> entry : statsPerRemoteHost.entrySet()) {
+            Checkpoint.writeText(entry.getKey(), output);
+            output.writeInt(entry.getValue().getSuccessCount());
+            output.writeInt(entry.getValue().getFailureCount());
+        }
+        if (hostTable != null) {
+            hostTable.write(output);
+            distinctHosts.write(output);
+            output.writeInt(successCount);
+            output.writeInt(requestCount);
+        }
+    }
+
+    // Replaces the content with an aggregate of the same parameters written by write()
+    void read(DataInput input) throws IOException {
+        clear();
+        hitCount = input.readInt();
+        bytes.read(input);
+        int sectionCount = input.readInt();
+        for (int i = 0; i < sectionCount; i++) {
+            String text = Checkpoint.readText(input);
+            int section = Sections.id(text);
+            QuantileSketch sketch = section != Sections.NONE
+                    ? sectionSketch(section)
+                    : hitPerSectionText.computeIfAbsent(text, key -> new QuantileSketch());
+            sketch.read(input);
+        }
+        if (topSections != null) {
+            topSections.read(input);
+        }
+        for (int i = 0; i < operationCount.length; i++) {
+            operationCount[i] = input.readInt();
+        }
+        int hostCount = input.readInt();
+        for (int i = 0; i < hostCount; i++) {
+            StatusCount status = statusCount(Checkpoint.readText(input));
+            status.setSuccessCount(input.readInt());
+            status.setFailureCount(input.readInt());
+        }
+        if (hostTable != null) {
+            hostTable.read(input);
+            distinctHosts.read(input);
+            successCount = input.readInt();
+            requestCount = input.readInt();
+        }
+    }
+
+    void fill(WindowsMetrics metrics) {
+        metrics.setHitNB(hitCount);
+        metrics.setBytes(new BytesSummary(bytes));
+        if (topSections != null) {
+            computeTopSections(metrics);
+        } else {
+            computeMostHitSections(metrics);
+        }
+        System.arraycopy(operationCount, 0, metrics.getOperationCount(), 0,
+                operationCount.length);
+        if (hostTable != null) {
+            computeHostEstimates(metrics);
+        } else {
+            computeSuccessRate(metrics);
+        }
+    }
+
+    private void addHost(TrafficLog log) {
+        boolean success = log.getStatus() < 300;
+        long address = log.getRemoteAddress();
+        String name = address == Ipv4.NONE ? log.getRemoteHost() : null;
+        hostTable.add(address, name, success);
+        distinctHosts.add(HyperLogLog.hash(HostTable.key(address, name)));
+        requestCount++;
+        if (success) {
+            successCount++;
+        }
+    }
+
+    // Keeps the sketches of the sections counted since the last clear only, so that the
+    // memory follows the sections of the recent logs rather than every section ever read
+    private void clearSections() {
+        for (int i = 0; i < keptSectionCount; i++) {
+            int section = keptSections[i];
+            if (hitPerSection[section].getCount() == 0) {
+                hitPerSection[section] = null;
+            }
+        }
+        int highestSection = -1;
+        for (int i = 0; i < countedSectionCount; i++) {
+            hitPerSection[countedSections[i]].clear();
+            highestSection = Math.max(highestSection, countedSections[i]);
+        }
+        if (hitPerSection.length > 2 * (highestSection + 1)) {
+            hitPerSection = Arrays.copyOf(hitPerSection, highestSection + 1);
+        }
+        int[] sections = keptSections;
+        keptSections = countedSections;
+        keptSectionCount = countedSectionCount;
+        countedSections = sections;
+        countedSectionCount = 0;
+    }
+
+    // Sketch of a section counted since the last clear
+    private QuantileSketch sectionSketch(int section) {
+        if (section >= hitPerSection.length) {
+            hitPerSection = Arrays.copyOf(hitPerSection,
+                    Math.max(section + 1, hitPerSection.length * 2));
+        }
+        QuantileSketch sketch = hitPerSection[section];
+        if (sketch == null) {
+            sketch = new QuantileSketch();
+            hitPerSection[section] = sketch;
+        }
+        if (sketch.getCount() == 0) {
+            if (countedSectionCount == countedSections.length) {
+                countedSections = Arrays.copyOf(countedSections, countedSectionCount * 2);
+            }
+            countedSections[countedSectionCount++] = section;
+        }
+        return sketch;
+    }
+
+    private StatusCount statusCount(String host) {
+        StatusCount status = statsPerRemoteHost.get(host);
+        if (status == null) {
+            status = new StatusCount();
+            statsPerRemoteHost.put(host, status);
+        }
+        return status;
+    }
+
+    static String extractSection(String request) {
+        String[] elements = request.split(" ");
+        if (elements.length != 3) {
+            return "";
+        }
+
+        String[] sectionElements = elements[1].split("/");
+        if (sectionElements.length < 2) {
+            return "";
+        }
+        return "/" + sectionElements[1];
+    }
+
+    private void computeMostHitSections(WindowsMetrics metrics) {
+        long highestCount = 0;
+        for (int i = 0; i < countedSectionCount; i++) {
+            highestCount = Math.max(highestCount,
+                    hitPerSection[countedSections[i]].getCount());
+        }
+        for (QuantileSketch sketch : hitPerSectionText.values()) {
+            highestCount = Math.max(highestCount, sketch.getCount());
+        }
+        // Tied sections in alphabetical order, their texts only built for the leaders
+        Map<String, QuantileSketch> mostHitSections = new TreeMap<>();
+        for (int i = 0; i < countedSectionCount; i++) {
+            QuantileSketch sketch = hitPerSection[countedSections[i]];
+            if (sketch.getCount() == highestCount) {
+                mostHitSections.put(Sections.text(countedSections[i]), sketch);
+            }
+        }
+        for (Map.Entry<String, QuantileSketch> entry : hitPerSectionText.entrySet()) {
+            if (entry.getValue().getCount() == highestCount) {
+                mostHitSections.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, QuantileSketch> entry : mostHitSections.entrySet()) {
+            metrics.getMostHitSections().add(entry.getKey());
+            metrics.getBytesPerSection().put(entry.getKey(), new BytesSummary(entry.getValue()));
+        }
+        metrics.setMostHitSectionCount((int) highestCount);
+    }
+
+    private void computeTopSections(WindowsMetrics metrics) {
+        List<SectionCount> top = topSections.top(topSectionCount);
+        metrics.getTopSections().addAll(top);
+        for (SectionCount section : top) {
+            metrics.getBytesPerSection().put(section.getSection(),
+                    new BytesSummary(topSections.bytes(section.getSection())));
+        }
+        // Leaders by estimated count, already in alphabetical order
+        if (!top.isEmpty()) {
+            long highestCount = top.get(0).getCount();
+            for (SectionCount section : top) {
+                if (section.getCount() == highestCount) {
+                    metrics.getMostHitSections().add(section.getSection());
+                }
+            }
+            metrics.setMostHitSectionCount((int) highestCount);
+        }
+    }
+
+    private void computeHostEstimates(WindowsMetrics metrics) {
+        if (requestCount > 0) {
+            metrics.setSuccessRate((double) (successCount) * 100 / requestCount);
+            hostTable.fillLowestSuccessRate(metrics);
+            metrics.setDistinctHostCount(distinctHosts.estimate());
+        }
+    }
+
+    private void computeSuccessRate(WindowsMetrics metrics) {
+        int successCount = 0;
+        int requestCount = 0;
+        String lowestSuccessRateHost = "";
+        double lowestSuccessRate = 100;
+        for (Map.Entry<String, StatusCount> entry : statsPerRemoteHost.entrySet()) {
+            int hostRequestCount =
+                    entry.getValue().getSuccessCount() + entry.getValue().getFailureCount();
+            double hostSuccessRate =
+                    (double) (entry.getValue().getSuccessCount()) * 100 / hostRequestCount;
+            // Ties broken by host name so that the result does not depend on the merge order
+            if (hostSuccessRate < lowestSuccessRate || hostSuccessRate == lowestSuccessRate
+                    && entry.getKey().compareTo(lowestSuccessRateHost) < 0) {
+                lowestSuccessRate = hostSuccessRate;
+                lowestSuccessRateHost = entry.getKey();
+            }
+            requestCount += hostRequestCount;
+            successCount += entry.getValue().getSuccessCount();
+        }
+        if (requestCount > 0) {
+            double successRate = (double) (successCount) * 100 / requestCount;
+            metrics.setSuccessRate(successRate);
+            metrics.setLowestSuccessRateHost(lowestSuccessRateHost);
+            metrics.setLowestSuccessRate(lowestSuccessRate);
+        }
+    }
+}
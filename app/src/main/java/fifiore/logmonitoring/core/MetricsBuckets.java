@@ -0,0 +1,65 @@
+package fifiore.logmonitoring.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+// Ring buffer of per-second aggregates, the bucket of a date is at {date % capacity}.
+// The caller has to keep the stored dates within {capacity} seconds.
+class MetricsBuckets {
+
+    private final MetricsAggregate[] buckets;
+    private final long[] bucketDates;
+
+    MetricsBuckets(int capacity, Supplier<MetricsAggregate> aggregates) {
+        buckets = new MetricsAggregate[capacity];
+        bucketDates = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            buckets[i] = aggregates.get();
+        }
+    }
+
+    void add(TrafficLog log) {
+        int index = index(log.getDate());
+        if (bucketDates[index] != log.getDate()) {
+            // The bucket holds an older date which is not needed anymore
+            buckets[index].clear();
+            bucketDates[index] = log.getDate();
+        }
+        buckets[index].add(log);
+    }
+
+    // Merge the buckets of the dates in [startDate, endDate]
+    void collect(long startDate, long endDate, MetricsAggregate window) {
+        for (long date = startDate; date <= endDate; date++) {
+            int index = index(date);
+            if (bucketDates[index] == date) {
+                window.merge(buckets[index]);
+            }
+        }
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeInt(buckets.length);
+        for (int i = 0; i < buckets.length; i++) {
+            output.writeLong(bucketDates[i]);
+            buckets[i].write(output);
+        }
+    }
+
+    // Replaces the content with buckets of the same capacity written by write()
+    void read(DataInput input) throws IOException {
+        if (input.readInt() != buckets.length) {
+            throw new IOException("Different bucket capacity");
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            bucketDates[i] = input.readLong();
+            buckets[i].read(input);
+        }
+    }
+
+    private int index(long date) {
+        return (int) (date % buckets.length);
+    }
+}
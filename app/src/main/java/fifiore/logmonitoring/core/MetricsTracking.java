@@ -1,28 +1,57 @@
 package fifiore.logmonitoring.core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-import lombok.Getter;
-import lombok.Setter;
+import java.util.TreeSet;
+import java.util.function.Supplier;
 
 class MetricsTracking {
 
-    private final MessageChannel<WindowsMetrics> outputPipe;
+    private final Pipe<WindowsMetrics> outputPipe;
     private int windowSize = 0;
     private int waitDelay = 0;
+    // Seconds after its end a window is still amended by late logs, see storeLateLog
+    private int allowedLateness = 0;
     private long windowStartTime = 0;
+    // Creates the empty aggregates of the buckets and the windows
+    private final Supplier<MetricsAggregate> aggregates;
 
-    // TreeMap + most recent date for the moving time window
+    // Per-second aggregates + most recent date for the moving time window
     private long mostRecentDate = 0;
-    private final TreeMap<Long, List<TrafficLog>> logs = new TreeMap<>();
+    private final MetricsBuckets buckets;
+    // Start of the windows to emit again with late logs
+    private final TreeSet<Long> amendedWindows = new TreeSet<>();
+    private long lateLogCount = 0;
+    private long droppedLogCount = 0;
+    // Time to compute each window when the statistics are enabled, else null
+    private LatencyHistogram windowTimes = null;
 
-    MetricsTracking(MessageChannel<WindowsMetrics> outputPipe, int windowSize, int waitDelay) {
+    // Logs received before the start of the first window is known
+    private final List<TrafficLog> firstLogs = new ArrayList<>();
+    private long firstDate = 0;
+
+    MetricsTracking(Pipe<WindowsMetrics> outputPipe, int windowSize, int waitDelay) {
+        this(outputPipe, windowSize, waitDelay, MetricsAggregate::new);
+    }
+
+    MetricsTracking(Pipe<WindowsMetrics> outputPipe, int windowSize, int waitDelay,
+            Supplier<MetricsAggregate> aggregates) {
+        this(outputPipe, windowSize, waitDelay, 0, aggregates);
+    }
+
+    MetricsTracking(Pipe<WindowsMetrics> outputPipe, int windowSize, int waitDelay,
+            int allowedLateness, Supplier<MetricsAggregate> aggregates) {
         this.outputPipe = outputPipe;
         this.windowSize = windowSize;
         this.waitDelay = waitDelay;
+        this.allowedLateness = allowedLateness;
+        this.aggregates = aggregates;
+        // Dates from the window start to the most recent date, see pushLog
+        this.buckets = newBuckets();
     }
 
     void pushLog(TrafficLog log) {
@@ -33,180 +62,205 @@ class MetricsTracking {
         if (mostRecentDate < log.getDate()) {
             mostRecentDate = log.getDate();
         }
+        if (0 == windowStartTime) {
+            waitFirstWindowStart(log);
+            return;
+        }
+        // Windows ending before the log date can't contain it:
+        // compute them first so that its bucket is free to be reused
+        computeMetrics(log.getDate());
+        if (!amendedWindows.isEmpty()
+                && log.getDate() - amendedWindows.first() >= bucketCapacity()) {
+            // The log would reuse a bucket of an amended window
+            emitAmendedWindows();
+        }
         storeLog(log);
-        compute();
+        computeMetrics(Long.MAX_VALUE);
     }
 
-    private void storeLog(TrafficLog log) {
-        if (logs.containsKey(log.getDate())) {
-            logs.get(log.getDate()).add(log);
-        } else {
-            logs.put(log.getDate(), new ArrayList<>(List.of(log)));
-        }
+    // In the sharded mode only the dispatch of the windows to the shards is timed
+    void setWindowTimes(LatencyHistogram windowTimes) {
+        this.windowTimes = windowTimes;
     }
 
-    private boolean isCompletePeriodStored() {
-        // Wait a delay before considering the first date
-        if (0 == windowStartTime && mostRecentDate - logs.firstKey() >= waitDelay) {
-            windowStartTime = logs.firstKey();
-        }
-        // We want the complete period plus a delay to compute
-        long lastWindowEndDate = windowStartTime + windowSize - 1;
-        return windowStartTime != 0 && mostRecentDate - lastWindowEndDate >= waitDelay;
+    long getLateLogCount() {
+        return lateLogCount;
     }
 
-    private String extractSection(String request) {
-        String[] elements = request.split(" ");
-        if (elements.length != 3) {
-            return "";
-        }
-
-        String[] sectionElements = elements[1].split("/");
-        if (sectionElements.length < 2) {
-            return "";
-        }
-        return "/" + sectionElements[1];
+    long getDroppedLogCount() {
+        return droppedLogCount;
     }
 
-    private void incrementHitPerSectionCount(Map<String, Integer> hitPerSection, String section) {
-        if (hitPerSection.containsKey(section)) {
-            hitPerSection.merge(section, 1, Integer::sum);
-        } else {
-            hitPerSection.put(section, 1);
+    // State of the windows not computed yet, see Checkpoint
+    void writeState(DataOutput output) throws IOException {
+        output.writeLong(windowStartTime);
+        output.writeLong(mostRecentDate);
+        output.writeLong(lateLogCount);
+        output.writeLong(droppedLogCount);
+        output.writeLong(firstDate);
+        output.writeInt(firstLogs.size());
+        for (TrafficLog log : firstLogs) {
+            Checkpoint.writeLog(log, output);
         }
+        output.writeInt(amendedWindows.size());
+        for (long startDate : amendedWindows) {
+            output.writeLong(startDate);
+        }
+        buckets.write(output);
     }
 
-    private void incrementHttpOperationsCount(WindowsMetrics metric, String request) {
-        HttpVerb.Values httpVerb = HttpVerb.fromRequest(request);
-        if (httpVerb != HttpVerb.Values.NONE) {
-            metric.getOperationCount()[httpVerb.ordinal()]++;
+    // Replaces the state with one written by writeState() with the same parameters
+    void readState(DataInput input) throws IOException {
+        windowStartTime = input.readLong();
+        mostRecentDate = input.readLong();
+        lateLogCount = input.readLong();
+        droppedLogCount = input.readLong();
+        firstDate = input.readLong();
+        firstLogs.clear();
+        int firstLogCount = input.readInt();
+        for (int i = 0; i < firstLogCount; i++) {
+            firstLogs.add(Checkpoint.readLog(input));
+        }
+        amendedWindows.clear();
+        int amendedWindowCount = input.readInt();
+        for (int i = 0; i < amendedWindowCount; i++) {
+            amendedWindows.add(input.readLong());
         }
+        buckets.read(input);
     }
 
-    private void incrementStatusCount(Map<String, StatusCount> stats, String host,
-            boolean success) {
-        StatusCount status;
-        if (stats.containsKey(host)) {
-            status = stats.get(host);
-        } else {
-            status = new StatusCount();
-            stats.put(host, status);
+    private void waitFirstWindowStart(TrafficLog log) {
+        firstLogs.add(log);
+        if (0 == firstDate || log.getDate() < firstDate) {
+            firstDate = log.getDate();
+        }
+        // Wait a delay before considering the first date
+        if (mostRecentDate - firstDate < waitDelay) {
+            return;
         }
-        if (success) {
-            status.setSuccessCount(status.getSuccessCount() + 1);
-        } else {
-            status.setFailureCount(status.getFailureCount() + 1);
+        windowStartTime = firstDate;
+        // Store by date order so that the buckets never hold more than the needed dates
+        firstLogs.sort(Comparator.comparingLong(TrafficLog::getDate));
+        for (TrafficLog firstLog : firstLogs) {
+            computeMetrics(firstLog.getDate());
+            storeLog(firstLog);
         }
+        firstLogs.clear();
+        computeMetrics(Long.MAX_VALUE);
     }
 
-    private void computeMostHitSections(Map<String, Integer> hitPerSection,
-            WindowsMetrics metrics) {
-        int highestCount = 0;
-
-        for (Map.Entry<String, Integer> entry : hitPerSection.entrySet()) {
-            metrics.setHitNB(metrics.getHitNB() + entry.getValue());
-            if (highestCount < entry.getValue()) {
-                highestCount = entry.getValue();
-                metrics.getMostHitSections().clear();
-                metrics.getMostHitSections().add(entry.getKey());
-            } else if (highestCount == entry.getValue()) {
-                metrics.getMostHitSections().add(entry.getKey());
-            }
+    private void storeLog(TrafficLog log) {
+        if (log.getDate() < windowStartTime) {
+            // The window of the log has already been computed
+            storeLateLog(log);
+            return;
         }
-        metrics.setMostHitSectionCount(highestCount);
+        aggregateLog(log);
     }
 
-    private void computeSuccessRate(Map<String, StatusCount> statsPerRemoteHost,
-            WindowsMetrics metrics) {
-        int successCount = 0;
-        int requestCount = 0;
-        String lowestSuccessRateHost = "";
-        double lowestSuccessRate = 100;
-        for (Map.Entry<String, StatusCount> entry : statsPerRemoteHost.entrySet()) {
-            int hostRequestCount =
-                    entry.getValue().getSuccessCount() + entry.getValue().getFailureCount();
-            double hostSuccessRate =
-                    (double) (entry.getValue().getSuccessCount()) * 100 / hostRequestCount;
-            if (hostSuccessRate < lowestSuccessRate) {
-                lowestSuccessRate = hostSuccessRate;
-                lowestSuccessRateHost = entry.getKey();
-            }
-            requestCount += hostRequestCount;
-            successCount += entry.getValue().getSuccessCount();
-        }
-        if (requestCount > 0) {
-            double successRate = (double) (successCount) * 100 / requestCount;
-            metrics.setSuccessRate(successRate);
-            metrics.setLowestSuccessRateHost(lowestSuccessRateHost);
-            metrics.setLowestSuccessRate(lowestSuccessRate);
+    // A late log amends its window while the watermark (most recent date - wait delay)
+    // is less than {allowedLateness} seconds after the window end, it is dropped after
+    private void storeLateLog(TrafficLog log) {
+        lateLogCount++;
+        long windowCount = (windowStartTime - log.getDate() + windowSize - 1) / windowSize;
+        long lateWindowStart = windowStartTime - windowCount * windowSize;
+        long watermark = mostRecentDate - waitDelay;
+        if (watermark - (lateWindowStart + windowSize - 1) >= allowedLateness) {
+            droppedLogCount++;
+            return;
         }
+        aggregateLog(log);
+        amendedWindows.add(lateWindowStart);
     }
 
-    private void processTrafficLog(TrafficLog trafficLog, WindowsMetrics metrics,
-            Map<String, Integer> hitPerSection, Map<String, StatusCount> statsPerRemoteHost) {
-        incrementHitPerSectionCount(hitPerSection, extractSection(trafficLog.getRequest()));
-        // Aggregate hits per HTTP verb (PUT,GET...)
-        incrementHttpOperationsCount(metrics, trafficLog.getRequest());
-        if (trafficLog.getStatus() > 0) {
-            incrementStatusCount(statsPerRemoteHost, trafficLog.getRemoteHost(),
-                    trafficLog.getStatus() < 300);
-        }
+    void aggregateLog(TrafficLog log) {
+        buckets.add(log);
     }
 
-    private void computeMetrics() {
+    private boolean isCompletePeriodStored() {
+        // We want the complete period plus a delay to compute
+        long lastWindowEndDate = windowStartTime + windowSize - 1;
+        return mostRecentDate - lastWindowEndDate >= waitDelay;
+    }
+
+    // Compute the complete windows ending before {dateLimit}
+    private void computeMetrics(long dateLimit) {
 
-        while (isCompletePeriodStored()) {
+        while (isCompletePeriodStored() && windowStartTime + windowSize - 1 < dateLimit) {
+            emitAmendedWindows();
             WindowsMetrics metrics = new WindowsMetrics();
             // First and last date in the window
             metrics.setStartDate(windowStartTime);
             metrics.setEndDate(windowStartTime + windowSize - 1);
 
-            // To aggregate hits per section
-            Map<String, Integer> hitPerSection = new TreeMap<>();
-
-            // To aggregate successes/failures by remote host
-            Map<String, StatusCount> statsPerRemoteHost = new HashMap<>();
-
-            logs.entrySet().stream()
-                    .filter(entry -> entry.getKey() >= metrics.getStartDate()
-                            && entry.getKey() <= metrics.getEndDate())
-                    .flatMap(entry -> entry.getValue().stream())
-                    .forEach(trafficLog -> processTrafficLog(trafficLog, metrics, hitPerSection,
-                            statsPerRemoteHost));
-
-            // Fill metrics
-            computeMostHitSections(hitPerSection, metrics);
-            computeSuccessRate(statsPerRemoteHost, metrics);
-
-            emitMetrics(metrics);
+            timeWindow(metrics);
 
             windowStartTime += windowSize;
         }
     }
 
-    private void removeOldLogs() {
-        if (logs.isEmpty()) {
+    private void emitAmendedWindows() {
+        for (long startDate : amendedWindows) {
+            WindowsMetrics metrics = new WindowsMetrics();
+            metrics.setStartDate(startDate);
+            metrics.setEndDate(startDate + windowSize - 1);
+            metrics.setAmended(true);
+            timeWindow(metrics);
+        }
+        amendedWindows.clear();
+    }
+
+    private void timeWindow(WindowsMetrics metrics) {
+        if (windowTimes == null) {
+            computeWindow(metrics);
             return;
         }
-        logs.entrySet().removeIf(entry -> entry.getKey() < windowStartTime);
+        long start = System.nanoTime();
+        computeWindow(metrics);
+        windowTimes.record(System.nanoTime() - start);
     }
 
-    private void emitMetrics(WindowsMetrics metrics) {
-        outputPipe.push(metrics);
+    // Fill and emit the metrics of the window between their start and end dates
+    void computeWindow(WindowsMetrics metrics) {
+        WindowComputedEvent event = new WindowComputedEvent();
+        event.begin();
+        MetricsAggregate window = newAggregate();
+        buckets.collect(metrics.getStartDate(), metrics.getEndDate(), window);
+
+        // Fill metrics
+        window.fill(metrics);
+
+        emitMetrics(metrics);
+        commitEvent(event, metrics);
     }
 
-    private void compute() {
-        if (logs.isEmpty()) {
-            return;
+    static void commitEvent(WindowComputedEvent event, WindowsMetrics metrics) {
+        if (event.shouldCommit()) {
+            event.set(metrics);
+            event.commit();
         }
-        computeMetrics();
-        removeOldLogs();
     }
 
-    @Getter
-    @Setter
-    private class StatusCount {
-        int successCount = 0;
-        int failureCount = 0;
+    MetricsAggregate newAggregate() {
+        return aggregates.get();
+    }
+
+    MetricsBuckets newBuckets() {
+        return new MetricsBuckets(bucketCapacity(), aggregates);
+    }
+
+    // Dates from the start of the oldest window amendable to the most recent date
+    private int bucketCapacity() {
+        return windowSize + waitDelay + allowedLateness;
+    }
+
+    // Called at the end of the stream, once every log has been pushed
+    void finish() {
+        // Incomplete windows are not computed
+        emitAmendedWindows();
+    }
+
+    void emitMetrics(WindowsMetrics metrics) {
+        outputPipe.push(metrics);
     }
 }
@@ -1,80 +1,424 @@
 package fifiore.logmonitoring.core;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class Monitoring {
 
     private static final char CSV_DELIMITER = ',';
 
-    // Logs could arrive with a delay.
-    // Wait {WAIT_DELAY} seconds before considering a date for analysis
-    private static final int WAIT_DELAY = 4;
-
     private static final int METRIC_WINDOW = 10; // seconds
     private static final int TRAFFIC_ALERT_WINDOW = 120; // seconds
 
-    private final MessageChannel<TrafficLog> logPipe = new MessageChannel<>();
-    private final MessageChannel<WindowsMetrics> outputMetricsPipe = new MessageChannel<>();
-    private final MessageChannel<TrafficAlert> outputAlertPipe = new MessageChannel<>();
+    // Capacity of the ring buffer channels and number of messages read at once
+    private static final int CHANNEL_CAPACITY = 1 << 14;
+    private static final int BATCH_SIZE = 1 << 10;
+
+    // Consumers of the log fan-out
+    private static final int METRICS_CONSUMER = 0;
+    private static final int ALERT_CONSUMER = 1;
+
+    private final MonitoringOptions options;
+    private final Pipe<TrafficLog> logPipe;
+    // Publishes the logs to independent metrics and alert workers, null if not enabled
+    private final FanOutChannel<TrafficLog> logFanOut;
+    private final Pipe<WindowsMetrics> outputMetricsPipe;
+    private final Pipe<TrafficAlert> outputAlertPipe;
     private final MetricsTracking metricsTracking;
     private final Alerting alerting;
-    private final CsvLogReader reader;
+    private final LogReader reader;
+    private final ConsoleOutput output;
+    // Self-instrumentation of the pipeline, null if not enabled
+    private final PipelineStats stats;
+    // State served by the HTTP endpoint, null if not enabled
+    private final LiveState liveState;
+    private final HttpEndpoint endpoint;
+    // Saves the analysis state of the input file, null if not enabled
+    private final Checkpoint checkpoint;
+    // Appends the emitted windows, null if not enabled
+    private final RollupStore store;
 
     public Monitoring(String inputSource, int threshold) {
-        metricsTracking = new MetricsTracking(outputMetricsPipe, METRIC_WINDOW, WAIT_DELAY);
-        alerting = new Alerting(outputAlertPipe, TRAFFIC_ALERT_WINDOW, WAIT_DELAY);
-        if (threshold > 0) {
-            alerting.setTrafficAlertThreshold(threshold);
+        this(defaultOptions(inputSource, threshold));
+    }
+
+    public Monitoring(MonitoringOptions options) {
+        this.options = options;
+        stats = options.getStatsInterval() > 0 || options.getHttpAddress() != null
+                ? new PipelineStats(options.getStatsInterval())
+                : null;
+        liveState = options.getHttpAddress() != null ? new LiveState() : null;
+        logPipe = instrument(createPipe(), PipelineStats::getLogLatency);
+        logFanOut = options.isFanOut()
+                ? new FanOutChannel<>(CHANNEL_CAPACITY, 2, options.getWaitStrategy())
+                : null;
+        outputMetricsPipe = instrument(createPipe(), PipelineStats::getMetricsLatency);
+        outputAlertPipe = instrument(createPipe(), PipelineStats::getAlertLatency);
+        Supplier<MetricsAggregate> aggregates = () -> new MetricsAggregate(
+                options.getTopSectionCount(), options.getHostTableSize());
+        if (options.getShardCount() > 0) {
+            metricsTracking = new ShardedMetricsTracking(outputMetricsPipe, METRIC_WINDOW,
+                    options.getWaitDelay(), options.getAllowedLateness(), aggregates,
+                    options.getShardCount(), options.getWaitStrategy());
+        } else {
+            metricsTracking = new MetricsTracking(outputMetricsPipe, METRIC_WINDOW,
+                    options.getWaitDelay(), options.getAllowedLateness(), aggregates);
         }
-        reader = new CsvLogReader(inputSource, CSV_DELIMITER);
+        alerting = new Alerting(outputAlertPipe, TRAFFIC_ALERT_WINDOW, options.getWaitDelay());
+        if (options.getThreshold() > 0) {
+            alerting.setTrafficAlertThreshold(options.getThreshold());
+        }
+        checkpoint = createCheckpoint(options);
+        if (checkpoint != null) {
+            reader = resumeReader(options, checkpoint,
+                    checkpoint.restore(metricsTracking, alerting));
+        } else {
+            reader = createReader(options);
+        }
+        output = new ConsoleOutput(OutputSink.of(options.getOutputFormat()));
+        if (stats != null) {
+            metricsTracking.setWindowTimes(stats.getMetricsWindowTimes());
+            alerting.setWindowTimes(stats.getAlertWindowTimes());
+            stats.setQueueDepths(this::logQueueDepth, outputMetricsPipe::size,
+                    outputAlertPipe::size);
+            if (logFanOut != null) {
+                stats.setConsumerLags(logFanOut.consumer(METRICS_CONSUMER)::lag,
+                        logFanOut.consumer(ALERT_CONSUMER)::lag);
+            }
+        }
+        if (liveState != null) {
+            alerting.setLiveState(liveState);
+        }
+        endpoint = createEndpoint(options.getHttpAddress(), liveState, stats);
+        store = createStore(options);
     }
 
     public void execute() {
-        ExecutorService executors = Executors.newFixedThreadPool(3);
+        ExecutorService executors = Executors.newFixedThreadPool(4);
         CompletableFuture<Void> displayMetrics =
                 CompletableFuture.runAsync(this::displayMetricsWorker, executors);
         CompletableFuture<Void> displayAlerts =
                 CompletableFuture.runAsync(this::displayAlertWorker, executors);
-        CompletableFuture<Void> treatLogs = CompletableFuture.runAsync(this::logWorker, executors);
+        CompletableFuture<Void> treatLogs;
+        if (logFanOut != null) {
+            treatLogs = CompletableFuture.allOf(
+                    CompletableFuture.runAsync(this::metricsWorker, executors),
+                    CompletableFuture.runAsync(this::alertWorker, executors));
+        } else {
+            treatLogs = CompletableFuture.runAsync(this::logWorker, executors);
+        }
 
+        if (stats != null) {
+            stats.start();
+        }
+        if (endpoint != null) {
+            endpoint.start();
+        }
         // Read logs from stream (file or standard input)
         Optional<TrafficLog> log = reader.getLine();
         while (log.isPresent()) {
-            logPipe.push(log.get());
+            if (stats != null) {
+                stats.lineRead(log.get());
+            }
+            publishLog(log.get());
             log = reader.getLine();
         }
-        logPipe.close();
+        closeLogs();
 
         CompletableFuture.allOf(displayMetrics, displayAlerts, treatLogs).join();
         executors.shutdown();
+        output.close();
+        if (store != null) {
+            store.close();
+        }
+        if (endpoint != null) {
+            endpoint.close();
+        }
+        if (checkpoint != null) {
+            checkpoint.close();
+        }
+        if (stats != null) {
+            stats.close();
+        }
+        if (logFanOut != null) {
+            LogStream.err("Highest lag of the log workers: metrics "
+                    + logFanOut.consumer(METRICS_CONSUMER).maxLag() + " logs, alerts "
+                    + logFanOut.consumer(ALERT_CONSUMER).maxLag() + " logs");
+        }
+        if (metricsTracking.getLateLogCount() > 0 || alerting.getDroppedLogCount() > 0) {
+            LogStream.err("Late logs: " + metricsTracking.getLateLogCount() + ", dropped by "
+                    + "the metrics " + metricsTracking.getDroppedLogCount() + ", by the alerts "
+                    + alerting.getDroppedLogCount());
+        }
+    }
+
+    private static MonitoringOptions defaultOptions(String inputSource, int threshold) {
+        MonitoringOptions options = new MonitoringOptions();
+        options.setInputSource(inputSource);
+        options.setThreshold(threshold);
+        return options;
+    }
+
+    // Only the state of a single input file read by the log worker can be saved
+    private Checkpoint createCheckpoint(MonitoringOptions options) {
+        if (options.getCheckpointFile() == null) {
+            return null;
+        }
+        String source = options.getInputSource();
+        if (!options.getInputSources().isEmpty() || "-".equals(source)
+                || !InputSources.isSingleStream(source)
+                || options.getIngestionMode() == MonitoringOptions.IngestionMode.PARALLEL
+                || options.getShardCount() > 0 || options.isFanOut()
+                || ColumnarLogReader.isColumnar(Paths.get(source))
+                || ParallelGzipInputStream.isGzip(Paths.get(source))) {
+            LogStream.err("Checkpoint ignored: only supported for a single uncompressed CSV "
+                    + "input file, without parallel ingestion, shards nor fan-out");
+            return null;
+        }
+        return new Checkpoint(Paths.get(options.getCheckpointFile()), Paths.get(source),
+                options.getCheckpointInterval(), METRIC_WINDOW, TRAFFIC_ALERT_WINDOW,
+                options.getWaitDelay(), options.getAllowedLateness(),
+                options.getTopSectionCount(), options.getHostTableSize());
+    }
+
+    // Byte parser of the input file, which gives the offsets of the logs,
+    // from {startOffset} after the header. A followed file gives the positions of its
+    // offsets in the current file to the checkpoint.
+    private static LogReader resumeReader(MonitoringOptions options, Checkpoint checkpoint,
+            long startOffset) {
+        Path inputFile = Paths.get(options.getInputSource());
+        if (startOffset > 0) {
+            LogStream.err("Resumed from the checkpoint at byte " + startOffset);
+        }
+        InputStream input = null;
+        try {
+            if (options.isFollow()) {
+                FollowFileInputStream followInput = new FollowFileInputStream(inputFile);
+                checkpoint.setPositions(followInput::filePosition);
+                input = followInput;
+            } else {
+                input = Files.newInputStream(inputFile);
+            }
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+        return new ByteCsvLogReader(input, CSV_DELIMITER, startOffset);
+    }
+
+    private static LogReader createReader(MonitoringOptions options) {
+        List<String> sources = options.getInputSources().isEmpty()
+                ? List.of(options.getInputSource())
+                : options.getInputSources();
+        if (sources.size() == 1 && InputSources.isSingleStream(sources.get(0))) {
+            return createReader(options, sources.get(0));
+        }
+        return InputSources.open(sources, options.getMergeLateness(), CSV_DELIMITER,
+                source -> createReader(options, source));
+    }
+
+    // Reader of a file or of the standard input. A columnar or gzip file is always read
+    // whole, as a stream.
+    private static LogReader createReader(MonitoringOptions options, String inputSource) {
+        if (!"-".equals(inputSource) && ColumnarLogReader.isColumnar(Paths.get(inputSource))) {
+            return new ColumnarLogReader(Paths.get(inputSource));
+        }
+        if (!"-".equals(inputSource) && ParallelGzipInputStream.isGzip(Paths.get(inputSource))) {
+            return createGzipReader(options, inputSource);
+        }
+        if (options.isFollow() && !"-".equals(inputSource)) {
+            return createFollowReader(options, inputSource);
+        }
+        if (options.getIngestionMode() == MonitoringOptions.IngestionMode.PARALLEL
+                && !"-".equals(inputSource)) {
+            return new ParallelFileLogReader(inputSource, CSV_DELIMITER,
+                    options.getThreadCount());
+        }
+        if (options.getParserMode() == MonitoringOptions.ParserMode.BYTES) {
+            return new ByteCsvLogReader(inputSource, CSV_DELIMITER);
+        }
+        return new CsvLogReader(inputSource, CSV_DELIMITER);
+    }
+
+    // The file is decompressed on {threadCount} threads, with the parser of the options
+    private static LogReader createGzipReader(MonitoringOptions options, String inputFile) {
+        InputStream input = null;
+        try {
+            input = new ParallelGzipInputStream(Paths.get(inputFile), options.getThreadCount());
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+        if (options.getParserMode() == MonitoringOptions.ParserMode.BYTES) {
+            return new ByteCsvLogReader(input, CSV_DELIMITER);
+        }
+        BufferedReader buffer =
+                input != null ? new BufferedReader(new InputStreamReader(input)) : null;
+        return new CsvLogReader(buffer, CSV_DELIMITER);
+    }
+
+    // The file is followed as it grows, with the parser of the options
+    private static LogReader createFollowReader(MonitoringOptions options, String inputFile) {
+        InputStream input = null;
+        try {
+            input = new FollowFileInputStream(Paths.get(inputFile));
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+        if (options.getParserMode() == MonitoringOptions.ParserMode.BYTES) {
+            return new ByteCsvLogReader(input, CSV_DELIMITER);
+        }
+        BufferedReader buffer =
+                input != null ? new BufferedReader(new InputStreamReader(input)) : null;
+        return new CsvLogReader(buffer, CSV_DELIMITER);
+    }
+
+    private <T> Pipe<T> createPipe() {
+        if (options.getChannelType() == MonitoringOptions.ChannelType.RING) {
+            return new RingBufferChannel<>(CHANNEL_CAPACITY, options.getWaitStrategy());
+        }
+        return new MessageChannel<>();
+    }
+
+    // null if not enabled or if the address cannot be bound
+    private static HttpEndpoint createEndpoint(String address, LiveState liveState,
+            PipelineStats stats) {
+        if (address == null) {
+            return null;
+        }
+        try {
+            return new HttpEndpoint(InputSources.address(address), liveState, stats);
+        } catch (IOException | IllegalArgumentException exception) {
+            LogStream.err("HTTP endpoint not started: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    // null if not enabled or if the directory cannot be created
+    private static RollupStore createStore(MonitoringOptions options) {
+        if (options.getStoreDirectory() == null) {
+            return null;
+        }
+        try {
+            return new RollupStore(Paths.get(options.getStoreDirectory()),
+                    options.getStorePartition());
+        } catch (IOException exception) {
+            LogStream.err("Rollup store not opened: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    // Wrapped to time the wait of its messages when the statistics are enabled
+    private <T> Pipe<T> instrument(Pipe<T> pipe,
+            Function<PipelineStats, LatencyHistogram> latency) {
+        return stats != null ? new InstrumentedPipe<>(pipe, latency.apply(stats)) : pipe;
+    }
+
+    // Logs not read yet, by the slowest worker in the fan-out mode
+    private int logQueueDepth() {
+        if (logFanOut != null) {
+            return (int) Math.max(logFanOut.consumer(METRICS_CONSUMER).lag(),
+                    logFanOut.consumer(ALERT_CONSUMER).lag());
+        }
+        return logPipe.size();
     }
 
     private void logWorker() {
-        Optional<TrafficLog> log = logPipe.read();
-        while (log.isPresent()) {
-            metricsTracking.pushLog(log.get());
-            alerting.pushLog(log.get());
-            log = logPipe.read();
+        List<TrafficLog> logs = new ArrayList<>(BATCH_SIZE);
+        // Input offset after the pushed logs
+        long offset = 0;
+        while (logPipe.drainTo(logs, BATCH_SIZE) >= 0) {
+            for (TrafficLog log : logs) {
+                metricsTracking.pushLog(log);
+                alerting.pushLog(log);
+            }
+            if (checkpoint != null && !logs.isEmpty()) {
+                offset = logs.get(logs.size() - 1).getOffset();
+                checkpoint.saveIfDue(offset, metricsTracking, alerting);
+            }
+            logs.clear();
+        }
+        if (checkpoint != null && offset > 0) {
+            // State at the end of the input, before the end of the stream is handled
+            checkpoint.save(offset, metricsTracking, alerting);
         }
+        metricsTracking.finish();
         outputAlertPipe.close();
         outputMetricsPipe.close();
     }
 
+    private void publishLog(TrafficLog log) {
+        if (logFanOut != null) {
+            logFanOut.push(log);
+        } else {
+            logPipe.push(log);
+        }
+    }
+
+    private void closeLogs() {
+        if (logFanOut != null) {
+            logFanOut.close();
+        } else {
+            logPipe.close();
+        }
+    }
+
+    // Fan-out mode: metrics and alerts computed independently
+    private void metricsWorker() {
+        FanOutChannel<TrafficLog>.Cursor logs = logFanOut.consumer(METRICS_CONSUMER);
+        List<TrafficLog> batch = new ArrayList<>(BATCH_SIZE);
+        while (logs.drainTo(batch, BATCH_SIZE) >= 0) {
+            for (TrafficLog log : batch) {
+                metricsTracking.pushLog(log);
+            }
+            batch.clear();
+        }
+        metricsTracking.finish();
+        outputMetricsPipe.close();
+    }
+
+    private void alertWorker() {
+        FanOutChannel<TrafficLog>.Cursor logs = logFanOut.consumer(ALERT_CONSUMER);
+        List<TrafficLog> batch = new ArrayList<>(BATCH_SIZE);
+        while (logs.drainTo(batch, BATCH_SIZE) >= 0) {
+            for (TrafficLog log : batch) {
+                alerting.pushLog(log);
+            }
+            batch.clear();
+        }
+        outputAlertPipe.close();
+    }
+
     private void displayMetricsWorker() {
         Optional<WindowsMetrics> metrics = outputMetricsPipe.read();
         while (metrics.isPresent()) {
-            Display.metrics(metrics.get());
+            output.metrics(metrics.get());
+            if (liveState != null) {
+                liveState.windowEmitted(metrics.get());
+            }
+            if (store != null) {
+                store.append(metrics.get());
+            }
             metrics = outputMetricsPipe.read();
         }
+        output.metricsEnded();
     }
 
     private void displayAlertWorker() {
         Optional<TrafficAlert> alert = outputAlertPipe.read();
         while (alert.isPresent()) {
-            Display.alert(alert.get());
+            output.alert(alert.get());
             alert = outputAlertPipe.read();
         }
     }
@@ -0,0 +1,98 @@
+package fifiore.logmonitoring.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class MonitoringOptions {
+
+    public enum ParserMode {
+        // Line read as a String and split on the delimiter
+        SPLIT,
+        // Single pass on the raw bytes of the stream
+        BYTES
+    }
+
+    public enum IngestionMode {
+        // Stream read sequentially by the main thread
+        STREAM,
+        // File memory-mapped and parsed by chunks on several threads
+        PARALLEL
+    }
+
+    public enum ChannelType {
+        // Unbounded blocking queue
+        QUEUE,
+        // Bounded lock-free ring buffer, the reader waits when it is full
+        RING
+    }
+
+    public enum OutputFormat {
+        // Human-readable console text
+        TEXT,
+        // One JSON object per line
+        JSON,
+        // Length-prefixed binary records
+        BINARY
+    }
+
+    public enum StorePartition {
+        // One file of windows per hour
+        HOUR,
+        // One file of windows per day
+        DAY
+    }
+
+    // File, standard input "-", glob pattern or listener "tcp:[host:]port", "udp:[host:]port"
+    private String inputSource = "-";
+    // Several sources merged by date, used instead of inputSource when not empty
+    private List<String> inputSources = new ArrayList<>();
+    // Time in ms a source without pending log can hold back the merge of the others
+    private int mergeLateness = 1000;
+    // Seconds the analysis waits for the logs of a date before computing it: the watermark
+    // is the most recent date minus this delay. 0 if the logs are strictly ordered.
+    private int waitDelay = 4;
+    // Seconds after the watermark passed its end a metrics window is still amended by late
+    // logs and emitted again, 0 to drop every log older than the watermark
+    private int allowedLateness = 0;
+    // Traffic alert threshold in hits per second, 0 to keep the default one
+    private int threshold = 0;
+    private ParserMode parserMode = ParserMode.SPLIT;
+    // Only applies to files, the standard input is always streamed
+    private IngestionMode ingestionMode = IngestionMode.STREAM;
+    // The input file is read as it grows, and reopened when it is rotated or truncated
+    private boolean follow = false;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private ChannelType channelType = ChannelType.QUEUE;
+    // How the threads wait on a ring buffer channel
+    private WaitStrategy waitStrategy = WaitStrategy.PARK;
+    // Number of threads aggregating the metrics, 0 to aggregate them on the log worker
+    private int shardCount = 0;
+    // Metrics and alerts computed by independent workers
+    private boolean fanOut = false;
+    // Number of most hit sections reported by a bounded summary, 0 to count every section
+    private int topSectionCount = 0;
+    // Number of remote hosts tracked at most, with estimated distinct hosts,
+    // 0 to track every host
+    private int hostTableSize = 0;
+    // Encoding of the metrics and alerts on the standard output
+    private OutputFormat outputFormat = OutputFormat.TEXT;
+    // Seconds between the statistics of the pipeline written on the error stream, also
+    // exposed through JMX, 0 to disable them
+    private int statsInterval = 0;
+    // Local address "[host:]port" of the HTTP endpoint serving the live state, null if not
+    // enabled
+    private String httpAddress = null;
+    // File where the analysis state is saved to resume the monitoring of the input file after
+    // a restart, null if not enabled
+    private String checkpointFile = null;
+    // Seconds between two saves of the checkpoint
+    private int checkpointInterval = 10;
+    // Directory of the rollup store where every emitted window is appended, null if not
+    // enabled
+    private String storeDirectory = null;
+    private StorePartition storePartition = StorePartition.DAY;
+}
@@ -0,0 +1,89 @@
+package fifiore.logmonitoring.core;
+
+import java.io.ByteArrayOutputStream;
+
+// Reused buffer of an encoded message, written to the output stream at once.
+// Text is written as UTF-8 and numbers without intermediate strings.
+class OutputBuffer extends ByteArrayOutputStream {
+
+    // Digits of a long value, in reverse order
+    private final byte[] digits = new byte[20];
+
+    OutputBuffer() {
+        super(1 << 10);
+    }
+
+    void writeText(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                write(c);
+            } else if (c < 0x800) {
+                write(0xC0 | c >> 6);
+                write(0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                write(0xF0 | codePoint >> 18);
+                write(0x80 | codePoint >> 12 & 0x3F);
+                write(0x80 | codePoint >> 6 & 0x3F);
+                write(0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate
+                write('?');
+            } else {
+                write(0xE0 | c >> 12);
+                write(0x80 | c >> 6 & 0x3F);
+                write(0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    void writeDecimal(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeText(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (length > 0) {
+            write(digits[--length]);
+        }
+    }
+
+    // Big-endian binary values
+
+    void writeShort(int value) {
+        write(value >>> 8);
+        write(value);
+    }
+
+    void writeInt(int value) {
+        writeShort(value >>> 16);
+        writeShort(value);
+    }
+
+    void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    void writeDouble(double value) {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    // Overwrites 4 bytes already written at {position}
+    void setInt(int position, int value) {
+        buf[position] = (byte) (value >>> 24);
+        buf[position + 1] = (byte) (value >>> 16);
+        buf[position + 2] = (byte) (value >>> 8);
+        buf[position + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,21 @@
+package fifiore.logmonitoring.core;
+
+// Encoding of the metrics and alerts written by the output stage.
+// Each message is appended to the buffer with its own delimiter.
+interface OutputSink {
+
+    void metrics(WindowsMetrics metrics, OutputBuffer buffer);
+
+    void alert(TrafficAlert alert, OutputBuffer buffer);
+
+    static OutputSink of(MonitoringOptions.OutputFormat format) {
+        switch (format) {
+            case JSON:
+                return new JsonLinesSink();
+            case BINARY:
+                return new BinarySink();
+            default:
+                return new TextSink();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package fifiore.logmonitoring.core;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Memory-maps a log file and parses it by chunks of complete lines on a pool of workers.
+// Chunks are handed out in file order so the analysis receives the logs in the very
+// same order as a sequential read.
+class ParallelFileLogReader implements LogReader {
+
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 24;
+    private static final byte NEW_LINE = '\n';
+
+    private final int chunkSize;
+    private final CsvLineParser parser;
+    private FileChannel channel;
+    private ExecutorService workers;
+    private long fileSize = 0;
+    // Start of the next chunk to schedule
+    private long nextChunkStart = 0;
+    private int lookahead = 0;
+    private final Deque<Future<List<TrafficLog>>> chunks = new ArrayDeque<>();
+    private Iterator<TrafficLog> currentChunk = Collections.emptyIterator();
+    private final ThreadLocal<byte[]> chunkBuffers = new ThreadLocal<>();
+    // Parser of each worker, with its own request cache
+    private final ThreadLocal<CsvLineParser> chunkParsers;
+
+    ParallelFileLogReader(String inputFile, char delimiter, int threadCount) {
+        this(inputFile, delimiter, threadCount, DEFAULT_CHUNK_SIZE);
+    }
+
+    ParallelFileLogReader(String inputFile, char delimiter, int threadCount, int chunkSize) {
+        this.chunkSize = chunkSize;
+        this.parser = new CsvLineParser(delimiter);
+        this.chunkParsers = ThreadLocal.withInitial(() -> new CsvLineParser(parser));
+        try {
+            channel = FileChannel.open(Path.of(inputFile), StandardOpenOption.READ);
+            fileSize = channel.size();
+            nextChunkStart = readHeader();
+            workers = Executors.newFixedThreadPool(threadCount, runnable -> {
+                Thread thread = new Thread(runnable, "chunk-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // Bound the number of parsed chunks waiting in memory
+            lookahead = threadCount * 2;
+            scheduleChunks();
+        } catch (Exception exception) {
+            LogStream.err(exception);
+            close();
+        }
+    }
+
+    @Override
+    public Optional<TrafficLog> getLine() {
+        while (!currentChunk.hasNext()) {
+            if (chunks.isEmpty()) {
+                close();
+                return Optional.empty();
+            }
+            try {
+                currentChunk = chunks.poll().get().iterator();
+            } catch (ExecutionException exception) {
+                // The next logs would be analyzed without the ones of the chunk
+                LogStream.err("Input file not parsed: " + exception.getCause());
+                close();
+                return Optional.empty();
+            } catch (InterruptedException exception) {
+                LogStream.err(exception);
+                Thread.currentThread().interrupt();
+                close();
+                return Optional.empty();
+            }
+            scheduleChunks();
+        }
+        return Optional.of(currentChunk.next());
+    }
+
+    // Parse the header line and return the offset of the first log
+    private long readHeader() throws IOException {
+        long headerEnd = nextLineEnd(0);
+        byte[] header = new byte[(int) headerEnd];
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd).get(header);
+        parser.readHeader(header, 0, header.length);
+        return Math.min(headerEnd + 1, fileSize);
+    }
+
+    private void scheduleChunks() {
+        try {
+            while (chunks.size() < lookahead && nextChunkStart < fileSize) {
+                long start = nextChunkStart;
+                long end = nextLineEnd(Math.min(start + chunkSize, fileSize) - 1);
+                nextChunkStart = Math.min(end + 1, fileSize);
+                long length = nextChunkStart - start;
+                chunks.add(workers.submit(() -> parseChunk(start, (int) length)));
+            }
+        } catch (IOException exception) {
+            LogStream.err(exception);
+            nextChunkStart = fileSize;
+        }
+    }
+
+    // Offset of the first line feed from {from}, or the file size if there is none
+    private long nextLineEnd(long from) throws IOException {
+        long position = from;
+        while (position < fileSize) {
+            long length = Math.min(1 << 16, fileSize - position);
+            MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == NEW_LINE) {
+                    return position + i;
+                }
+            }
+            position += length;
+        }
+        return fileSize;
+    }
+
+    // Called on a worker thread, overridden by the tests to fail a chunk
+    List<TrafficLog> parseChunk(long start, int length) throws IOException {
+        byte[] buffer = chunkBuffers.get();
+        if (buffer == null || buffer.length < length) {
+            buffer = new byte[length];
+            chunkBuffers.set(buffer);
+        }
+        channel.map(FileChannel.MapMode.READ_ONLY, start, length).get(buffer, 0, length);
+
+        CsvLineParser chunkParser = chunkParsers.get();
+        List<TrafficLog> logs = new ArrayList<>(length / 64);
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] == NEW_LINE) {
+                logs.add(chunkParser.parse(buffer, lineStart, i));
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < length) {
+            // Last line of the file without line feed
+            logs.add(chunkParser.parse(buffer, lineStart, length));
+        }
+        return logs;
+    }
+
+    // The next reads return the end of the input
+    private void close() {
+        chunks.clear();
+        nextChunkStart = fileSize;
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException exception) {
+                LogStream.err(exception);
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package fifiore.logmonitoring.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Decompressed content of a gzip file, its members being inflated on several threads and
+// read in the file order. A gzip file is a sequence of members (pigz, bgzip, or files
+// concatenated by cat), each one a header, a deflate stream and a CRC32 trailer.
+// The file is split in chunks of {CHUNK_SIZE} compressed bytes: a task inflates the members
+// starting in its chunk, the first one being found by searching a valid header. The header
+// found may be a false one inside the deflate stream of a member crossing the chunk start:
+// the reader only keeps the output of a task starting where the previous task ended, and
+// otherwise inflates again from there. A task pauses when {OUTPUT_LIMIT} bytes of its output
+// are not read yet, which bounds the memory, and the reader resumes it as it reads.
+// A file of a single member is inflated by one task, beside the thread reading it.
+class ParallelGzipInputStream extends InputStream {
+
+    static final int CHUNK_SIZE = 1 << 19;
+    static final int OUTPUT_LIMIT = 1 << 23;
+
+    private static final int PIECE_SIZE = 1 << 16;
+    private static final int INPUT_SIZE = 1 << 16;
+    private static final int TRAILER_SIZE = 8;
+    private static final long UNKNOWN = -1;
+    private static final long WAIT = 1; // ms
+
+    private final FileChannel channel;
+    private final long size;
+    private final ExecutorService executor;
+    // Tasks submitted ahead of the read one, in the chunk order
+    private final Deque<Task> tasks = new ArrayDeque<>();
+    private final int taskCount;
+    private long nextChunk = 0;
+    // Offset of the next member to read, the end of the last read task
+    private long memberStart = 0;
+    private Task current = null;
+    private ByteBuffer piece = ByteBuffer.allocate(0);
+
+    ParallelGzipInputStream(Path file, int threadCount) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = channel.size();
+        executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "gzip-inflate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        taskCount = threadCount + 1;
+    }
+
+    // The file starts with the magic number of gzip
+    static boolean isGzip(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            byte[] magic = new byte[2];
+            return read(channel, magic, 0, magic.length, 0) == magic.length
+                    && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B;
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!piece.hasRemaining() && !nextPiece()) {
+            return -1;
+        }
+        return piece.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!piece.hasRemaining() && !nextPiece()) {
+            return -1;
+        }
+        int count = Math.min(length, piece.remaining());
+        piece.get(buffer, offset, count);
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            current.cancel();
+        }
+        tasks.forEach(Task::cancel);
+        tasks.clear();
+        executor.shutdown();
+        channel.close();
+    }
+
+    // False at the end of the last member
+    private boolean nextPiece() throws IOException {
+        while (true) {
+            if (current == null) {
+                current = nextTask();
+                if (current == null) {
+                    return false;
+                }
+            }
+            ByteBuffer output = current.takeOutput();
+            if (output != null) {
+                piece = output;
+                return true;
+            }
+            memberStart = current.end;
+            current = null;
+        }
+    }
+
+    // Task of the chunk of the next member, null after the last member
+    private Task nextTask() throws IOException {
+        while (memberStart < size) {
+            while (tasks.size() < taskCount && nextChunk * CHUNK_SIZE < size) {
+                Task task = new Task(nextChunk, nextChunk == 0 ? 0 : UNKNOWN);
+                task.submit();
+                tasks.add(task);
+                nextChunk++;
+            }
+            Task task = tasks.poll();
+            if (task == null) {
+                return null;
+            }
+            if (memberStart >= task.bound) {
+                // No member starts in the chunk
+                task.cancel();
+                continue;
+            }
+            task.awaitRun();
+            if (task.start == memberStart) {
+                return task;
+            }
+            // Started on a false header, or did not find the member
+            task.cancel();
+            Task replacement = new Task(task.chunk, memberStart);
+            replacement.submit();
+            return replacement;
+        }
+        return null;
+    }
+
+    // Reads up to {length} bytes at {position}, less at the end of the file
+    private static int read(FileChannel channel, byte[] buffer, int offset, int length,
+            long position) throws IOException {
+        ByteBuffer target = ByteBuffer.wrap(buffer, offset, length);
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position() - offset) < 0) {
+                break;
+            }
+        }
+        return target.position() - offset;
+    }
+
+    // Inflates the members starting in a chunk, run again each time it pauses
+    private final class Task {
+        private final long chunk;
+        // End of the chunk: the last member inflated is the last one starting before
+        private final long bound;
+        // Offset of the first member, UNKNOWN until it is found, beyond the chunk if none
+        private volatile long start;
+        // Offset of the first member after the task, set when done
+        private volatile long end;
+        private volatile boolean done = false;
+        private volatile boolean cancelled = false;
+        private volatile IOException error = null;
+        private final LinkedBlockingQueue<ByteBuffer> outputs = new LinkedBlockingQueue<>();
+        // Bytes in the outputs
+        private final AtomicLong buffered = new AtomicLong();
+        private Future<?> future = null;
+
+        // State of the inflating, kept between the runs
+        private final byte[] input = new byte[INPUT_SIZE];
+        private long position;
+        private Inflater inflater = null;
+        private final CRC32 crc = new CRC32();
+        private long memberSize;
+        private byte[] output = new byte[PIECE_SIZE];
+        private int outputSize = 0;
+
+        Task(long chunk, long start) {
+            this.chunk = chunk;
+            this.bound = Math.min((chunk + 1) * CHUNK_SIZE, size);
+            this.start = start;
+            this.position = start;
+        }
+
+        void submit() {
+            future = executor.submit(this::run);
+        }
+
+        boolean isRunning() {
+            return future != null && !future.isDone();
+        }
+
+        void awaitRun() throws IOException {
+            try {
+                future.get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException exception) {
+                throw new IOException(exception.getCause());
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (!isRunning()) {
+                release();
+            }
+        }
+
+        // Next output in the file order, null when the task is done. The task is resumed
+        // when less than half of its output limit is left to read.
+        ByteBuffer takeOutput() throws IOException {
+            while (true) {
+                ByteBuffer next = outputs.poll();
+                if (next == null && isRunning()) {
+                    try {
+                        next = outputs.poll(WAIT, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (next != null) {
+                    if (buffered.addAndGet(-next.remaining()) < OUTPUT_LIMIT / 2
+                            && !isRunning() && !done) {
+                        submit();
+                    }
+                    return next;
+                }
+                if (isRunning() || !outputs.isEmpty()) {
+                    continue;
+                }
+                if (error != null) {
+                    throw error;
+                }
+                if (done) {
+                    return null;
+                }
+                submit();
+            }
+        }
+
+        private void run() {
+            try {
+                if (start == UNKNOWN) {
+                    start = findMember(chunk * CHUNK_SIZE, bound);
+                    position = start;
+                    if (start >= bound) {
+                        end = start;
+                        done = true;
+                        return;
+                    }
+                }
+                inflate();
+            } catch (IOException exception) {
+                error = exception;
+                done = true;
+            } catch (DataFormatException exception) {
+                error = new IOException("Invalid gzip data: " + exception.getMessage());
+                done = true;
+            }
+            if (done || cancelled) {
+                release();
+            }
+        }
+
+        // Inflates until the output limit is reached or the last member of the chunk ends
+        private void inflate() throws IOException, DataFormatException {
+            while (!cancelled && buffered.get() < OUTPUT_LIMIT) {
+                if (inflater == null) {
+                    // Between two members
+                    if (position != start && position >= bound || position >= size) {
+                        finish(Math.min(position, size));
+                        return;
+                    }
+                    long dataStart = headerEnd(position);
+                    if (dataStart < 0) {
+                        if (position == 0) {
+                            throw new IOException("Not in gzip format");
+                        }
+                        // Trailing data after the last member, ignored like gzip does
+                        finish(size);
+                        return;
+                    }
+                    position = dataStart;
+                    inflater = new Inflater(true);
+                    crc.reset();
+                    memberSize = 0;
+                }
+                if (inflater.needsInput()) {
+                    int count = read(channel, input, 0, input.length, position);
+                    if (count <= 0) {
+                        throw new EOFException("Unexpected end of the gzip file");
+                    }
+                    inflater.setInput(input, 0, count);
+                    position += count;
+                }
+                int count = inflater.inflate(output, outputSize, output.length - outputSize);
+                crc.update(output, outputSize, count);
+                memberSize += count;
+                outputSize += count;
+                if (outputSize == output.length) {
+                    flush();
+                }
+                if (inflater.finished()) {
+                    endMember();
+                } else if (count == 0 && inflater.needsDictionary()) {
+                    throw new DataFormatException("preset dictionary");
+                }
+            }
+            flush();
+        }
+
+        // Checks the trailer of the member inflated
+        private void endMember() throws IOException {
+            long trailer = position - inflater.getRemaining();
+            inflater.end();
+            inflater = null;
+            byte[] bytes = new byte[TRAILER_SIZE];
+            if (read(channel, bytes, 0, TRAILER_SIZE, trailer) < TRAILER_SIZE) {
+                throw new EOFException("Unexpected end of the gzip file");
+            }
+            ByteBuffer values = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            if ((values.getInt(0) & 0xFFFFFFFFL) != crc.getValue()
+                    || values.getInt(4) != (int) memberSize) {
+                throw new IOException("Corrupt gzip member at byte " + trailer);
+            }
+            position = trailer + TRAILER_SIZE;
+        }
+
+        private void finish(long next) {
+            flush();
+            end = next;
+            done = true;
+        }
+
+        private void flush() {
+            if (outputSize > 0) {
+                buffered.addAndGet(outputSize);
+                outputs.add(ByteBuffer.wrap(output, 0, outputSize));
+                output = new byte[PIECE_SIZE];
+                outputSize = 0;
+            }
+        }
+
+        private void release() {
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+        }
+
+        // Offset of the first valid header in [from, to) followed by deflate data,
+        // {to} if there is none
+        private long findMember(long from, long to) throws IOException {
+            byte[] bytes = new byte[INPUT_SIZE];
+            for (long offset = from; offset < to && !cancelled; offset += INPUT_SIZE - 3) {
+                int count = read(channel, bytes, 0, bytes.length, offset);
+                for (int i = 0; i + 3 < count && offset + i < to; i++) {
+                    if ((bytes[i] & 0xFF) == 0x1F && (bytes[i + 1] & 0xFF) == 0x8B
+                            && bytes[i + 2] == 8 && (bytes[i + 3] & 0xE0) == 0
+                            && isMember(offset + i)) {
+                        return offset + i;
+                    }
+                }
+                if (count < bytes.length) {
+                    break;
+                }
+            }
+            return to;
+        }
+
+        // A header followed by data inflated without error
+        private boolean isMember(long offset) throws IOException {
+            long dataStart = headerEnd(offset);
+            if (dataStart < 0) {
+                return false;
+            }
+            int count = read(channel, input, 0, 1 << 12, dataStart);
+            Inflater trial = new Inflater(true);
+            try {
+                trial.setInput(input, 0, count);
+                byte[] scratch = new byte[1 << 12];
+                while (!trial.finished() && !trial.needsInput()) {
+                    if (trial.inflate(scratch) == 0 && trial.needsDictionary()) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (DataFormatException exception) {
+                return false;
+            } finally {
+                trial.end();
+            }
+        }
+
+        // Offset of the deflate data after the member header at {offset}, -1 if it is not
+        // a valid header
+        private long headerEnd(long offset) throws IOException {
+            byte[] header = new byte[10];
+            if (read(channel, header, 0, header.length, offset) < header.length
+                    || (header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B
+                    || header[2] != 8 || (header[3] & 0xE0) != 0) {
+                return -1;
+            }
+            int flags = header[3];
+            long next = offset + header.length;
+            if ((flags & 4) != 0) {
+                // FEXTRA
+                byte[] length = new byte[2];
+                if (read(channel, length, 0, 2, next) < 2) {
+                    return -1;
+                }
+                next += 2 + ((length[0] & 0xFF) | (length[1] & 0xFF) << 8);
+            }
+            for (int flag : new int[] {8, 16}) {
+                // FNAME, FCOMMENT: zero-terminated
+                if ((flags & flag) != 0) {
+                    next = afterZero(next);
+                    if (next < 0) {
+                        return -1;
+                    }
+                }
+            }
+            if ((flags & 2) != 0) {
+                // FHCRC
+                next += 2;
+            }
+            return next < size ? next : -1;
+        }
+
+        private long afterZero(long offset) throws IOException {
+            byte[] bytes = new byte[256];
+            while (true) {
+                int count = read(channel, bytes, 0, bytes.length, offset);
+                for (int i = 0; i < count; i++) {
+                    if (bytes[i] == 0) {
+                        return offset + i + 1;
+                    }
+                }
+                if (count < bytes.length) {
+                    return -1;
+                }
+                offset += count;
+            }
+        }
+    }
+}
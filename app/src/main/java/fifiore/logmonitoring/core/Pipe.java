@@ -0,0 +1,22 @@
+package fifiore.logmonitoring.core;
+
+import java.util.Collection;
+import java.util.Optional;
+
+// Channel between a producer and a consumer thread
+interface Pipe<T> {
+
+    void push(T message);
+
+    // Next message, empty once the pipe is closed
+    Optional<T> read();
+
+    // Move the available messages to {batch}, up to {maxCount}, waiting for at least one.
+    // Returns the number of messages moved, -1 once the pipe is closed
+    int drainTo(Collection<? super T> batch, int maxCount);
+
+    void close();
+
+    // Messages waiting to be read, approximate while the threads run
+    int size();
+}
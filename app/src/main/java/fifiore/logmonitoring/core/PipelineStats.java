@@ -0,0 +1,208 @@
+package fifiore.logmonitoring.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import lombok.Getter;
+
+// Counters and timings of the pipeline, only created when the statistics or the HTTP
+// endpoint are enabled: the stages skip the measures without it. They are exposed through
+// JMX and written on the error stream every {interval} seconds if it is not 0.
+class PipelineStats implements PipelineStatsMBean, AutoCloseable {
+
+    static final String OBJECT_NAME = "fifiore.logmonitoring:type=Pipeline";
+
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder invalidLines = new LongAdder();
+    private final long startTime = System.nanoTime();
+    // Time the messages wait in the channels
+    @Getter
+    private final LatencyHistogram logLatency = new LatencyHistogram();
+    @Getter
+    private final LatencyHistogram metricsLatency = new LatencyHistogram();
+    @Getter
+    private final LatencyHistogram alertLatency = new LatencyHistogram();
+    // Time to compute a metrics window, or to slide the alert window of a second
+    @Getter
+    private final LatencyHistogram metricsWindowTimes = new LatencyHistogram();
+    @Getter
+    private final LatencyHistogram alertWindowTimes = new LatencyHistogram();
+    private IntSupplier logDepth = () -> 0;
+    private IntSupplier metricsDepth = () -> 0;
+    private IntSupplier alertDepth = () -> 0;
+    // Logs not read yet by each worker in the fan-out mode, null without it
+    private LongSupplier metricsLag = null;
+    private LongSupplier alertLag = null;
+
+    private final int interval;
+    private ScheduledExecutorService reporter;
+    private ObjectName objectName;
+    // Lines read at the last report
+    private long reportedLines = 0;
+
+    PipelineStats(int interval) {
+        this.interval = interval;
+    }
+
+    void setQueueDepths(IntSupplier logDepth, IntSupplier metricsDepth,
+            IntSupplier alertDepth) {
+        this.logDepth = logDepth;
+        this.metricsDepth = metricsDepth;
+        this.alertDepth = alertDepth;
+    }
+
+    void setConsumerLags(LongSupplier metricsLag, LongSupplier alertLag) {
+        this.metricsLag = metricsLag;
+        this.alertLag = alertLag;
+    }
+
+    boolean hasConsumerLags() {
+        return metricsLag != null;
+    }
+
+    void lineRead(TrafficLog log) {
+        linesRead.increment();
+        if (log.getDate() == 0) {
+            invalidLines.increment();
+        }
+    }
+
+    void start() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName(OBJECT_NAME);
+            server.registerMBean(this, objectName);
+        } catch (JMException exception) {
+            LogStream.err(exception);
+            objectName = null;
+        }
+        if (interval == 0) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdown();
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException exception) {
+                LogStream.err(exception);
+            }
+        }
+    }
+
+    private void report() {
+        long lines = linesRead.sum();
+        LogStream.err("Stats: " + (lines - reportedLines) / interval + " lines/s, " + lines
+                + " lines, " + invalidLines.sum() + " invalid"
+                + " | queues: logs " + logDepth.getAsInt() + " (p99 "
+                + micros(logLatency.quantile(0.99)) + " us), metrics " + metricsDepth.getAsInt()
+                + " (p99 " + micros(metricsLatency.quantile(0.99)) + " us), alerts "
+                + alertDepth.getAsInt() + " (p99 " + micros(alertLatency.quantile(0.99))
+                + " us) | windows: metrics " + Math.round(metricsWindowTimes.mean() / 1000)
+                + " us (max " + micros(metricsWindowTimes.max()) + " us), alerts "
+                + Math.round(alertWindowTimes.mean() / 1000) + " us (max "
+                + micros(alertWindowTimes.max()) + " us)"
+                + (hasConsumerLags() ? " | lag: metrics " + getMetricsConsumerLag()
+                        + " logs, alerts " + getAlertConsumerLag() + " logs" : ""));
+        reportedLines = lines;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+
+    @Override
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getInvalidLines() {
+        return invalidLines.sum();
+    }
+
+    // Average since the start
+    @Override
+    public double getLinesReadPerSecond() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return seconds > 0 ? linesRead.sum() / seconds : 0;
+    }
+
+    @Override
+    public int getLogQueueDepth() {
+        return logDepth.getAsInt();
+    }
+
+    @Override
+    public int getMetricsQueueDepth() {
+        return metricsDepth.getAsInt();
+    }
+
+    @Override
+    public int getAlertQueueDepth() {
+        return alertDepth.getAsInt();
+    }
+
+    @Override
+    public long getMetricsConsumerLag() {
+        return metricsLag != null ? metricsLag.getAsLong() : 0;
+    }
+
+    @Override
+    public long getAlertConsumerLag() {
+        return alertLag != null ? alertLag.getAsLong() : 0;
+    }
+
+    @Override
+    public long getLogQueueLatencyP99() {
+        return micros(logLatency.quantile(0.99));
+    }
+
+    @Override
+    public long getMetricsQueueLatencyP99() {
+        return micros(metricsLatency.quantile(0.99));
+    }
+
+    @Override
+    public long getAlertQueueLatencyP99() {
+        return micros(alertLatency.quantile(0.99));
+    }
+
+    @Override
+    public double getMetricsWindowMeanTime() {
+        return metricsWindowTimes.mean() / 1000;
+    }
+
+    @Override
+    public long getMetricsWindowMaxTime() {
+        return micros(metricsWindowTimes.max());
+    }
+
+    @Override
+    public double getAlertWindowMeanTime() {
+        return alertWindowTimes.mean() / 1000;
+    }
+
+    @Override
+    public long getAlertWindowMaxTime() {
+        return micros(alertWindowTimes.max());
+    }
+}
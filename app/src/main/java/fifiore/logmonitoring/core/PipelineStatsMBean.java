@@ -0,0 +1,36 @@
+package fifiore.logmonitoring.core;
+
+// Statistics of the monitoring pipeline exposed through JMX, durations in microseconds
+public interface PipelineStatsMBean {
+
+    long getLinesRead();
+
+    long getInvalidLines();
+
+    double getLinesReadPerSecond();
+
+    int getLogQueueDepth();
+
+    int getMetricsQueueDepth();
+
+    int getAlertQueueDepth();
+
+    // Fan-out mode only, 0 otherwise
+    long getMetricsConsumerLag();
+
+    long getAlertConsumerLag();
+
+    long getLogQueueLatencyP99();
+
+    long getMetricsQueueLatencyP99();
+
+    long getAlertQueueLatencyP99();
+
+    double getMetricsWindowMeanTime();
+
+    long getMetricsWindowMaxTime();
+
+    double getAlertWindowMeanTime();
+
+    long getAlertWindowMaxTime();
+}
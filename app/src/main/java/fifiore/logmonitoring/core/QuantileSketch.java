@@ -0,0 +1,203 @@
+package fifiore.logmonitoring.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Mergeable quantile sketch of non-negative values with a relative accuracy (DDSketch).
+// A value v is counted in the bin ceil(log_gamma(v)): any quantile is estimated within
+// RELATIVE_ACCURACY of a real value, without storing the values. The bins are a dense
+// range growing with the values, bounded to MAX_BINS by collapsing the lowest bins.
+// The first values are kept as is: most per-second sketches of a section never need bins.
+class QuantileSketch {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    // Covers values from 1 to more than 10^17 without collapsing
+    private static final int MAX_BINS = 2048;
+    private static final int INITIAL_BINS = 64;
+    private static final int EXACT_CAPACITY = 8;
+    private static final long[] NO_BINS = new long[0];
+    // Bin of the small values, most responses are below 64KB
+    private static final int[] SMALL_VALUE_BINS = new int[1 << 16];
+
+    static {
+        for (int value = 1; value < SMALL_VALUE_BINS.length; value++) {
+            SMALL_VALUE_BINS[value] = binIndex(value);
+        }
+    }
+
+    private long count = 0;
+    private long sum = 0;
+    // Values not counted in the bins yet, until the bins are used
+    private final long[] exactValues = new long[EXACT_CAPACITY];
+    private int exactCount = 0;
+    private boolean binned = false;
+    private long zeroCount = 0;
+    private long[] bins = NO_BINS;
+    // Index of the value counted in bins[0]
+    private int offset = 0;
+
+    void add(long value) {
+        count++;
+        sum += value;
+        addValue(value);
+    }
+
+    void merge(QuantileSketch other) {
+        count += other.count;
+        sum += other.sum;
+        for (int i = 0; i < other.exactCount; i++) {
+            addValue(other.exactValues[i]);
+        }
+        if (!other.binned) {
+            return;
+        }
+        startBins();
+        zeroCount += other.zeroCount;
+        for (int i = 0; i < other.bins.length; i++) {
+            if (other.bins[i] > 0) {
+                addToBin(other.offset + i, other.bins[i]);
+            }
+        }
+    }
+
+    void clear() {
+        count = 0;
+        sum = 0;
+        exactCount = 0;
+        binned = false;
+        zeroCount = 0;
+        // The bins are kept for the next values, which are likely in the same range
+        Arrays.fill(bins, 0);
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeLong(count);
+        output.writeLong(sum);
+        output.writeInt(exactCount);
+        for (int i = 0; i < exactCount; i++) {
+            output.writeLong(exactValues[i]);
+        }
+        output.writeBoolean(binned);
+        output.writeLong(zeroCount);
+        output.writeInt(offset);
+        output.writeInt(bins.length);
+        for (long bin : bins) {
+            output.writeLong(bin);
+        }
+    }
+
+    // Replaces the content with a sketch written by write()
+    void read(DataInput input) throws IOException {
+        count = input.readLong();
+        sum = input.readLong();
+        exactCount = input.readInt();
+        for (int i = 0; i < exactCount; i++) {
+            exactValues[i] = input.readLong();
+        }
+        binned = input.readBoolean();
+        zeroCount = input.readLong();
+        offset = input.readInt();
+        int binCount = input.readInt();
+        bins = binCount > 0 ? new long[binCount] : NO_BINS;
+        for (int i = 0; i < binCount; i++) {
+            bins[i] = input.readLong();
+        }
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getSum() {
+        return sum;
+    }
+
+    // Value at {quantile} in [0, 1], 0 if the sketch is empty
+    double quantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (!binned) {
+            long[] sorted = Arrays.copyOf(exactValues, exactCount);
+            Arrays.sort(sorted);
+            return sorted[(int) rank];
+        }
+        long cumulated = zeroCount;
+        if (cumulated > rank) {
+            return 0;
+        }
+        for (int i = 0; i < bins.length; i++) {
+            cumulated += bins[i];
+            if (cumulated > rank) {
+                // Middle of the bin, at most RELATIVE_ACCURACY away from its values
+                return 2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1);
+            }
+        }
+        return 2 * Math.pow(GAMMA, offset + bins.length - 1) / (GAMMA + 1);
+    }
+
+    private void addValue(long value) {
+        if (!binned && exactCount < EXACT_CAPACITY) {
+            exactValues[exactCount++] = value;
+            return;
+        }
+        startBins();
+        if (value <= 0) {
+            zeroCount++;
+        } else {
+            addToBin(value < SMALL_VALUE_BINS.length ? SMALL_VALUE_BINS[(int) value]
+                    : binIndex(value), 1);
+        }
+    }
+
+    private static int binIndex(long value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    // Move the exact values to the bins
+    private void startBins() {
+        if (binned) {
+            return;
+        }
+        binned = true;
+        int valueCount = exactCount;
+        exactCount = 0;
+        for (int i = 0; i < valueCount; i++) {
+            addValue(exactValues[i]);
+        }
+    }
+
+    private void addToBin(int index, long binCount) {
+        if (bins.length == 0) {
+            bins = new long[INITIAL_BINS];
+            offset = index - INITIAL_BINS / 2;
+        }
+        if (index < offset || index >= offset + bins.length) {
+            resize(index);
+        }
+        // Values below the collapsed range are counted in the lowest bin
+        bins[Math.max(index, offset) - offset] += binCount;
+    }
+
+    // Grow the bins to cover {index}, with room for the next values on the growing side
+    private void resize(int index) {
+        int low = Math.min(offset, index);
+        int high = Math.max(offset + bins.length - 1, index);
+        if (high - low + 1 > MAX_BINS) {
+            low = high - MAX_BINS + 1;
+        }
+        int length = Math.min(MAX_BINS, Math.max(high - low + 1, bins.length * 2));
+        int newOffset = index < offset ? high - length + 1 : low;
+        long[] resized = new long[length];
+        for (int i = 0; i < bins.length; i++) {
+            resized[Math.max(offset + i - newOffset, 0)] += bins[i];
+        }
+        bins = resized;
+        offset = newOffset;
+    }
+}
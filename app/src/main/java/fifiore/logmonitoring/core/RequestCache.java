@@ -0,0 +1,52 @@
+package fifiore.logmonitoring.core;
+
+import java.util.Arrays;
+
+// Requests recently read by a parser, with their section id and verb: a log repeats the
+// request of a previous log most of the time, which is then neither decoded nor split
+// again and shares its String. Direct-mapped table of {SIZE} requests, a new request
+// evicting the one of its slot. Each parser has its own cache, which is not thread-safe.
+class RequestCache {
+
+    private static final int SIZE = 1 << 12;
+    private static final int MASK = SIZE - 1;
+
+    // Raw bytes of the field of each request, when read from bytes
+    private final byte[][] keys = new byte[SIZE][];
+    private final String[] requests = new String[SIZE];
+    private final int[] sections = new int[SIZE];
+    private final HttpVerb.Values[] verbs = new HttpVerb.Values[SIZE];
+
+    // Request field in buffer[start, end), quotes included
+    void fill(TrafficLog log, byte[] buffer, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int slot = slot(hash);
+        byte[] key = keys[slot];
+        if (key == null || !Arrays.equals(key, 0, key.length, buffer, start, end)) {
+            keys[slot] = Arrays.copyOfRange(buffer, start, end);
+            put(slot, CsvLineParser.text(buffer, start, end));
+        }
+        log.setRequest(requests[slot], sections[slot], verbs[slot]);
+    }
+
+    void fill(TrafficLog log, String request) {
+        int slot = slot(request.hashCode());
+        if (!request.equals(requests[slot])) {
+            put(slot, request);
+        }
+        log.setRequest(requests[slot], sections[slot], verbs[slot]);
+    }
+
+    private static int slot(int hash) {
+        return (hash ^ hash >>> 16) & MASK;
+    }
+
+    private void put(int slot, String request) {
+        requests[slot] = request;
+        sections[slot] = Sections.fromRequest(request);
+        verbs[slot] = HttpVerb.fromRequest(request);
+    }
+}
@@ -0,0 +1,135 @@
+package fifiore.logmonitoring.core;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded lock-free pipe for a single producer thread and a single consumer thread.
+// The producer waits while the buffer is full so that a slow consumer bounds the memory.
+class RingBufferChannel<T> implements Pipe<T> {
+
+    // Pushed by close() after the last message
+    private static final Object END_OF_STREAM = new Object();
+
+    private final Object[] buffer;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    // Sequence of the next message to read, written by the consumer only
+    private final AtomicLong head = new AtomicLong();
+    // Sequence of the next message to write, written by the producer only
+    private final AtomicLong tail = new AtomicLong();
+    // Last head seen by the producer
+    private long producerHeadCache = 0;
+    // Last tail seen by the consumer
+    private long consumerTailCache = 0;
+    private boolean closed = false;
+
+    // {capacity} is rounded up to a power of 2
+    RingBufferChannel(int capacity, WaitStrategy waitStrategy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public void push(T message) {
+        offer(message);
+    }
+
+    @Override
+    public Optional<T> read() {
+        if (closed) {
+            return Optional.empty();
+        }
+        long sequence = head.get();
+        awaitMessage(sequence);
+        Object message = take(sequence);
+        head.lazySet(sequence + 1);
+        if (message == END_OF_STREAM) {
+            closed = true;
+            return Optional.empty();
+        }
+        return Optional.of(cast(message));
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> batch, int maxCount) {
+        if (closed) {
+            return -1;
+        }
+        long sequence = head.get();
+        awaitMessage(sequence);
+        long end = Math.min(consumerTailCache, sequence + maxCount);
+        int count = 0;
+        while (sequence < end) {
+            Object message = take(sequence++);
+            if (message == END_OF_STREAM) {
+                closed = true;
+                break;
+            }
+            batch.add(cast(message));
+            count++;
+        }
+        // Free the slots once for the whole batch
+        head.lazySet(sequence);
+        return closed && count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() {
+        offer(END_OF_STREAM);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    private void offer(Object message) {
+        long sequence = tail.get();
+        int attempt = 0;
+        ChannelStallEvent stall = null;
+        while (sequence - producerHeadCache >= buffer.length) {
+            producerHeadCache = head.get();
+            if (sequence - producerHeadCache >= buffer.length) {
+                // Full: wait for the consumer
+                if (stall == null) {
+                    stall = new ChannelStallEvent();
+                    stall.begin();
+                }
+                waitStrategy.idle(attempt++);
+            }
+        }
+        if (stall != null && stall.shouldCommit()) {
+            stall.capacity = buffer.length;
+            stall.commit();
+        }
+        buffer[(int) sequence & mask] = message;
+        // Publish the message after writing it
+        tail.lazySet(sequence + 1);
+    }
+
+    private void awaitMessage(long sequence) {
+        int attempt = 0;
+        while (sequence >= consumerTailCache) {
+            consumerTailCache = tail.get();
+            if (sequence >= consumerTailCache) {
+                waitStrategy.idle(attempt++);
+            }
+        }
+    }
+
+    private Object take(long sequence) {
+        int index = (int) sequence & mask;
+        Object message = buffer[index];
+        buffer[index] = null;
+        return message;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object message) {
+        return (T) message;
+    }
+}
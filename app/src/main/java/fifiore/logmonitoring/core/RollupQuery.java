@@ -0,0 +1,136 @@
+package fifiore.logmonitoring.core;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Windows of a rollup store over a date range, written on the standard output in the
+// output format of the monitoring, or aggregated into a single window of the range
+public class RollupQuery {
+
+    private final Path directory;
+    private final long from;
+    private final long to;
+    private final boolean aggregate;
+    private final OutputSink sink;
+
+    // Windows overlapping [from, to], dates in epoch seconds
+    public RollupQuery(String directory, long from, long to, boolean aggregate,
+            MonitoringOptions.OutputFormat outputFormat) {
+        this.directory = Paths.get(directory);
+        this.from = from;
+        this.to = to;
+        this.aggregate = aggregate;
+        sink = OutputSink.of(outputFormat);
+    }
+
+    public void execute() {
+        if (!Files.isDirectory(directory)) {
+            LogStream.err("No rollup store in " + directory);
+            return;
+        }
+        List<WindowsMetrics> windows;
+        try {
+            windows = RollupStore.windows(directory, from, to);
+        } catch (IOException exception) {
+            LogStream.err("Rollup store not read: " + exception.getMessage());
+            return;
+        }
+        LogStream.err(windows.size() + " windows in the range");
+        OutputBuffer buffer = new OutputBuffer();
+        if (aggregate) {
+            if (!windows.isEmpty()) {
+                sink.metrics(aggregate(windows), buffer);
+            }
+        } else {
+            for (WindowsMetrics window : windows) {
+                sink.metrics(window, buffer);
+            }
+        }
+        try {
+            OutputStream output = new BufferedOutputStream(System.out);
+            buffer.writeTo(output);
+            output.flush();
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+    }
+
+    // Sums of the windows, ordered by start date. The section counts are the sums of the
+    // sections reported by each window, and the success rate and the bytes percentiles are
+    // averages weighted by the hits: the stored windows do not keep every section nor the
+    // distribution of the bytes.
+    static WindowsMetrics aggregate(List<WindowsMetrics> windows) {
+        WindowsMetrics total = new WindowsMetrics();
+        total.setStartDate(windows.get(0).getStartDate());
+        total.setLowestSuccessRate(100);
+        Map<String, long[]> sections = new LinkedHashMap<>();
+        long bytes = 0;
+        double p50 = 0;
+        double p95 = 0;
+        double p99 = 0;
+        double successRate = 0;
+        for (WindowsMetrics window : windows) {
+            total.setEndDate(Math.max(total.getEndDate(), window.getEndDate()));
+            total.setHitNB(total.getHitNB() + window.getHitNB());
+            for (int i = 0; i < window.getOperationCount().length; i++) {
+                total.getOperationCount()[i] += window.getOperationCount()[i];
+            }
+            if (window.getHitNB() == 0) {
+                continue;
+            }
+            if (window.getTopSections().isEmpty()) {
+                for (String section : window.getMostHitSections()) {
+                    sections.computeIfAbsent(section, key -> new long[2])[0] +=
+                            window.getMostHitSectionCount();
+                }
+            } else {
+                for (SectionCount section : window.getTopSections()) {
+                    long[] count = sections.computeIfAbsent(section.getSection(),
+                            key -> new long[2]);
+                    count[0] += section.getCount();
+                    count[1] += section.getError();
+                }
+            }
+            bytes += window.getBytes().getTotal();
+            p50 += window.getBytes().getP50() * window.getHitNB();
+            p95 += window.getBytes().getP95() * window.getHitNB();
+            p99 += window.getBytes().getP99() * window.getHitNB();
+            successRate += window.getSuccessRate() * window.getHitNB();
+            if (window.getLowestSuccessRate() < total.getLowestSuccessRate()) {
+                total.setLowestSuccessRate(window.getLowestSuccessRate());
+                total.setLowestSuccessRateHost(window.getLowestSuccessRateHost());
+            }
+        }
+        int hits = total.getHitNB();
+        if (hits > 0) {
+            total.setBytes(new BytesSummary(bytes, p50 / hits, p95 / hits, p99 / hits));
+            total.setSuccessRate(successRate / hits);
+        }
+        List<Map.Entry<String, long[]>> counts = new ArrayList<>(sections.entrySet());
+        counts.sort(Comparator.comparingLong((Map.Entry<String, long[]> entry) ->
+                entry.getValue()[0]).reversed().thenComparing(Map.Entry::getKey));
+        for (Map.Entry<String, long[]> entry : counts) {
+            if (total.getTopSections().size() == RollupStore.SECTION_COUNT) {
+                break;
+            }
+            total.getTopSections().add(new SectionCount(entry.getKey(), entry.getValue()[0],
+                    entry.getValue()[1]));
+            if (entry.getValue()[0] == counts.get(0).getValue()[0]) {
+                total.getMostHitSections().add(entry.getKey());
+            }
+        }
+        if (!counts.isEmpty()) {
+            total.setMostHitSectionCount((int) counts.get(0).getValue()[0]);
+        }
+        return total;
+    }
+}
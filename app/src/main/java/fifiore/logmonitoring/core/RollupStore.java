@@ -0,0 +1,412 @@
+package fifiore.logmonitoring.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// On-disk store of the emitted metrics windows, appended by the metrics output and read by
+// the range queries without the original logs.
+// The windows are partitioned by the UTC hour or day of their start date: one file of
+// fixed-width records "yyyyMMdd[HH].rollup" and its sparse index "yyyyMMdd[HH].index".
+// Record file: int32 magic, int32 version, int32 record size, int32 reserved, then the
+// records in the emission order, an amended window being appended again after the first one.
+// Index: for each complete block of {INDEX_BLOCK} records, int64 lowest start date and
+// int64 highest end date of the block: a query only maps and scans the blocks overlapping
+// its range, and always the records after the last indexed block.
+class RollupStore implements AutoCloseable {
+
+    static final int RECORD_SIZE = 352;
+    static final int INDEX_BLOCK = 64;
+    // Sections kept by record, names truncated to {SECTION_NAME_SIZE} UTF-8 bytes
+    static final int SECTION_COUNT = 5;
+
+    private static final int MAGIC = 0x4C4D5253; // "LMRS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final int HOST_NAME_SIZE = 47;
+    private static final int SECTION_NAME_SIZE = 31;
+    private static final int AMENDED = 1;
+    // Sections of the top sections summary, with their error, instead of the most hit ones
+    private static final int TOP_SECTIONS = 2;
+    private static final String RECORD_SUFFIX = ".rollup";
+    private static final String INDEX_SUFFIX = ".index";
+    private static final DateTimeFormatter HOUR_NAME =
+            DateTimeFormatter.ofPattern("yyyyMMddHH").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter DAY_NAME =
+            DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    private final Path directory;
+    private final long partitionLength; // s
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    // Partition being appended, null before the first window
+    private Partition partition = null;
+
+    RollupStore(Path directory, MonitoringOptions.StorePartition partitioning)
+            throws IOException {
+        this.directory = directory;
+        partitionLength = partitioning == MonitoringOptions.StorePartition.HOUR ? 3600 : 86400;
+        Files.createDirectories(directory);
+    }
+
+    // Called by the metrics output for each emitted window. A window of another partition
+    // than the previous one, like an amended window after a partition change, closes it.
+    void append(WindowsMetrics metrics) {
+        long partitionStart = Math.floorDiv(metrics.getStartDate(), partitionLength)
+                * partitionLength;
+        try {
+            if (partition == null || partition.start != partitionStart) {
+                closePartition();
+                partition = new Partition(partitionStart);
+            }
+            record.clear();
+            encode(metrics, record);
+            record.flip();
+            partition.append(record, metrics.getStartDate(), metrics.getEndDate());
+        } catch (IOException exception) {
+            LogStream.err("Window not stored: " + exception.getMessage());
+            close();
+        }
+    }
+
+    // Forces the records on the disk
+    @Override
+    public void close() {
+        try {
+            closePartition();
+        } catch (IOException exception) {
+            LogStream.err(exception);
+        }
+    }
+
+    // Windows of the store overlapping [from, to] by start date, the last record of a start
+    // date replacing the previous ones: an amended window or a window stored again by another
+    // run on the same logs is returned once
+    static List<WindowsMetrics> windows(Path directory, long from, long to)
+            throws IOException {
+        Map<Long, WindowsMetrics> windows = new TreeMap<>();
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(directory, "*" + RECORD_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        // Name order is the date order
+        files.sort(null);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            String date = name.substring(0, name.length() - RECORD_SUFFIX.length());
+            long start;
+            long length;
+            try {
+                if (date.length() == 10) {
+                    start = LocalDateTime.parse(date, HOUR_NAME).toEpochSecond(ZoneOffset.UTC);
+                    length = 3600;
+                } else {
+                    start = LocalDateTime.parse(date + "00", HOUR_NAME)
+                            .toEpochSecond(ZoneOffset.UTC);
+                    length = 86400;
+                }
+            } catch (RuntimeException exception) {
+                continue;
+            }
+            // The windows of a partition start in it but may end in the next one,
+            // a window being shorter than a partition
+            if (start <= to && start + 2 * length > from) {
+                readPartition(file, directory.resolve(date + INDEX_SUFFIX), from, to, windows);
+            }
+        }
+        return new ArrayList<>(windows.values());
+    }
+
+    private void closePartition() throws IOException {
+        if (partition != null) {
+            Partition closed = partition;
+            partition = null;
+            closed.close();
+        }
+    }
+
+    private static void readPartition(Path file, Path indexFile, long from, long to,
+            Map<Long, WindowsMetrics> windows) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long recordCount = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            if (recordCount <= 0) {
+                return;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getInt(8) != RECORD_SIZE) {
+                LogStream.err("Not a rollup partition of this version: " + file);
+                return;
+            }
+            ByteBuffer index = Files.exists(indexFile)
+                    ? ByteBuffer.wrap(Files.readAllBytes(indexFile))
+                    : ByteBuffer.allocate(0);
+            long indexedBlocks = Math.min(index.limit() / INDEX_ENTRY_SIZE,
+                    recordCount / INDEX_BLOCK);
+            // Consecutive overlapping blocks mapped at once, from {rangeStart}
+            long rangeStart = -1;
+            for (int block = 0; block < indexedBlocks; block++) {
+                long lowestStart = index.getLong(block * INDEX_ENTRY_SIZE);
+                long highestEnd = index.getLong(block * INDEX_ENTRY_SIZE + Long.BYTES);
+                boolean overlapping = lowestStart <= to && highestEnd >= from;
+                if (overlapping && rangeStart < 0) {
+                    rangeStart = (long) block * INDEX_BLOCK;
+                } else if (!overlapping && rangeStart >= 0) {
+                    scan(channel, rangeStart, (long) block * INDEX_BLOCK, from, to, windows);
+                    rangeStart = -1;
+                }
+            }
+            // With the records after the last indexed block, always scanned
+            scan(channel, rangeStart >= 0 ? rangeStart : indexedBlocks * INDEX_BLOCK,
+                    recordCount, from, to, windows);
+        }
+    }
+
+    // Maps the records [first, last) of the partition and decodes the ones in the range
+    private static void scan(FileChannel channel, long first, long last, long from, long to,
+            Map<Long, WindowsMetrics> windows) throws IOException {
+        if (first == last) {
+            return;
+        }
+        MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY,
+                HEADER_SIZE + first * RECORD_SIZE, (last - first) * RECORD_SIZE);
+        for (int position = 0; position < records.limit(); position += RECORD_SIZE) {
+            if (records.getLong(position) <= to
+                    && records.getLong(position + Long.BYTES) >= from) {
+                WindowsMetrics metrics = decode(records.duplicate().position(position));
+                windows.put(metrics.getStartDate(), metrics);
+            }
+        }
+    }
+
+    // Big-endian record of {RECORD_SIZE} bytes: int64 start date, int64 end date,
+    // int32 flags, int32 hits, int32 count per operation in the HttpVerb order,
+    // int64 bytes total, float64 p50, p95 and p99 of the bytes, float64 success rate,
+    // float64 lowest success rate, int64 distinct hosts, host with the lowest success rate,
+    // int32 section count, then {SECTION_COUNT} times int32 count, int32 error and name.
+    // The strings are a length byte followed by the UTF-8 bytes, zero-padded.
+    static void encode(WindowsMetrics metrics, ByteBuffer buffer) {
+        boolean topSections = !metrics.getTopSections().isEmpty();
+        buffer.putLong(metrics.getStartDate());
+        buffer.putLong(metrics.getEndDate());
+        buffer.putInt((metrics.isAmended() ? AMENDED : 0) | (topSections ? TOP_SECTIONS : 0));
+        buffer.putInt(metrics.getHitNB());
+        for (int count : metrics.getOperationCount()) {
+            buffer.putInt(count);
+        }
+        BytesSummary bytes = metrics.getBytes();
+        buffer.putLong(bytes != null ? bytes.getTotal() : 0);
+        buffer.putDouble(bytes != null ? bytes.getP50() : 0);
+        buffer.putDouble(bytes != null ? bytes.getP95() : 0);
+        buffer.putDouble(bytes != null ? bytes.getP99() : 0);
+        buffer.putDouble(metrics.getSuccessRate());
+        buffer.putDouble(metrics.getLowestSuccessRate());
+        buffer.putLong(metrics.getDistinctHostCount());
+        putString(metrics.getLowestSuccessRateHost(), HOST_NAME_SIZE, buffer);
+        int sectionCount = Math.min(SECTION_COUNT, topSections
+                ? metrics.getTopSections().size()
+                : metrics.getMostHitSections().size());
+        buffer.putInt(sectionCount);
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            if (i >= sectionCount) {
+                buffer.putInt(0).putInt(0);
+                putString("", SECTION_NAME_SIZE, buffer);
+            } else if (topSections) {
+                SectionCount section = metrics.getTopSections().get(i);
+                buffer.putInt((int) section.getCount()).putInt((int) section.getError());
+                putString(section.getSection(), SECTION_NAME_SIZE, buffer);
+            } else {
+                buffer.putInt(metrics.getMostHitSectionCount()).putInt(0);
+                putString(metrics.getMostHitSections().get(i), SECTION_NAME_SIZE, buffer);
+            }
+        }
+    }
+
+    static WindowsMetrics decode(ByteBuffer buffer) {
+        WindowsMetrics metrics = new WindowsMetrics();
+        metrics.setStartDate(buffer.getLong());
+        metrics.setEndDate(buffer.getLong());
+        int flags = buffer.getInt();
+        metrics.setAmended((flags & AMENDED) != 0);
+        metrics.setHitNB(buffer.getInt());
+        for (int i = 0; i < metrics.getOperationCount().length; i++) {
+            metrics.getOperationCount()[i] = buffer.getInt();
+        }
+        metrics.setBytes(new BytesSummary(buffer.getLong(), buffer.getDouble(),
+                buffer.getDouble(), buffer.getDouble()));
+        metrics.setSuccessRate(buffer.getDouble());
+        metrics.setLowestSuccessRate(buffer.getDouble());
+        metrics.setDistinctHostCount(buffer.getLong());
+        metrics.setLowestSuccessRateHost(getString(HOST_NAME_SIZE, buffer));
+        int sectionCount = buffer.getInt();
+        for (int i = 0; i < sectionCount; i++) {
+            int count = buffer.getInt();
+            int error = buffer.getInt();
+            String section = getString(SECTION_NAME_SIZE, buffer);
+            if ((flags & TOP_SECTIONS) != 0) {
+                metrics.getTopSections().add(new SectionCount(section, count, error));
+                if (count == metrics.getTopSections().get(0).getCount()) {
+                    metrics.getMostHitSections().add(section);
+                }
+            } else {
+                metrics.getMostHitSections().add(section);
+            }
+            metrics.setMostHitSectionCount(Math.max(metrics.getMostHitSectionCount(), count));
+        }
+        return metrics;
+    }
+
+    static String partitionName(long partitionStart, long partitionLength) {
+        Instant start = Instant.ofEpochSecond(partitionStart);
+        return partitionLength == 3600 ? HOUR_NAME.format(start) : DAY_NAME.format(start);
+    }
+
+    // Truncated on a character boundary
+    private static void putString(String value, int size, ByteBuffer buffer) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, size);
+        while (length < bytes.length && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        buffer.put((byte) length);
+        buffer.put(bytes, 0, length);
+        for (int i = length; i < size; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private static String getString(int size, ByteBuffer buffer) {
+        int length = buffer.get() & 0xFF;
+        byte[] bytes = new byte[size];
+        buffer.get(bytes);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Record and index files of a partition opened for appending
+    private final class Partition {
+        private final long start;
+        private final FileChannel records;
+        private final FileChannel index;
+        private long recordCount;
+        // Bounds of the records of the block not indexed yet
+        private long lowestStart = Long.MAX_VALUE;
+        private long highestEnd = Long.MIN_VALUE;
+
+        Partition(long start) throws IOException {
+            this.start = start;
+            String name = partitionName(start, partitionLength);
+            records = FileChannel.open(directory.resolve(name + RECORD_SUFFIX),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            index = FileChannel.open(directory.resolve(name + INDEX_SUFFIX),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                open();
+            } catch (IOException exception) {
+                records.close();
+                index.close();
+                throw exception;
+            }
+        }
+
+        // Creates the header of a new partition, or continues an existing one: a record
+        // partly written by a crash is cut and the blocks completed without their index
+        // entry are indexed again
+        private void open() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (records.size() < HEADER_SIZE) {
+                header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+                records.truncate(0);
+                writeFully(records, header, 0);
+                index.truncate(0);
+                return;
+            }
+            readFully(records, header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getInt(8) != RECORD_SIZE) {
+                throw new IOException("not a rollup partition of this version: " + start);
+            }
+            recordCount = (records.size() - HEADER_SIZE) / RECORD_SIZE;
+            records.truncate(HEADER_SIZE + recordCount * RECORD_SIZE);
+            long indexedBlocks = Math.min(index.size() / INDEX_ENTRY_SIZE,
+                    recordCount / INDEX_BLOCK);
+            index.truncate(indexedBlocks * INDEX_ENTRY_SIZE);
+            ByteBuffer dates = ByteBuffer.allocate(2 * Long.BYTES);
+            for (long i = indexedBlocks * INDEX_BLOCK; i < recordCount; i++) {
+                dates.clear();
+                readFully(records, dates, HEADER_SIZE + i * RECORD_SIZE);
+                bound(dates.getLong(0), dates.getLong(Long.BYTES));
+                if ((i + 1) % INDEX_BLOCK == 0) {
+                    writeIndexEntry();
+                }
+            }
+        }
+
+        void append(ByteBuffer record, long startDate, long endDate) throws IOException {
+            writeFully(records, record, HEADER_SIZE + recordCount * RECORD_SIZE);
+            recordCount++;
+            bound(startDate, endDate);
+            if (recordCount % INDEX_BLOCK == 0) {
+                writeIndexEntry();
+            }
+        }
+
+        void close() throws IOException {
+            try {
+                records.force(false);
+                index.force(false);
+            } finally {
+                records.close();
+                index.close();
+            }
+        }
+
+        private void bound(long startDate, long endDate) {
+            lowestStart = Math.min(lowestStart, startDate);
+            highestEnd = Math.max(highestEnd, endDate);
+        }
+
+        private void writeIndexEntry() throws IOException {
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            entry.putLong(lowestStart).putLong(highestEnd).flip();
+            writeFully(index, entry, index.size());
+            lowestStart = Long.MAX_VALUE;
+            highestEnd = Long.MIN_VALUE;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("unexpected end of a rollup partition");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package fifiore.logmonitoring.core;
+
+import lombok.Getter;
+
+// Estimated hit count of a section: the real count is in [count - error, count]
+@Getter
+class SectionCount {
+    private final String section;
+    private final long count;
+    private final long error;
+
+    SectionCount(String section, long count, long error) {
+        this.section = section;
+        this.count = count;
+        this.error = error;
+    }
+}
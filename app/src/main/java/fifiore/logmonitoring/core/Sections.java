@@ -0,0 +1,63 @@
+package fifiore.logmonitoring.core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Dictionary of the sections of the requests, shared by every reader: a section is given a
+// dense int id the first time it is read, so that the logs carry an int and the analysis
+// counts the sections in arrays indexed by id. An id is never reused, the analysis may
+// still count it: at most {CAPACITY} sections are given one, the next ones have no id
+// (NONE) and are counted by their text. Once full, a new section gets NONE without taking
+// the lock, so that the parsers do not contend on it.
+final class Sections {
+
+    static final int NONE = -1;
+    static final int CAPACITY = 1 << 16;
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    // Section of each id, replaced by a larger copy when full
+    private static volatile String[] texts = new String[64];
+    private static int count = 0;
+    // Set once {CAPACITY} ids are given
+    private static volatile boolean full = false;
+
+    // Section of the request, see MetricsAggregate.extractSection
+    static int fromRequest(String request) {
+        return id(MetricsAggregate.extractSection(request));
+    }
+
+    static int id(String section) {
+        Integer id = IDS.get(section);
+        if (id != null) {
+            return id;
+        }
+        return full ? NONE : add(section);
+    }
+
+    static String text(int id) {
+        return texts[id];
+    }
+
+    private static synchronized int add(String section) {
+        Integer id = IDS.get(section);
+        if (id != null) {
+            return id;
+        }
+        if (count == CAPACITY) {
+            full = true;
+            return NONE;
+        }
+        String[] values = texts;
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count] = section;
+        // Published before the id, which is read by the other threads after it
+        texts = values;
+        IDS.put(section, count);
+        return count++;
+    }
+
+    private Sections() {}
+}
@@ -0,0 +1,164 @@
+package fifiore.logmonitoring.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+// Metrics tracking spreading the aggregation of the logs over several shard threads,
+// partitioned by remote host.
+// The pushing thread still decides when a window is complete: it sends the window to
+// every shard after the logs preceding it, and a merger thread combines the partial
+// aggregates of the shards before emitting the metrics. The output is the same as
+// the single-threaded tracking.
+class ShardedMetricsTracking extends MetricsTracking {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int SHARD_CHANNEL_CAPACITY = 1 << 10;
+
+    private final int shardCount;
+    private final List<Pipe<ShardBatch>> shardPipes = new ArrayList<>();
+    // Logs waiting to be sent to each shard
+    private final List<List<TrafficLog>> pendingLogs = new ArrayList<>();
+    private final Pipe<ShardResult> mergePipe = new MessageChannel<>();
+    private final ExecutorService executors;
+    private final CompletableFuture<Void> merger;
+
+    ShardedMetricsTracking(Pipe<WindowsMetrics> outputPipe, int windowSize, int waitDelay,
+            int allowedLateness, Supplier<MetricsAggregate> aggregates, int shardCount,
+            WaitStrategy waitStrategy) {
+        super(outputPipe, windowSize, waitDelay, allowedLateness, aggregates);
+        this.shardCount = shardCount;
+        executors = Executors.newFixedThreadPool(shardCount + 1);
+        for (int i = 0; i < shardCount; i++) {
+            Pipe<ShardBatch> shardPipe =
+                    new RingBufferChannel<>(SHARD_CHANNEL_CAPACITY, waitStrategy);
+            // Same bucket capacity as the single-threaded tracking: windows are received
+            // before the logs which would reuse their buckets
+            MetricsBuckets buckets = newBuckets();
+            shardPipes.add(shardPipe);
+            pendingLogs.add(new ArrayList<>(BATCH_SIZE));
+            CompletableFuture.runAsync(() -> shardWorker(shardPipe, buckets), executors);
+        }
+        merger = CompletableFuture.runAsync(this::mergeWorker, executors);
+    }
+
+    @Override
+    void aggregateLog(TrafficLog log) {
+        long address = log.getRemoteAddress();
+        int hash = address != Ipv4.NONE ? Long.hashCode(address) : log.getRemoteHost().hashCode();
+        int shard = Math.floorMod(hash, shardCount);
+        List<TrafficLog> logs = pendingLogs.get(shard);
+        logs.add(log);
+        if (logs.size() == BATCH_SIZE) {
+            sendBatch(shard, null);
+        }
+    }
+
+    @Override
+    void computeWindow(WindowsMetrics metrics) {
+        PendingWindow window = new PendingWindow(metrics, newAggregate());
+        window.event.begin();
+        for (int shard = 0; shard < shardCount; shard++) {
+            sendBatch(shard, window);
+        }
+    }
+
+    @Override
+    void finish() {
+        super.finish();
+        for (int shard = 0; shard < shardCount; shard++) {
+            if (!pendingLogs.get(shard).isEmpty()) {
+                sendBatch(shard, null);
+            }
+            shardPipes.get(shard).close();
+        }
+        merger.join();
+        executors.shutdown();
+    }
+
+    private void sendBatch(int shard, PendingWindow window) {
+        List<TrafficLog> logs = pendingLogs.get(shard);
+        shardPipes.get(shard).push(new ShardBatch(new ArrayList<>(logs), window));
+        logs.clear();
+    }
+
+    private void shardWorker(Pipe<ShardBatch> shardPipe, MetricsBuckets buckets) {
+        List<ShardBatch> batches = new ArrayList<>();
+        while (shardPipe.drainTo(batches, BATCH_SIZE) >= 0) {
+            for (ShardBatch batch : batches) {
+                for (TrafficLog log : batch.logs) {
+                    buckets.add(log);
+                }
+                if (batch.window != null) {
+                    MetricsAggregate partial = newAggregate();
+                    buckets.collect(batch.window.metrics.getStartDate(),
+                            batch.window.metrics.getEndDate(), partial);
+                    mergePipe.push(new ShardResult(batch.window, partial));
+                }
+            }
+            batches.clear();
+        }
+        // End of this shard
+        mergePipe.push(new ShardResult(null, null));
+    }
+
+    private void mergeWorker() {
+        int runningShards = shardCount;
+        while (runningShards > 0) {
+            ShardResult result = mergePipe.read().orElse(new ShardResult(null, null));
+            if (result.window == null) {
+                runningShards--;
+                continue;
+            }
+            PendingWindow window = result.window;
+            window.aggregate.merge(result.partial);
+            window.receivedCount++;
+            // Every shard sends the windows in the same order:
+            // they are complete in order too
+            if (window.receivedCount == shardCount) {
+                window.aggregate.fill(window.metrics);
+                emitMetrics(window.metrics);
+                commitEvent(window.event, window.metrics);
+            }
+        }
+    }
+
+    private static class ShardBatch {
+        private final List<TrafficLog> logs;
+        // Window to compute after the logs, null if none
+        private final PendingWindow window;
+
+        ShardBatch(List<TrafficLog> logs, PendingWindow window) {
+            this.logs = logs;
+            this.window = window;
+        }
+    }
+
+    private static class ShardResult {
+        // null at the end of a shard
+        private final PendingWindow window;
+        private final MetricsAggregate partial;
+
+        ShardResult(PendingWindow window, MetricsAggregate partial) {
+            this.window = window;
+            this.partial = partial;
+        }
+    }
+
+    // Window waiting for the partial aggregates of the shards, only used by the merger
+    private static class PendingWindow {
+        private final WindowsMetrics metrics;
+        private final MetricsAggregate aggregate;
+        private int receivedCount = 0;
+        // Timed from the dispatch to the shards to the emission
+        private final WindowComputedEvent event = new WindowComputedEvent();
+
+        PendingWindow(WindowsMetrics metrics, MetricsAggregate aggregate) {
+            this.metrics = metrics;
+            this.aggregate = aggregate;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package fifiore.logmonitoring.core;
+
+// Min-heap of slot indexes ordered by a count array owned by the caller.
+// The position of each slot is kept so that a slot whose count increased is moved in place.
+class SlotHeap {
+
+    private final long[] counts;
+    private final int[] heap;
+    private final int[] positions;
+    private int size = 0;
+
+    SlotHeap(long[] counts) {
+        this.counts = counts;
+        this.heap = new int[counts.length];
+        this.positions = new int[counts.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Slot with the lowest count, the heap must not be empty
+    int min() {
+        return heap[0];
+    }
+
+    void add(int slot) {
+        int position = size++;
+        place(slot, position);
+        siftUp(position);
+    }
+
+    // To be called after the count of {slot} increased
+    void increased(int slot) {
+        siftDown(positions[slot]);
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(slot, position);
+    }
+
+    private void siftDown(int position) {
+        int slot = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[slot] <= counts[heap[child]]) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(slot, position);
+    }
+
+    private void place(int slot, int position) {
+        heap[position] = slot;
+        positions[slot] = position;
+    }
+}
@@ -0,0 +1,181 @@
+package fifiore.logmonitoring.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Space-Saving summary of the most hit sections, in bounded memory.
+// At most {capacity} sections are counted: a new section replaces the least counted one and
+// inherits its count as error. The count of a section is an upper bound of its real count,
+// count - error a lower bound. Summaries are mergeable, to combine per-second buckets.
+class SpaceSavingSketch {
+
+    private final int capacity;
+    private final Map<String, Integer> slots;
+    private final String[] sections;
+    private final long[] counts;
+    private final long[] errors;
+    // Response bytes of each section since it is counted
+    private final QuantileSketch[] bytes;
+    // Slots by count, the least counted section is replaced first
+    private final SlotHeap heap;
+    private int size = 0;
+
+    SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+        this.slots = new HashMap<>(capacity * 2);
+        this.sections = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.bytes = new QuantileSketch[capacity];
+        for (int i = 0; i < capacity; i++) {
+            bytes[i] = new QuantileSketch();
+        }
+        this.heap = new SlotHeap(counts);
+    }
+
+    void add(String section, long responseBytes) {
+        Integer slot = slots.get(section);
+        if (slot != null) {
+            counts[slot]++;
+            heap.increased(slot);
+        } else if (size < capacity) {
+            slot = insert(section, 1, 0);
+        } else {
+            // Replace the least counted section
+            slot = heap.min();
+            slots.remove(sections[slot]);
+            sections[slot] = section;
+            errors[slot] = counts[slot];
+            counts[slot]++;
+            bytes[slot].clear();
+            slots.put(section, slot);
+            heap.increased(slot);
+        }
+        bytes[slot].add(responseBytes);
+    }
+
+    // Once merged, the count of a section missing in a summary includes the lowest count of
+    // this summary: the section could have been evicted from it with up to this count.
+    void merge(SpaceSavingSketch other) {
+        if (other.size == 0) {
+            return;
+        }
+        long minCount = minCount();
+        long otherMinCount = other.minCount();
+        int total = size + other.size;
+        String[] mergedSections = new String[total];
+        long[] mergedCounts = new long[total];
+        long[] mergedErrors = new long[total];
+        QuantileSketch[] mergedBytes = new QuantileSketch[total];
+        int mergedSize = 0;
+        for (int slot = 0; slot < size; slot++) {
+            Integer otherSlot = other.slots.get(sections[slot]);
+            mergedSections[mergedSize] = sections[slot];
+            mergedBytes[mergedSize] = new QuantileSketch();
+            mergedBytes[mergedSize].merge(bytes[slot]);
+            if (otherSlot != null) {
+                mergedCounts[mergedSize] = counts[slot] + other.counts[otherSlot];
+                mergedErrors[mergedSize] = errors[slot] + other.errors[otherSlot];
+                mergedBytes[mergedSize].merge(other.bytes[otherSlot]);
+            } else {
+                mergedCounts[mergedSize] = counts[slot] + otherMinCount;
+                mergedErrors[mergedSize] = errors[slot] + otherMinCount;
+            }
+            mergedSize++;
+        }
+        for (int slot = 0; slot < other.size; slot++) {
+            if (!slots.containsKey(other.sections[slot])) {
+                mergedSections[mergedSize] = other.sections[slot];
+                mergedCounts[mergedSize] = other.counts[slot] + minCount;
+                mergedErrors[mergedSize] = other.errors[slot] + minCount;
+                mergedBytes[mergedSize] = new QuantileSketch();
+                mergedBytes[mergedSize].merge(other.bytes[slot]);
+                mergedSize++;
+            }
+        }
+
+        clear();
+        // Keep the most counted sections
+        Integer[] order = new Integer[mergedSize];
+        for (int i = 0; i < mergedSize; i++) {
+            order[i] = i;
+        }
+        if (mergedSize > capacity) {
+            Arrays.sort(order, Comparator.comparingLong(i -> -mergedCounts[i]));
+        }
+        for (int i = 0; i < Math.min(capacity, mergedSize); i++) {
+            int slot = insert(mergedSections[order[i]], mergedCounts[order[i]],
+                    mergedErrors[order[i]]);
+            bytes[slot].merge(mergedBytes[order[i]]);
+        }
+    }
+
+    void clear() {
+        slots.clear();
+        Arrays.fill(sections, 0, size, null);
+        for (int slot = 0; slot < size; slot++) {
+            bytes[slot].clear();
+        }
+        size = 0;
+        heap.clear();
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeInt(size);
+        for (int slot = 0; slot < size; slot++) {
+            Checkpoint.writeText(sections[slot], output);
+            output.writeLong(counts[slot]);
+            output.writeLong(errors[slot]);
+            bytes[slot].write(output);
+        }
+    }
+
+    // Replaces the content with a summary of the same capacity written by write()
+    void read(DataInput input) throws IOException {
+        clear();
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            int slot = insert(Checkpoint.readText(input), input.readLong(), input.readLong());
+            bytes[slot].read(input);
+        }
+    }
+
+    // The {count} most hit sections, by decreasing count then by name
+    List<SectionCount> top(int count) {
+        List<SectionCount> result = new ArrayList<>(size);
+        for (int slot = 0; slot < size; slot++) {
+            result.add(new SectionCount(sections[slot], counts[slot], errors[slot]));
+        }
+        result.sort(Comparator.comparingLong(SectionCount::getCount).reversed()
+                .thenComparing(SectionCount::getSection));
+        return result.subList(0, Math.min(count, result.size()));
+    }
+
+    // Response bytes of a counted section, null if it is not counted
+    QuantileSketch bytes(String section) {
+        Integer slot = slots.get(section);
+        return slot != null ? bytes[slot] : null;
+    }
+
+    // Highest count of a section which is not counted anymore
+    private long minCount() {
+        return size < capacity ? 0 : counts[heap.min()];
+    }
+
+    private int insert(String section, long count, long error) {
+        int slot = size++;
+        sections[slot] = section;
+        counts[slot] = count;
+        errors[slot] = error;
+        slots.put(section, slot);
+        heap.add(slot);
+        return slot;
+    }
+}
@@ -0,0 +1,11 @@
+package fifiore.logmonitoring.core;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+class StatusCount {
+    private int successCount = 0;
+    private int failureCount = 0;
+}
@@ -0,0 +1,25 @@
+package fifiore.logmonitoring.core;
+
+// Human-readable lines of the console
+class TextSink implements OutputSink {
+
+    private final StringBuilder stringBuilder = new StringBuilder(1 << 10);
+
+    @Override
+    public void metrics(WindowsMetrics metrics, OutputBuffer buffer) {
+        Display.metrics(metrics, stringBuilder);
+        writeLine(buffer);
+    }
+
+    @Override
+    public void alert(TrafficAlert alert, OutputBuffer buffer) {
+        Display.alert(alert, stringBuilder);
+        writeLine(buffer);
+    }
+
+    private void writeLine(OutputBuffer buffer) {
+        stringBuilder.append('\n');
+        buffer.writeText(stringBuilder);
+        stringBuilder.setLength(0);
+    }
+}
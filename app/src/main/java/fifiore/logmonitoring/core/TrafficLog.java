@@ -6,9 +6,81 @@ import lombok.Setter;
 @Getter
 @Setter
 class TrafficLog {
+    private static final long UNKNOWN_ADDRESS = -2;
+    private static final int UNKNOWN_SECTION = -2;
+
     private long date = 0;
     private int status = 0;
     private String request = "";
+    // Id of the section of the request (see Sections), extracted when first read
+    private int section = UNKNOWN_SECTION;
+    // Verb of the request, extracted when first read
+    private HttpVerb.Values verb = null;
+    // Size of the response, 0 if unknown
+    private long bytes = 0;
+    // Remote host as text, built from the address when it is only set as an address
     private String remoteHost = ";";
-}
+    // Remote host as a packed IPv4 address (see Ipv4), parsed from the text when first read
+    private long remoteAddress = UNKNOWN_ADDRESS;
+    // Input byte offset following the line of the log, where the reading resumes after it,
+    // 0 if unknown
+    private long offset = 0;
+
+    void setRequest(String request) {
+        this.request = request;
+        this.section = UNKNOWN_SECTION;
+        this.verb = null;
+    }
+
+    // Request already split by the reader
+    void setRequest(String request, int section, HttpVerb.Values verb) {
+        this.request = request;
+        this.section = section;
+        this.verb = verb;
+    }
+
+    int getSection() {
+        if (section == UNKNOWN_SECTION) {
+            section = Sections.fromRequest(request);
+        }
+        return section;
+    }
+
+    // Also for a section without id
+    String getSectionText() {
+        int id = getSection();
+        return id != Sections.NONE ? Sections.text(id) : MetricsAggregate.extractSection(request);
+    }
 
+    HttpVerb.Values getVerb() {
+        if (verb == null) {
+            verb = HttpVerb.fromRequest(request);
+        }
+        return verb;
+    }
+
+    String getRemoteHost() {
+        if (remoteHost == null) {
+            remoteHost = Ipv4.format(remoteAddress);
+        }
+        return remoteHost;
+    }
+
+    void setRemoteHost(String remoteHost) {
+        this.remoteHost = remoteHost;
+        this.remoteAddress = UNKNOWN_ADDRESS;
+    }
+
+    long getRemoteAddress() {
+        if (remoteAddress == UNKNOWN_ADDRESS) {
+            remoteAddress = Ipv4.parse(remoteHost);
+        }
+        return remoteAddress;
+    }
+
+    // Avoids the host String for IPv4 addresses
+    void setRemoteAddress(long remoteAddress) {
+        this.remoteAddress = remoteAddress;
+        this.remoteHost = null;
+    }
+}
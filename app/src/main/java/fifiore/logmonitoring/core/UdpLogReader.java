@@ -0,0 +1,75 @@
+package fifiore.logmonitoring.core;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+// Logs received as datagrams of one or more CSV lines, from any number of senders.
+// Lines follow the default column order, a header line received changes it.
+class UdpLogReader implements LogReader {
+
+    private static final int MAX_DATAGRAM_SIZE = 1 << 16;
+    private static final byte NEW_LINE = '\n';
+    private static final byte[] HEADER_START = "\"remotehost\"".getBytes(StandardCharsets.UTF_8);
+
+    private final DatagramSocket socket;
+    private final DatagramPacket packet;
+    private final byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+    private final CsvLineParser parser;
+    // Unread lines of the last datagram are in [position, limit)
+    private int position = 0;
+    private int limit = 0;
+
+    UdpLogReader(DatagramSocket socket, char delimiter) {
+        this.socket = socket;
+        this.packet = new DatagramPacket(buffer, buffer.length);
+        this.parser = new CsvLineParser(delimiter);
+        byte[] header = LogGenerator.HEADER.getBytes(StandardCharsets.UTF_8);
+        parser.readHeader(header, 0, header.length);
+    }
+
+    @Override
+    public Optional<TrafficLog> getLine() {
+        while (true) {
+            while (position < limit) {
+                int lineEnd = position;
+                while (lineEnd < limit && buffer[lineEnd] != NEW_LINE) {
+                    lineEnd++;
+                }
+                int lineStart = position;
+                position = lineEnd + 1;
+                if (lineEnd == lineStart) {
+                    continue;
+                }
+                if (isHeader(lineStart, lineEnd)) {
+                    parser.readHeader(buffer, lineStart, lineEnd);
+                    continue;
+                }
+                return Optional.of(parser.parse(buffer, lineStart, lineEnd));
+            }
+            try {
+                socket.receive(packet);
+            } catch (IOException exception) {
+                LogStream.err(exception);
+                socket.close();
+                return Optional.empty();
+            }
+            position = 0;
+            limit = packet.getLength();
+        }
+    }
+
+    private boolean isHeader(int start, int end) {
+        if (end - start < HEADER_START.length) {
+            return false;
+        }
+        for (int i = 0; i < HEADER_START.length; i++) {
+            if (buffer[start + i] != HEADER_START[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package fifiore.logmonitoring.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+// How a thread waits for a pipe to be writable or readable
+public enum WaitStrategy {
+    // Lowest latency, burns a core while waiting
+    SPIN {
+        @Override
+        void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+    // Spin a little then let other threads run
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_ATTEMPTS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+    // Spin, yield, then sleep: almost no CPU when the pipe stays idle
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_ATTEMPTS) {
+                Thread.onSpinWait();
+            } else if (attempt < 2 * SPIN_ATTEMPTS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+
+    private static final int SPIN_ATTEMPTS = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    // Called in a loop until the pipe is ready, {attempt} starting at 0
+    abstract void idle(int attempt);
+}
@@ -0,0 +1,43 @@
+package fifiore.logmonitoring.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timestamp;
+
+// JFR event of the computation of a metrics window, from its close to its emission.
+// Disabled unless a recording uses the logmonitoring.jfc settings.
+@Name("fifiore.logmonitoring.WindowComputed")
+@Label("Metrics Window Computed")
+@Category("Log Monitoring")
+@Description("Metrics of a window aggregated and emitted")
+@Enabled(false)
+@StackTrace(false)
+class WindowComputedEvent extends jdk.jfr.Event {
+
+    @Label("Window Start")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long startDate;
+
+    @Label("Window End")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long endDate;
+
+    @Label("Log Count")
+    int logCount;
+
+    @Label("Amended")
+    @Description("Window emitted again with late logs")
+    boolean amended;
+
+    void set(WindowsMetrics metrics) {
+        // Log dates are in seconds
+        startDate = metrics.getStartDate() * 1000;
+        endDate = metrics.getEndDate() * 1000;
+        logCount = metrics.getHitNB();
+        amended = metrics.isAmended();
+    }
+}
@@ -1,7 +1,9 @@
 package fifiore.logmonitoring.core;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -12,11 +14,20 @@ class WindowsMetrics {
     private long startDate = 0;
     // last date included
     private long endDate = 0;
+    // Window emitted again with late logs
+    private boolean amended = false;
     private int hitNB = 0;
     private List<String> mostHitSections = new ArrayList<>();
     private int mostHitSectionCount = 0;
+    // Most hit sections by decreasing count, only filled by the top sections summary
+    private List<SectionCount> topSections = new ArrayList<>();
+    // Response bytes of the window and of the reported sections
+    private BytesSummary bytes;
+    private Map<String, BytesSummary> bytesPerSection = new LinkedHashMap<>();
     private int[] operationCount = new int[5];
     private double successRate;
     private String lowestSuccessRateHost = "";
     private double lowestSuccessRate = 0;
+    // Estimated number of distinct remote hosts, only computed with a host table
+    private long distinctHostCount = -1;
 }
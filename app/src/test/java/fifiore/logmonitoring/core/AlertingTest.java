@@ -47,4 +47,69 @@ class AlertingTest {
         assertEquals(13, result.get(3).getDate());
         assertEquals(false, result.get(3).isAlert());
     }
+
+    @Test
+    void dateGap() {
+        MessageChannel<TrafficAlert> outputPipe = new MessageChannel<>();
+        Alerting alerting = new Alerting(outputPipe, 3, 1);
+        alerting.setTrafficAlertThreshold(2);
+
+        long[] dates = {1, 1, 2, 1, 2, 3, 2, 3, 3, 40, 40, 40, 40, 40, 40, 40, 41};
+        Arrays.stream(dates).forEach(date -> pushLog(alerting, date));
+        outputPipe.close();
+
+        List<TrafficAlert> result = new ArrayList<>();
+        Optional<TrafficAlert> alert = outputPipe.read();
+        while (alert.isPresent()) {
+            result.add(alert.get());
+            alert = outputPipe.read();
+        }
+
+        assertEquals(3, result.size());
+
+        assertEquals(3, result.get(0).getDate());
+        assertEquals(true, result.get(0).isAlert());
+
+        // The window slides over the gap before the date 40 is counted
+        assertEquals(5, result.get(1).getDate());
+        assertEquals(false, result.get(1).isAlert());
+
+        assertEquals(40, result.get(2).getDate());
+        assertEquals(true, result.get(2).isAlert());
+        assertEquals(2, result.get(2).getHitCountAverage());
+    }
+
+    @Test
+    void lateLogs() {
+        MessageChannel<TrafficAlert> outputPipe = new MessageChannel<>();
+        Alerting alerting = new Alerting(outputPipe, 3, 1);
+        alerting.setTrafficAlertThreshold(2);
+
+        // Window [11, 13] of 5 hits computed at the date 14
+        long[] dates = {11, 11, 12, 12, 13, 14};
+        Arrays.stream(dates).forEach(date -> pushLog(alerting, date));
+        // Late log of the computed window, counted by the next one: [12, 14] has 6 hits
+        pushLog(alerting, 12);
+        pushLog(alerting, 14);
+        pushLog(alerting, 15);
+        // Older than the date exiting the window: dropped
+        pushLog(alerting, 11);
+        pushLog(alerting, 16);
+        outputPipe.close();
+
+        List<TrafficAlert> result = new ArrayList<>();
+        Optional<TrafficAlert> alert = outputPipe.read();
+        while (alert.isPresent()) {
+            result.add(alert.get());
+            alert = outputPipe.read();
+        }
+
+        assertEquals(2, result.size());
+        assertEquals(14, result.get(0).getDate());
+        assertEquals(true, result.get(0).isAlert());
+        assertEquals(2, result.get(0).getHitCountAverage());
+        assertEquals(15, result.get(1).getDate());
+        assertEquals(false, result.get(1).isAlert());
+        assertEquals(1, alerting.getDroppedLogCount());
+    }
 }
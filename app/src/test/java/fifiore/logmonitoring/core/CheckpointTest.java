@@ -0,0 +1,242 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Supplier;
+
+class CheckpointTest {
+
+    private static final int LOG_COUNT = 3000;
+
+    private static final int LOW_TRAFFIC_START = 1000;
+    private static final int LOW_TRAFFIC_END = 1100;
+
+    // 4 hits per second, 1 between LOW_TRAFFIC_START and LOW_TRAFFIC_END, slightly out of order
+    private static TrafficLog log(int i) {
+        TrafficLog log = new TrafficLog();
+        long date = 1000 - (i % 7 == 3 ? 1 : 0);
+        if (i < LOW_TRAFFIC_START) {
+            date += i / 4;
+        } else if (i < LOW_TRAFFIC_END) {
+            date += LOW_TRAFFIC_START / 4 + i - LOW_TRAFFIC_START;
+        } else {
+            date += LOW_TRAFFIC_START / 4 + LOW_TRAFFIC_END - LOW_TRAFFIC_START
+                    + (i - LOW_TRAFFIC_END) / 4;
+        }
+        log.setDate(date);
+        log.setStatus(i % 5 == 0 ? 500 : 200);
+        log.setRequest("GET /section" + i % 13 + "/x HTTP/1.0");
+        log.setBytes(100 + i % 1000);
+        log.setRemoteHost(i % 11 == 0 ? "host.example" : "10.0.0." + i % 37);
+        log.setOffset(i + 1);
+        return log;
+    }
+
+    private static <T> List<String> drain(Pipe<T> pipe) {
+        pipe.close();
+        List<String> result = new ArrayList<>();
+        Optional<T> message = pipe.read();
+        while (message.isPresent()) {
+            StringBuilder text = new StringBuilder();
+            if (message.get() instanceof WindowsMetrics) {
+                Display.metrics((WindowsMetrics) message.get(), text);
+            } else {
+                Display.alert((TrafficAlert) message.get(), text);
+            }
+            result.add(text.toString());
+            message = pipe.read();
+        }
+        return result;
+    }
+
+    private static void check(Supplier<MetricsAggregate> aggregates) throws IOException {
+        Pipe<WindowsMetrics> metricsPipe = new MessageChannel<>();
+        Pipe<TrafficAlert> alertPipe = new MessageChannel<>();
+        MetricsTracking metricsTracking = new MetricsTracking(metricsPipe, 10, 2, 0, aggregates);
+        Alerting alerting = new Alerting(alertPipe, 30, 2);
+        alerting.setTrafficAlertThreshold(3);
+        for (int i = 0; i < LOG_COUNT; i++) {
+            metricsTracking.pushLog(log(i));
+            alerting.pushLog(log(i));
+        }
+        List<String> expectedMetrics = drain(metricsPipe);
+        List<String> expectedAlerts = drain(alertPipe);
+        assertEquals(3, expectedAlerts.size());
+
+        // Stopped on alert, and restarted from the checkpoint
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        Path input = Files.createTempFile("input", ".csv");
+        Files.write(input, inputBytes(LOG_COUNT, 1));
+        Pipe<WindowsMetrics> firstMetricsPipe = new MessageChannel<>();
+        Pipe<TrafficAlert> firstAlertPipe = new MessageChannel<>();
+        MetricsTracking firstMetricsTracking =
+                new MetricsTracking(firstMetricsPipe, 10, 2, 0, aggregates);
+        Alerting firstAlerting = new Alerting(firstAlertPipe, 30, 2);
+        firstAlerting.setTrafficAlertThreshold(3);
+        int stop = LOW_TRAFFIC_START + 10;
+        for (int i = 0; i < stop; i++) {
+            firstMetricsTracking.pushLog(log(i));
+            firstAlerting.pushLog(log(i));
+        }
+        try (Checkpoint checkpoint = new Checkpoint(file, input, 10, 10, 30)) {
+            checkpoint.save(stop, firstMetricsTracking, firstAlerting);
+        }
+
+        Pipe<WindowsMetrics> nextMetricsPipe = new MessageChannel<>();
+        Pipe<TrafficAlert> nextAlertPipe = new MessageChannel<>();
+        MetricsTracking nextMetricsTracking =
+                new MetricsTracking(nextMetricsPipe, 10, 2, 0, aggregates);
+        Alerting nextAlerting = new Alerting(nextAlertPipe, 30, 2);
+        nextAlerting.setTrafficAlertThreshold(3);
+        try (Checkpoint checkpoint = new Checkpoint(file, input, 10, 10, 30)) {
+            assertEquals(stop, checkpoint.restore(nextMetricsTracking, nextAlerting));
+        }
+        for (int i = stop; i < LOG_COUNT; i++) {
+            nextMetricsTracking.pushLog(log(i));
+            nextAlerting.pushLog(log(i));
+        }
+        List<String> metrics = drain(firstMetricsPipe);
+        metrics.addAll(drain(nextMetricsPipe));
+        List<String> alerts = drain(firstAlertPipe);
+        alerts.addAll(drain(nextAlertPipe));
+        assertEquals(expectedMetrics, metrics);
+        assertEquals(expectedAlerts, alerts);
+
+        // Not restored with other parameters
+        try (Checkpoint checkpoint = new Checkpoint(file, input, 10, 10, 60)) {
+            assertEquals(0, checkpoint.restore(new MetricsTracking(
+                    new MessageChannel<>(), 10, 2, 0, aggregates),
+                    new Alerting(new MessageChannel<>(), 60, 2)));
+        }
+        Files.delete(file);
+        Files.delete(input);
+    }
+
+    // {size} bytes of the seed
+    private static byte[] inputBytes(int size, int seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static long restore(Path file, Path input) {
+        try (Checkpoint checkpoint = new Checkpoint(file, input, 10, 10, 30)) {
+            return checkpoint.restore(
+                    new MetricsTracking(new MessageChannel<>(), 10, 2, 0, MetricsAggregate::new),
+                    new Alerting(new MessageChannel<>(), 30, 2));
+        }
+    }
+
+    private static void save(Path file, Path input, long offset) {
+        try (Checkpoint checkpoint = new Checkpoint(file, input, 10, 10, 30)) {
+            checkpoint.save(offset,
+                    new MetricsTracking(new MessageChannel<>(), 10, 2, 0, MetricsAggregate::new),
+                    new Alerting(new MessageChannel<>(), 30, 2));
+        }
+    }
+
+    @Test
+    void exactCounts() throws IOException {
+        check(MetricsAggregate::new);
+    }
+
+    @Test
+    void boundedSummaries() throws IOException {
+        check(() -> new MetricsAggregate(3, 8));
+    }
+
+    @Test
+    void otherInput() throws IOException {
+        Path directory = Files.createTempDirectory("checkpoint");
+        Path file = directory.resolve("checkpoint.bin");
+        Path input = directory.resolve("input.csv");
+        Path other = directory.resolve("other.csv");
+        Files.write(input, inputBytes(10000, 1));
+        Files.write(other, inputBytes(10000, 1));
+        save(file, input, 5000);
+        assertEquals(5000, restore(file, input));
+
+        // Same content at another path
+        assertEquals(0, restore(file, other));
+        // Other content at the same path
+        Files.write(input, inputBytes(10000, 2));
+        assertEquals(0, restore(file, input));
+        // Other file moved to the path
+        Files.move(other, input, StandardCopyOption.REPLACE_EXISTING);
+        assertEquals(0, restore(file, input));
+        // Shorter than the offset
+        Files.write(input, inputBytes(4000, 1));
+        assertEquals(0, restore(file, input));
+
+        Files.delete(file);
+        Files.delete(input);
+        Files.delete(directory);
+    }
+
+    @Test
+    void followedFile() throws IOException {
+        Path directory = Files.createTempDirectory("checkpoint");
+        Path file = directory.resolve("checkpoint.bin");
+        Path input = directory.resolve("access.csv");
+        Path rotated = directory.resolve("access.csv.1");
+        String header = LogGenerator.HEADER + "\n";
+        String line = "\"10.0.0.1\",\"-\",\"apache\",1000,\"GET /api/x HTTP/1.0\",200,100\n";
+        Files.write(input, (header + line + line).getBytes(StandardCharsets.UTF_8));
+        try (FollowFileInputStream stream = new FollowFileInputStream(input);
+                Checkpoint checkpoint = new Checkpoint(file, input, 10, 10, 30)) {
+            checkpoint.setPositions(stream::filePosition);
+            ByteCsvLogReader reader = new ByteCsvLogReader(stream, ',');
+            long firstOffset = reader.getLine().get().getOffset();
+            reader.getLine();
+            Files.move(input, rotated);
+            Files.write(input, (header + line).getBytes(StandardCharsets.UTF_8));
+            long rotatedOffset = reader.getLine().get().getOffset();
+
+            // The log of the rotated file is not saved, the one of the new file is
+            save(checkpoint, firstOffset);
+            assertFalse(Files.exists(file));
+            save(checkpoint, rotatedOffset);
+        }
+        assertEquals(header.length() + line.length(), restore(file, input));
+
+        Files.delete(file);
+        Files.delete(input);
+        Files.delete(rotated);
+        Files.delete(directory);
+    }
+
+    private static void save(Checkpoint checkpoint, long offset) {
+        checkpoint.save(offset,
+                new MetricsTracking(new MessageChannel<>(), 10, 2, 0, MetricsAggregate::new),
+                new Alerting(new MessageChannel<>(), 30, 2));
+    }
+
+    @Test
+    void longTexts() throws IOException {
+        TrafficLog log = new TrafficLog();
+        log.setDate(1000);
+        log.setStatus(200);
+        log.setRequest("GET /" + "\u00e9".repeat(40000) + " HTTP/1.0");
+        log.setBytes(100);
+        log.setRemoteHost("h".repeat(70000));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Checkpoint.writeLog(log, new DataOutputStream(bytes));
+        TrafficLog read = Checkpoint.readLog(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(log.getRequest(), read.getRequest());
+        assertEquals(log.getRemoteHost(), read.getRemoteHost());
+    }
+}
@@ -0,0 +1,75 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+class ColumnarLogTest {
+
+    private static final String[] REQUESTS = {"GET /api/user HTTP/1.0",
+        "POST /report HTTP/1.0", "DELETE //x HTTP/1.0", "FOO /api/x HTTP/1.0", "GET",
+        "PUT / HTTP/1.0"};
+    private static final String[] HOSTS = {"10.0.0.1", "host.example", "010.0.0.2", ""};
+
+    // More logs than a block, slightly out of order
+    private static List<TrafficLog> logs() {
+        List<TrafficLog> logs = new ArrayList<>();
+        for (int i = 0; i < ColumnarLogWriter.BLOCK_ROWS + 1000; i++) {
+            TrafficLog log = new TrafficLog();
+            log.setDate(1549573860 + i / 10 - (i % 7 == 3 ? 2 : 0));
+            log.setStatus(i % 5 == 0 ? 503 : 200);
+            log.setBytes(i % 3 == 0 ? 0 : 1234L * i);
+            log.setRequest(REQUESTS[i % REQUESTS.length]);
+            log.setRemoteHost(i % 100 == 0 ? "10.1." + i / 256 % 256 + "." + i % 256
+                    : HOSTS[i % HOSTS.length]);
+            logs.add(log);
+        }
+        return logs;
+    }
+
+    @Test
+    void execution() throws IOException {
+        Path file = Files.createTempFile("logs", ".lmc");
+        List<TrafficLog> logs = logs();
+        // With a line of an invalid date, which is skipped
+        List<TrafficLog> input = new ArrayList<>(logs);
+        input.add(100, new TrafficLog());
+        Iterator<TrafficLog> lines = input.iterator();
+        try (OutputStream stream = Files.newOutputStream(file)) {
+            long[] counts = LogConverter.convert(
+                    () -> lines.hasNext() ? Optional.of(lines.next()) : Optional.empty(), stream);
+            assertEquals(logs.size(), counts[0]);
+            assertEquals(1, counts[1]);
+        }
+        assertTrue(ColumnarLogReader.isColumnar(file));
+
+        ColumnarLogReader reader = new ColumnarLogReader(file);
+        for (TrafficLog expected : logs) {
+            TrafficLog log = reader.getLine().orElseThrow();
+            assertEquals(expected.getDate(), log.getDate());
+            assertEquals(expected.getStatus(), log.getStatus());
+            assertEquals(expected.getBytes(), log.getBytes());
+            assertEquals(expected.getRemoteHost(), log.getRemoteHost());
+            // Same section and verb for the analysis
+            assertEquals(MetricsAggregate.extractSection(expected.getRequest()),
+                    MetricsAggregate.extractSection(log.getRequest()));
+            assertEquals(HttpVerb.fromRequest(expected.getRequest()),
+                    HttpVerb.fromRequest(log.getRequest()));
+        }
+        assertFalse(reader.getLine().isPresent());
+    }
+
+    @Test
+    void csvFile() throws IOException {
+        Path file = Files.createTempFile("logs", ".csv");
+        Files.writeString(file, LogGenerator.HEADER + "\n");
+        assertFalse(ColumnarLogReader.isColumnar(file));
+    }
+}
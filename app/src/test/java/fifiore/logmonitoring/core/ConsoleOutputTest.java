@@ -0,0 +1,73 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayOutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+class ConsoleOutputTest {
+
+    private static WindowsMetrics metrics(long startDate) {
+        WindowsMetrics metrics = new WindowsMetrics();
+        metrics.setStartDate(startDate);
+        metrics.setEndDate(startDate + 9);
+        return metrics;
+    }
+
+    private static TrafficAlert alert(long date) {
+        return TrafficAlert.builder().date(date).isAlert(true).hitCountAverage(12).build();
+    }
+
+    private static String text(WindowsMetrics metrics) {
+        OutputBuffer buffer = new OutputBuffer();
+        new TextSink().metrics(metrics, buffer);
+        return buffer.toString();
+    }
+
+    private static String text(TrafficAlert alert) {
+        OutputBuffer buffer = new OutputBuffer();
+        new TextSink().alert(alert, buffer);
+        return buffer.toString();
+    }
+
+    @Test
+    void alertOrder() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        // Delays long enough for the timer not to interfere
+        ConsoleOutput output = new ConsoleOutput(stream, new TextSink(), 60_000, 60_000);
+
+        // Held until the window containing its date is written
+        output.alert(alert(105));
+        assertEquals("", stream.toString());
+        output.metrics(metrics(90));
+        output.metrics(metrics(100));
+        String expected = text(metrics(90)) + text(metrics(100)) + text(alert(105));
+        assertEquals(expected, stream.toString());
+
+        // Written at once when its window is already written
+        output.alert(alert(108));
+        expected += text(alert(108));
+        assertEquals(expected, stream.toString());
+
+        // Released at the end of the metrics
+        output.alert(alert(125));
+        output.metrics(metrics(110));
+        expected += text(metrics(110));
+        assertEquals(expected, stream.toString());
+        output.metricsEnded();
+        output.close();
+        assertEquals(expected + text(alert(125)), stream.toString());
+    }
+
+    @Test
+    void dateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+        long[] dates = {0, 59, 60, 1549573860, 1549573869, 1549573925, 1549573860};
+        for (long date : dates) {
+            StringBuilder stringBuilder = new StringBuilder();
+            Display.appendDate(stringBuilder, date);
+            assertEquals(format.format(new Date(date * 1000)), stringBuilder.toString());
+        }
+    }
+}
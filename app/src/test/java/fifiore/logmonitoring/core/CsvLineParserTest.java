@@ -0,0 +1,64 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+class CsvLineParserTest {
+
+    private final String input = "\"remotehost\",\"rfc931\",\"authuser\",\"date\",\"request\",\"status\",\"bytes\"\n"
+            + "\"10.0.0.1\",\"-\",\"apache\",1549574332,\"GET /api/user HTTP/1.0\",200,1234\n"
+            + "\"10.0.0.4\",\"-\",\"apache, inc\",1549574333,\"GET /report?a=1,2 HTTP/1.0\",404,1136\r\n"
+            + "\"10.0.0.2\",\"-\",\"apache\",invalid,\"GET /api/user HTTP/1.0\",200,1194\n"
+            + "\"10.0.0.3\",\"-\",\"apache\",1549574335,\"GET /say/\"\"hi\"\" HTTP/1.0\",500,1194";
+
+    private List<TrafficLog> readAll(String text) {
+        ByteCsvLogReader reader = new ByteCsvLogReader(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), ',');
+        List<TrafficLog> result = new ArrayList<>();
+        Optional<TrafficLog> log = reader.getLine();
+        while (log.isPresent()) {
+            result.add(log.get());
+            log = reader.getLine();
+        }
+        return result;
+    }
+
+    @Test
+    void execution() {
+        List<TrafficLog> logs = readAll(input);
+
+        assertEquals(4, logs.size());
+
+        assertEquals("10.0.0.1", logs.get(0).getRemoteHost());
+        assertEquals(1549574332, logs.get(0).getDate());
+        assertEquals("GET /api/user HTTP/1.0", logs.get(0).getRequest());
+        assertEquals(200, logs.get(0).getStatus());
+
+        // Commas inside quoted fields do not shift the columns
+        assertEquals(1549574333, logs.get(1).getDate());
+        assertEquals("GET /report?a=1,2 HTTP/1.0", logs.get(1).getRequest());
+        assertEquals(404, logs.get(1).getStatus());
+
+        // Invalid dates are decoded as 0 to be ignored
+        assertEquals(0, logs.get(2).getDate());
+
+        // Escaped quotes and last line without line feed
+        assertEquals("GET /say/\"hi\" HTTP/1.0", logs.get(3).getRequest());
+        assertEquals(500, logs.get(3).getStatus());
+    }
+
+    @Test
+    void columnsFromHeader() {
+        List<TrafficLog> logs = readAll("status,date,remotehost\n503,12,10.0.0.9\n");
+
+        assertEquals(1, logs.size());
+        assertEquals(503, logs.get(0).getStatus());
+        assertEquals(12, logs.get(0).getDate());
+        assertEquals("10.0.0.9", logs.get(0).getRemoteHost());
+    }
+}
@@ -0,0 +1,44 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+class FanOutChannelTest {
+
+    private static final int MESSAGE_COUNT = 50_000;
+
+    private int consume(FanOutChannel<Integer>.Cursor cursor, int batchSize) {
+        List<Integer> batch = new ArrayList<>();
+        int expected = 0;
+        while (cursor.drainTo(batch, batchSize) >= 0) {
+            for (int message : batch) {
+                assertEquals(expected++, message);
+            }
+            batch.clear();
+        }
+        return expected;
+    }
+
+    @Test
+    void execution() {
+        FanOutChannel<Integer> channel = new FanOutChannel<>(16, 2, WaitStrategy.YIELD);
+        // Consumers reading at a different pace both get every message
+        CompletableFuture<Integer> first =
+                CompletableFuture.supplyAsync(() -> consume(channel.consumer(0), 1));
+        CompletableFuture<Integer> second =
+                CompletableFuture.supplyAsync(() -> consume(channel.consumer(1), 7));
+
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            channel.push(i);
+        }
+        channel.close();
+
+        assertEquals(MESSAGE_COUNT, first.join());
+        assertEquals(MESSAGE_COUNT, second.join());
+        assertTrue(channel.consumer(0).maxLag() <= 16);
+        assertEquals(0, channel.consumer(1).lag());
+    }
+}
@@ -0,0 +1,112 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Driven by explicit polls, without waiting for the follower
+class FollowFileInputStreamTest {
+
+    private static final String HEADER =
+            "\"remotehost\",\"rfc931\",\"authuser\",\"date\",\"request\",\"status\",\"bytes\"\n";
+
+    private static String line(long date) {
+        return "\"10.0.0.1\",\"-\",\"apache\"," + date + ",\"GET /api/x HTTP/1.0\",200,100\n";
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    // Bytes readable now, after the rotations and truncations seen by the polls
+    private static String poll(FollowFileInputStream input) throws IOException {
+        StringBuilder text = new StringBuilder();
+        byte[] buffer = new byte[16];
+        int count = input.poll(buffer, 0, buffer.length);
+        while (count > 0) {
+            text.append(new String(buffer, 0, count, StandardCharsets.UTF_8));
+            count = input.poll(buffer, 0, buffer.length);
+        }
+        return text.toString();
+    }
+
+    @Test
+    void execution() throws IOException {
+        Path directory = Files.createTempDirectory("follow");
+        Path file = directory.resolve("access.csv");
+        Path rotated = directory.resolve("access.csv.1");
+        append(file, HEADER + line(1) + line(2));
+
+        try (FollowFileInputStream input = new FollowFileInputStream(file)) {
+            assertEquals(HEADER + line(1) + line(2), poll(input));
+            assertEquals("", poll(input));
+
+            // Line appended in two writes
+            String third = line(3);
+            append(file, third.substring(0, 10));
+            assertEquals(third.substring(0, 10), poll(input));
+            append(file, third.substring(10));
+            assertEquals(third.substring(10), poll(input));
+
+            // Rotation: the end of the old file is read before the new file,
+            // whose header is skipped
+            append(file, line(4));
+            Files.move(file, rotated);
+            append(rotated, line(5));
+            append(file, HEADER + line(6));
+            assertEquals(line(4) + line(5) + line(6), poll(input));
+
+            // Truncation: the file is read again from its beginning
+            Files.write(file, new byte[0]);
+            assertEquals("", poll(input));
+            append(file, HEADER + line(7));
+            assertEquals(line(7), poll(input));
+            assertEquals("", poll(input));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(rotated);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void rotationDuringHeader() throws IOException {
+        Path directory = Files.createTempDirectory("follow");
+        Path file = directory.resolve("access.csv");
+        Path rotated = directory.resolve("access.csv.1");
+        Path rotatedAgain = directory.resolve("access.csv.2");
+        append(file, HEADER + line(1) + "\"10.0.0.2\",\"-\"");
+
+        try (FollowFileInputStream input = new FollowFileInputStream(file)) {
+            assertEquals(HEADER + line(1) + "\"10.0.0.2\",\"-\"", poll(input));
+
+            // New file with the beginning of its header only: the cut line is ended
+            Files.move(file, rotated);
+            append(file, HEADER.substring(0, 20));
+            assertEquals("\n", poll(input));
+
+            // Rotated again before its header is complete
+            Files.move(file, rotatedAgain);
+            append(file, HEADER + line(2));
+            assertEquals(line(2), poll(input));
+
+            // Truncated before its header is complete
+            Files.write(file, HEADER.substring(0, 30).getBytes(StandardCharsets.UTF_8));
+            assertEquals("", poll(input));
+            Files.write(file, HEADER.substring(0, 10).getBytes(StandardCharsets.UTF_8));
+            assertEquals("", poll(input));
+            append(file, HEADER.substring(10) + line(3));
+            assertEquals(line(3), poll(input));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(rotated);
+            Files.deleteIfExists(rotatedAgain);
+            Files.delete(directory);
+        }
+    }
+}
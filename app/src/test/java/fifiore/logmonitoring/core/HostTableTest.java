@@ -0,0 +1,85 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Random;
+
+class HostTableTest {
+
+    private void add(HostTable table, String host, boolean success) {
+        table.add(Ipv4.parse(host), host, success);
+    }
+
+    @Test
+    void ipv4() {
+        assertEquals(0x0A000001L, Ipv4.parse("10.0.0.1"));
+        assertEquals("255.255.0.12", Ipv4.format(Ipv4.parse("255.255.0.12")));
+        assertEquals(Ipv4.NONE, Ipv4.parse("10.0.0"));
+        assertEquals(Ipv4.NONE, Ipv4.parse("10.0.0.256"));
+        assertEquals(Ipv4.NONE, Ipv4.parse("10.0.0.01"));
+        assertEquals(Ipv4.NONE, Ipv4.parse("host.example.com"));
+    }
+
+    @Test
+    void lowestSuccessRate() {
+        HostTable table = new HostTable(10);
+        // Failing host without volume, and hosts with volume
+        add(table, "10.0.0.9", false);
+        for (int i = 0; i < 10; i++) {
+            add(table, "10.0.0.1", i % 2 == 0);
+            add(table, "crawler.example.com", i % 5 != 0);
+            add(table, "10.0.0.2", true);
+        }
+        WindowsMetrics metrics = new WindowsMetrics();
+        table.fillLowestSuccessRate(metrics);
+        assertEquals("10.0.0.1", metrics.getLowestSuccessRateHost());
+        assertEquals(50, metrics.getLowestSuccessRate());
+    }
+
+    @Test
+    void boundedUnderScan() {
+        Random random = new Random(42);
+        HostTable first = new HostTable(16);
+        HostTable second = new HostTable(16);
+        // Heavy failing host hidden in a scan from many distinct addresses
+        for (int i = 0; i < 20_000; i++) {
+            HostTable table = i % 2 == 0 ? first : second;
+            if (i % 10 == 0) {
+                add(table, "192.168.1.1", i % 20 != 0);
+            } else {
+                add(table, "10.1." + random.nextInt(256) + "." + random.nextInt(256), true);
+            }
+        }
+        first.merge(second);
+        WindowsMetrics metrics = new WindowsMetrics();
+        first.fillLowestSuccessRate(metrics);
+        assertEquals("192.168.1.1", metrics.getLowestSuccessRateHost());
+        assertEquals(50, metrics.getLowestSuccessRate());
+
+        first.clear();
+        metrics = new WindowsMetrics();
+        first.fillLowestSuccessRate(metrics);
+        assertEquals("", metrics.getLowestSuccessRateHost());
+    }
+
+    @Test
+    void distinctHosts() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        for (long address = 0; address < 100_000; address++) {
+            first.add(HyperLogLog.hash(address));
+            // Half of the hosts seen twice
+            second.add(HyperLogLog.hash(address + 50_000));
+        }
+        assertEquals(100_000, first.estimate(), 5_000);
+        first.merge(second);
+        assertEquals(150_000, first.estimate(), 7_500);
+
+        HyperLogLog small = new HyperLogLog();
+        for (long address = 0; address < 50; address++) {
+            small.add(HyperLogLog.hash(address));
+            small.add(HyperLogLog.hash(address));
+        }
+        assertEquals(50, small.estimate(), 2);
+    }
+}
@@ -0,0 +1,76 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+class HttpEndpointTest {
+
+    private static String get(HttpEndpoint endpoint, String path) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + endpoint.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            if (connection.getResponseCode() != 200) {
+                return String.valueOf(connection.getResponseCode());
+            }
+            try (InputStream input = connection.getInputStream()) {
+                return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    void execution() throws IOException {
+        LiveState state = new LiveState();
+        PipelineStats stats = new PipelineStats(0);
+        try (HttpEndpoint endpoint =
+                new HttpEndpoint(new InetSocketAddress("127.0.0.1", 0), state, stats)) {
+            endpoint.start();
+            // Nothing published yet
+            assertEquals("204", get(endpoint, "/window"));
+
+            WindowsMetrics metrics = new WindowsMetrics();
+            metrics.setStartDate(100);
+            metrics.setEndDate(109);
+            state.windowEmitted(metrics);
+            state.alertWindowSlid(false, 200, 5, 10);
+            state.alertWindowSlid(true, 201, 12, 10);
+            TrafficLog log = new TrafficLog();
+            log.setDate(100);
+            stats.lineRead(log);
+
+            assertEquals("{\"type\":\"metrics\",\"start\":100,\"end\":109,\"hits\":0}\n",
+                    get(endpoint, "/window"));
+            assertEquals("{\"alert\":true,\"date\":201,\"hits\":12,\"threshold\":10,"
+                    + "\"transitions\":1}\n", get(endpoint, "/alert"));
+            String prometheus = get(endpoint, "/metrics");
+            assertTrue(prometheus.contains("\nlogmonitoring_lines_read_total 1\n"));
+            assertTrue(prometheus.contains("\nlogmonitoring_windows_total 1\n"));
+            assertTrue(prometheus.contains("\nlogmonitoring_alert_active 1\n"));
+            assertFalse(prometheus.contains("logmonitoring_consumer_lag"));
+
+            // Fan-out mode
+            stats.setConsumerLags(() -> 3, () -> 0);
+            prometheus = get(endpoint, "/metrics");
+            assertTrue(prometheus.contains(
+                    "\nlogmonitoring_consumer_lag{consumer=\"metrics\"} 3\n"));
+            assertTrue(prometheus.contains(
+                    "\nlogmonitoring_consumer_lag{consumer=\"alerts\"} 0\n"));
+        }
+    }
+
+    @Test
+    void address() {
+        // Only reachable from this host without host
+        assertTrue(InputSources.address("8080").getAddress().isLoopbackAddress());
+        assertEquals(8080, InputSources.address("8080").getPort());
+        assertTrue(InputSources.address("0.0.0.0:8080").getAddress().isAnyLocalAddress());
+    }
+}
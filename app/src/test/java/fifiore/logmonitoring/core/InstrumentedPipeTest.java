@@ -0,0 +1,50 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+class InstrumentedPipeTest {
+
+    @Test
+    void histogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.quantile(0.99));
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5000);
+        assertEquals(100, histogram.getCount());
+        // Upper bounds of the buckets [64, 128) and [4096, 8192)
+        assertEquals(127, histogram.quantile(0.5));
+        assertEquals(127, histogram.quantile(0.99));
+        assertEquals(8191, histogram.quantile(1));
+        assertEquals(5000, histogram.max());
+        assertEquals(149, histogram.mean());
+    }
+
+    @Test
+    void sampledLatency() {
+        LatencyHistogram latency = new LatencyHistogram();
+        Pipe<Integer> pipe = new InstrumentedPipe<>(new MessageChannel<>(), latency);
+        int count = 10 * InstrumentedPipe.SAMPLE_PERIOD;
+        for (int i = 0; i < count; i++) {
+            pipe.push(i);
+        }
+        assertEquals(count, pipe.size());
+
+        // Messages read one by one then by batches
+        for (int i = 0; i < count / 2; i++) {
+            assertEquals(Optional.of(i), pipe.read());
+        }
+        List<Integer> batch = new ArrayList<>();
+        while (batch.size() < count / 2) {
+            pipe.drainTo(batch, 100);
+        }
+        assertEquals(count / 2, (int) batch.get(0));
+        assertEquals(0, pipe.size());
+        assertEquals(10, latency.getCount());
+    }
+}
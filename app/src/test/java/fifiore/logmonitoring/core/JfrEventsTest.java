@@ -0,0 +1,126 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+class JfrEventsTest {
+
+    private static TrafficLog log(long date) {
+        TrafficLog log = new TrafficLog();
+        log.setDate(date);
+        log.setStatus(200);
+        log.setRequest("GET /api/user HTTP/1.0");
+        log.setRemoteHost("10.0.0.1");
+        return log;
+    }
+
+    private static <T> List<T> readAll(MessageChannel<T> pipe) {
+        pipe.close();
+        List<T> messages = new ArrayList<>();
+        Optional<T> message = pipe.read();
+        while (message.isPresent()) {
+            messages.add(message.get());
+            message = pipe.read();
+        }
+        return messages;
+    }
+
+    private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    // Waits for the producer to be parked on the full channel, then drains it
+    private static void stall(RingBufferChannel<Integer> channel) throws InterruptedException {
+        channel.push(0);
+        channel.push(1);
+        Thread producer = new Thread(() -> channel.push(2));
+        producer.start();
+        while (producer.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+        List<Integer> batch = new ArrayList<>();
+        while (batch.size() < 3) {
+            channel.drainTo(batch, 3);
+        }
+        producer.join();
+    }
+
+    @Test
+    void execution() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("events", ".jfr");
+        List<RecordedEvent> events;
+        List<WindowsMetrics> windows;
+        List<TrafficAlert> alerts;
+        try (Recording recording = new Recording()) {
+            recording.enable(WindowComputedEvent.class);
+            recording.enable(AlertTransitionEvent.class);
+            recording.enable(ChannelStallEvent.class);
+            recording.start();
+
+            MessageChannel<WindowsMetrics> metricsPipe = new MessageChannel<>();
+            MetricsTracking metricsTracking = new MetricsTracking(metricsPipe, 3, 1);
+            MessageChannel<TrafficAlert> alertPipe = new MessageChannel<>();
+            Alerting alerting = new Alerting(alertPipe, 3, 1);
+            alerting.setTrafficAlertThreshold(2);
+            for (long date = 1; date <= 10; date++) {
+                for (int i = 0; i < (date < 5 ? 3 : 1); i++) {
+                    metricsTracking.pushLog(log(date));
+                    alerting.pushLog(log(date));
+                }
+            }
+            windows = readAll(metricsPipe);
+            alerts = readAll(alertPipe);
+            stall(new RingBufferChannel<>(2, WaitStrategy.PARK));
+
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+
+        List<RecordedEvent> windowEvents = events(events, "fifiore.logmonitoring.WindowComputed");
+        assertEquals(windows.size(), windowEvents.size());
+        assertTrue(windows.size() > 1);
+        for (int i = 0; i < windows.size(); i++) {
+            RecordedEvent event = windowEvents.get(i);
+            // Log dates are in seconds
+            assertEquals(Instant.ofEpochSecond(windows.get(i).getStartDate()),
+                    event.getInstant("startDate"));
+            assertEquals(Instant.ofEpochSecond(windows.get(i).getEndDate()),
+                    event.getInstant("endDate"));
+            assertEquals(windows.get(i).getHitNB(), event.getInt("logCount"));
+            assertFalse(event.getBoolean("amended"));
+        }
+        assertEquals(9, windowEvents.get(0).getInt("logCount"));
+
+        List<RecordedEvent> alertEvents = events(events, "fifiore.logmonitoring.AlertTransition");
+        assertEquals(alerts.size(), alertEvents.size());
+        assertEquals(2, alerts.size());
+        for (int i = 0; i < alerts.size(); i++) {
+            RecordedEvent event = alertEvents.get(i);
+            assertEquals(alerts.get(i).isAlert(), event.getBoolean("alert"));
+            assertEquals(Instant.ofEpochSecond(alerts.get(i).getDate()),
+                    event.getInstant("date"));
+            assertEquals(alerts.get(i).getHitCountAverage(), event.getInt("hitCountAverage"));
+            assertEquals(2, event.getInt("threshold"));
+        }
+
+        List<RecordedEvent> stallEvents = events(events, "fifiore.logmonitoring.ChannelStall");
+        assertEquals(1, stallEvents.size());
+        assertEquals(2, stallEvents.get(0).getInt("capacity"));
+        assertFalse(stallEvents.get(0).getDuration().isNegative());
+    }
+}
@@ -0,0 +1,75 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+class LogGeneratorTest {
+
+    private List<TrafficLog> generate(GeneratorOptions options) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        new LogGenerator(options).write(stream);
+        LogReader reader =
+                new ByteCsvLogReader(new ByteArrayInputStream(stream.toByteArray()), ',');
+        List<TrafficLog> logs = new ArrayList<>();
+        Optional<TrafficLog> log = reader.getLine();
+        while (log.isPresent()) {
+            logs.add(log.get());
+            log = reader.getLine();
+        }
+        return logs;
+    }
+
+    @Test
+    void execution() throws IOException {
+        GeneratorOptions options = new GeneratorOptions();
+        options.setLineCount(30_000);
+        options.setRate(10);
+        options.setBurstPeriod(1000);
+        options.setBurstLength(200);
+        options.setBurstFactor(5);
+        options.setJitter(3);
+        options.setSectionCount(10);
+        List<TrafficLog> logs = generate(options);
+
+        assertEquals(30_000, logs.size());
+        long mostRecentDate = 0;
+        Map<String, Integer> hitPerSection = new HashMap<>();
+        for (TrafficLog log : logs) {
+            // Late logs stay within the jitter
+            assertTrue(log.getDate() >= mostRecentDate - 3);
+            mostRecentDate = Math.max(mostRecentDate, log.getDate());
+            String request = log.getRequest();
+            String section = request.substring(request.indexOf(' ') + 1, request.indexOf("/page"));
+            hitPerSection.merge(section, 1, Integer::sum);
+        }
+        assertEquals(10, hitPerSection.size());
+        // Zipf distribution: the first section is twice as hit as the second one
+        int first = hitPerSection.get("/section0");
+        int second = hitPerSection.get("/section1");
+        assertTrue(first > 1.8 * second && first < 2.2 * second);
+
+        // The bursts are above the threshold, the normal traffic is below
+        MessageChannel<TrafficAlert> outputPipe = new MessageChannel<>();
+        Alerting alerting = new Alerting(outputPipe, 120, 4);
+        alerting.setTrafficAlertThreshold(30);
+        logs.forEach(alerting::pushLog);
+        outputPipe.close();
+        List<TrafficAlert> alerts = new ArrayList<>();
+        Optional<TrafficAlert> alert = outputPipe.read();
+        while (alert.isPresent()) {
+            alerts.add(alert.get());
+            alert = outputPipe.read();
+        }
+        assertTrue(alerts.size() >= 2);
+        assertTrue(alerts.get(0).isAlert());
+        assertFalse(alerts.get(1).isAlert());
+    }
+}
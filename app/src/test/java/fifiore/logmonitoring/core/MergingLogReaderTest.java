@@ -0,0 +1,142 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+class MergingLogReaderTest {
+
+    // Logs of the dates with a step, slightly out of order like a real log
+    private static LogReader source(long firstDate, int count, int step) {
+        StringBuilder input = new StringBuilder(LogGenerator.HEADER).append('\n');
+        for (int i = 0; i < count; i++) {
+            long date = firstDate + (long) i * step - (i % 5 == 4 ? 1 : 0);
+            input.append("\"10.0.0.1\",\"-\",\"apache\",").append(date)
+                    .append(",\"GET /api/x HTTP/1.0\",200,100\n");
+        }
+        return new ByteCsvLogReader(
+                new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)), ',');
+    }
+
+    @Test
+    void execution() {
+        MergingLogReader reader = new MergingLogReader(60_000);
+        reader.addSource("a", source(1000, 3000, 1));
+        reader.addSource("b", source(1000, 1000, 3));
+        reader.addSource("c", source(2000, 500, 2));
+
+        int count = 0;
+        long highestDate = 0;
+        Optional<TrafficLog> log = reader.getLine();
+        while (log.isPresent()) {
+            // Only the disorder of each source remains
+            assertTrue(log.get().getDate() >= highestDate - 1);
+            highestDate = Math.max(highestDate, log.get().getDate());
+            count++;
+            log = reader.getLine();
+        }
+        assertEquals(4500, count);
+    }
+
+    @Test
+    void idleSource() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        LogReader delayed = source(1000, 10, 1);
+        MergingLogReader reader = new MergingLogReader(50);
+        reader.addSource("a", source(1000, 100, 1));
+        // Source waiting for its logs
+        reader.addSource("idle", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            return delayed.getLine();
+        });
+
+        // The merge only waits for it during the allowed lateness
+        for (int i = 0; i < 100; i++) {
+            assertTrue(reader.getLine().isPresent());
+        }
+        release.countDown();
+        int count = 0;
+        while (reader.getLine().isPresent()) {
+            count++;
+        }
+        assertEquals(10, count);
+    }
+
+    @Test
+    void failingSource() {
+        MergingLogReader reader = new MergingLogReader(60_000);
+        reader.addSource("a", source(1000, 100, 1));
+        LogReader failing = source(1000, 20, 1);
+        int[] readCount = {0};
+        // Fails like the split parser on an invalid date
+        reader.addSource("failing", () -> {
+            if (++readCount[0] > 10) {
+                throw new NumberFormatException("For input string: \"x\"");
+            }
+            return failing.getLine();
+        });
+
+        // The merge ends with the other source instead of waiting for the failed one
+        int count = 0;
+        while (reader.getLine().isPresent()) {
+            count++;
+        }
+        assertEquals(110, count);
+    }
+
+    @Test
+    void lateSource() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        MergingLogReader reader = new MergingLogReader(3_600_000);
+        LogReader early = source(5000, 4 * MergingLogReader.SOURCE_CAPACITY, 1);
+        AtomicInteger readCount = new AtomicInteger();
+        AtomicReference<Thread> earlyThread = new AtomicReference<>();
+        reader.addSource("early", () -> {
+            earlyThread.set(Thread.currentThread());
+            readCount.incrementAndGet();
+            return early.getLine();
+        });
+        // Source whose first log is older than the whole other source, sent later
+        LogReader late = source(1000, 10, 1);
+        reader.addSource("late", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            return late.getLine();
+        });
+        long[] firstDate = {0};
+        int[] count = {0};
+        Thread merge = new Thread(() -> {
+            Optional<TrafficLog> log = reader.getLine();
+            firstDate[0] = log.get().getDate();
+            while (log.isPresent()) {
+                count[0]++;
+                log = reader.getLine();
+            }
+        });
+        merge.start();
+
+        // The early source waits for the merge once its capacity is received
+        while (earlyThread.get() == null
+                || earlyThread.get().getState() != Thread.State.WAITING
+                && earlyThread.get().getState() != Thread.State.TERMINATED) {
+            Thread.onSpinWait();
+        }
+        assertEquals(MergingLogReader.SOURCE_CAPACITY + 1, readCount.get());
+        release.countDown();
+        merge.join();
+        assertEquals(1000, firstDate[0]);
+        assertEquals(4 * MergingLogReader.SOURCE_CAPACITY + 10, count[0]);
+    }
+}
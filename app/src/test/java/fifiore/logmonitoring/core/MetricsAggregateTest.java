@@ -0,0 +1,112 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+class MetricsAggregateTest {
+
+    private static TrafficLog log(String section, long bytes) {
+        TrafficLog log = new TrafficLog();
+        log.setDate(1549573860);
+        log.setStatus(200);
+        log.setRequest("GET " + section + "/x HTTP/1.0");
+        log.setBytes(bytes);
+        log.setRemoteHost("10.0.0.1");
+        return log;
+    }
+
+    // Section counted by its text, as when the dictionary of the sections is full
+    private static TrafficLog textLog(String section, long bytes) {
+        TrafficLog log = log(section, bytes);
+        log.setRequest(log.getRequest(), Sections.NONE, HttpVerb.Values.POST);
+        return log;
+    }
+
+    private static void add(MetricsAggregate aggregate, TrafficLog log, int count) {
+        for (int i = 0; i < count; i++) {
+            aggregate.add(log);
+        }
+    }
+
+    private static WindowsMetrics fill(MetricsAggregate aggregate) {
+        WindowsMetrics metrics = new WindowsMetrics();
+        aggregate.fill(metrics);
+        return metrics;
+    }
+
+    @Test
+    void execution() throws IOException {
+        MetricsAggregate aggregate = new MetricsAggregate();
+        add(aggregate, log("/api", 100), 3);
+        add(aggregate, textLog("/text", 200), 2);
+        WindowsMetrics metrics = fill(aggregate);
+        assertEquals(5, metrics.getHitNB());
+        assertEquals(List.of("/api"), metrics.getMostHitSections());
+        assertEquals(3, metrics.getMostHitSectionCount());
+        assertEquals(2, metrics.getOperationCount()[HttpVerb.Values.POST.ordinal()]);
+
+        // Tied sections of both paths, in alphabetical order
+        MetricsAggregate other = new MetricsAggregate();
+        add(other, log("/report", 100), 5);
+        add(other, textLog("/text", 300), 3);
+        aggregate.merge(other);
+        metrics = fill(aggregate);
+        assertEquals(List.of("/report", "/text"), metrics.getMostHitSections());
+        assertEquals(5, metrics.getMostHitSectionCount());
+        assertEquals(300, metrics.getBytesPerSection().get("/text").getP99(), 300 * 0.02);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        aggregate.write(new DataOutputStream(bytes));
+        MetricsAggregate read = new MetricsAggregate();
+        add(read, log("/other", 100), 10);
+        read.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        WindowsMetrics readMetrics = fill(read);
+        assertEquals(13, readMetrics.getHitNB());
+        assertEquals(List.of("/report", "/text"), readMetrics.getMostHitSections());
+        assertEquals(5, readMetrics.getMostHitSectionCount());
+    }
+
+    @Test
+    void clear() {
+        MetricsAggregate aggregate = new MetricsAggregate();
+        add(aggregate, log("/api", 100), 3);
+        add(aggregate, textLog("/text", 100), 4);
+        aggregate.clear();
+        WindowsMetrics metrics = fill(aggregate);
+        assertEquals(0, metrics.getHitNB());
+        assertTrue(metrics.getMostHitSections().isEmpty());
+
+        // Counts restart from 0 in the kept sketches and in the released ones
+        List<List<String>> leaders =
+                List.of(List.of("/report"), List.of("/api", "/report"), List.of("/api"));
+        for (int period = 0; period < leaders.size(); period++) {
+            add(aggregate, log("/report", 100), 1);
+            add(aggregate, log("/api", 100), period);
+            metrics = fill(aggregate);
+            assertEquals(period + 1, metrics.getHitNB());
+            assertEquals(leaders.get(period), metrics.getMostHitSections());
+            // Twice, which releases the sketches
+            aggregate.clear();
+            aggregate.clear();
+        }
+    }
+
+    @Test
+    void distinctHosts() {
+        MetricsAggregate aggregate = new MetricsAggregate(0, 10);
+        TrafficLog address = log("/api", 100);
+        address.setRemoteHost("0.0.0.97");
+        // Name hashed as the packed address above
+        TrafficLog name = log("/api", 100);
+        name.setRemoteHost("a");
+        add(aggregate, address, 3);
+        add(aggregate, name, 3);
+        assertEquals(2, fill(aggregate).getDistinctHostCount());
+    }
+}
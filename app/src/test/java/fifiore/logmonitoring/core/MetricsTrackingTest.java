@@ -60,6 +60,87 @@ class MetricsTrackingTest {
         checkSucessRates(result);
     }
 
+    @Test
+    void dateGap() {
+        MessageChannel<WindowsMetrics> outputPipe = new MessageChannel<>();
+        MetricsTracking metricsTracking = new MetricsTracking(outputPipe, 3, 1);
+
+        String[][] gapLogs = {{"1", "200", "GET /api/user HTTP/1.0", "10.0.0.1"},
+                {"2", "200", "GET /api/user HTTP/1.0", "10.0.0.1"},
+                {"3", "200", "GET /api/user HTTP/1.0", "10.0.0.1"},
+                {"5", "200", "GET /report HTTP/1.0", "10.0.0.1"},
+                {"4", "200", "GET /report HTTP/1.0", "10.0.0.1"},
+                {"50", "500", "GET /api/user HTTP/1.0", "10.0.0.2"},
+                {"49", "200", "GET /report HTTP/1.0", "10.0.0.1"},
+                {"52", "200", "GET /report HTTP/1.0", "10.0.0.1"}};
+        Arrays.stream(gapLogs).forEach(log -> pushLog(metricsTracking, log));
+        outputPipe.close();
+
+        List<WindowsMetrics> result = new ArrayList<>();
+        Optional<WindowsMetrics> metrics = outputPipe.read();
+        while (metrics.isPresent()) {
+            result.add(metrics.get());
+            metrics = outputPipe.read();
+        }
+
+        // Empty windows are emitted for the gap, the buckets of the first dates are reused
+        assertEquals(17, result.size());
+        assertEquals(3, result.get(0).getHitNB());
+        assertEquals(2, result.get(1).getHitNB());
+        assertEquals("/report", result.get(1).getMostHitSections().get(0));
+        for (int i = 2; i < 16; i++) {
+            assertEquals(0, result.get(i).getHitNB());
+        }
+        assertEquals(49, result.get(16).getStartDate());
+        assertEquals(2, result.get(16).getHitNB());
+        assertEquals("10.0.0.2", result.get(16).getLowestSuccessRateHost());
+    }
+
+    @Test
+    void lateLogs() {
+        MessageChannel<WindowsMetrics> outputPipe = new MessageChannel<>();
+        // Windows amended until the watermark is 2 seconds after their end
+        MetricsTracking metricsTracking =
+                new MetricsTracking(outputPipe, 3, 1, 2, MetricsAggregate::new);
+
+        String[][] lateLogs = {{"1", "200", "GET /api/user HTTP/1.0", "10.0.0.1"},
+                {"2", "200", "GET /api/user HTTP/1.0", "10.0.0.1"},
+                {"3", "200", "GET /api/user HTTP/1.0", "10.0.0.1"},
+                {"4", "200", "GET /report HTTP/1.0", "10.0.0.1"},
+                {"5", "200", "GET /report HTTP/1.0", "10.0.0.1"},
+                {"2", "500", "GET /report HTTP/1.0", "10.0.0.2"},
+                {"6", "200", "GET /report HTTP/1.0", "10.0.0.1"},
+                {"7", "200", "GET /report HTTP/1.0", "10.0.0.1"},
+                {"8", "200", "GET /report HTTP/1.0", "10.0.0.1"},
+                {"1", "200", "GET /report HTTP/1.0", "10.0.0.1"}};
+        Arrays.stream(lateLogs).forEach(log -> pushLog(metricsTracking, log));
+        metricsTracking.finish();
+        outputPipe.close();
+
+        List<WindowsMetrics> result = new ArrayList<>();
+        Optional<WindowsMetrics> metrics = outputPipe.read();
+        while (metrics.isPresent()) {
+            result.add(metrics.get());
+            metrics = outputPipe.read();
+        }
+
+        assertEquals(3, result.size());
+        assertEquals(1, result.get(0).getStartDate());
+        assertEquals(3, result.get(0).getHitNB());
+        assertFalse(result.get(0).isAmended());
+        // Sent again before the next window
+        assertEquals(1, result.get(1).getStartDate());
+        assertEquals(4, result.get(1).getHitNB());
+        assertTrue(result.get(1).isAmended());
+        assertEquals("10.0.0.2", result.get(1).getLowestSuccessRateHost());
+        assertEquals(4, result.get(2).getStartDate());
+        assertEquals(3, result.get(2).getHitNB());
+        assertFalse(result.get(2).isAmended());
+        // The last log is too late for its window
+        assertEquals(2, metricsTracking.getLateLogCount());
+        assertEquals(1, metricsTracking.getDroppedLogCount());
+    }
+
     private void checkWindowsDates(List<WindowsMetrics> metrics) {
 
         // The window [10,12] is ignored due to 1 second delay needed to accept the date 12
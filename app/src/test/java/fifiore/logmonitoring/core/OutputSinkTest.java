@@ -0,0 +1,80 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+class OutputSinkTest {
+
+    private static WindowsMetrics metrics() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(100);
+        sketch.add(100);
+        WindowsMetrics metrics = new WindowsMetrics();
+        metrics.setStartDate(1549573860);
+        metrics.setEndDate(1549573869);
+        metrics.setHitNB(2);
+        metrics.getMostHitSections().add("/api");
+        metrics.setMostHitSectionCount(2);
+        metrics.getOperationCount()[HttpVerb.Values.GET.ordinal()] = 2;
+        metrics.setBytes(new BytesSummary(sketch));
+        metrics.getBytesPerSection().put("/api", new BytesSummary(sketch));
+        metrics.setSuccessRate(50);
+        metrics.setLowestSuccessRateHost("host \"\u00e9\"\n");
+        metrics.setLowestSuccessRate(50);
+        return metrics;
+    }
+
+    private static TrafficAlert alert() {
+        return TrafficAlert.builder().date(1549573900).isAlert(true).hitCountAverage(12).build();
+    }
+
+    @Test
+    void jsonLines() {
+        OutputBuffer buffer = new OutputBuffer();
+        OutputSink sink = new JsonLinesSink();
+        sink.metrics(metrics(), buffer);
+        sink.alert(alert(), buffer);
+        sink.alert(TrafficAlert.builder().date(1549574000).build(), buffer);
+
+        assertEquals("{\"type\":\"metrics\",\"start\":1549573860,\"end\":1549573869,\"hits\":2,"
+                + "\"mostHitSections\":[\"/api\"],\"mostHitSectionCount\":2,"
+                + "\"sectionBytes\":{\"/api\":{\"total\":200,\"p50\":100,\"p95\":100,\"p99\":100}},"
+                + "\"operations\":{\"GET\":2},"
+                + "\"bytes\":{\"total\":200,\"p50\":100,\"p95\":100,\"p99\":100},"
+                + "\"successRate\":50.0,\"lowestSuccessRateHost\":\"host \\\"\u00e9\\\"\\n\","
+                + "\"lowestSuccessRate\":50.0}\n"
+                + "{\"type\":\"alert\",\"date\":1549573900,\"alert\":true,\"hits\":12}\n"
+                + "{\"type\":\"alert\",\"date\":1549574000,\"alert\":false}\n",
+                buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void binary() throws IOException {
+        OutputBuffer buffer = new OutputBuffer();
+        OutputSink sink = new BinarySink();
+        sink.metrics(metrics(), buffer);
+        sink.alert(alert(), buffer);
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+
+        // Metrics record skipped with its length
+        int length = input.readInt();
+        assertEquals(BinarySink.METRICS, input.readByte());
+        assertEquals(1549573860, input.readLong());
+        assertEquals(1549573869, input.readLong());
+        assertEquals(0, input.readByte());
+        assertEquals(2, input.readInt());
+        int remaining = length - 1 - 8 - 8 - 1 - 4;
+        assertEquals(remaining, input.skipBytes(remaining));
+
+        assertEquals(1 + 8 + 1 + 4, input.readInt());
+        assertEquals(BinarySink.ALERT, input.readByte());
+        assertEquals(1549573900, input.readLong());
+        assertEquals(1, input.readByte());
+        assertEquals(12, input.readInt());
+        assertEquals(-1, input.read());
+    }
+}
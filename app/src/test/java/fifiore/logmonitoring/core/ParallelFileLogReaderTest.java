@@ -0,0 +1,108 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+class ParallelFileLogReaderTest {
+
+    private String generateInput(int lineCount) {
+        StringBuilder input = new StringBuilder(
+                "\"remotehost\",\"rfc931\",\"authuser\",\"date\",\"request\",\"status\",\"bytes\"\n");
+        for (int i = 0; i < lineCount; i++) {
+            // Out of order dates and a few invalid lines
+            long date = 1000 + i / 5 + (i % 7 == 0 ? -2 : 0);
+            String dateText = i % 50 == 0 ? "x" : String.valueOf(date);
+            input.append("\"10.0.0.").append(i % 9).append("\",\"-\",\"apache\",").append(dateText)
+                    .append(",\"GET /s").append(i % 13).append("/x HTTP/1.0\",")
+                    .append(i % 4 == 0 ? 500 : 200).append(",").append(i).append("\n");
+        }
+        return input.toString();
+    }
+
+    private List<TrafficLog> readAll(LogReader reader) {
+        List<TrafficLog> result = new ArrayList<>();
+        Optional<TrafficLog> log = reader.getLine();
+        while (log.isPresent()) {
+            result.add(log.get());
+            log = reader.getLine();
+        }
+        return result;
+    }
+
+    @Test
+    void execution() throws IOException {
+        String input = generateInput(1000);
+        Path file = Files.createTempFile("logs", ".csv");
+        try {
+            Files.writeString(file, input);
+            List<TrafficLog> expected = readAll(new ByteCsvLogReader(
+                    new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), ','));
+            // Small chunks to have many boundaries in the middle of lines
+            List<TrafficLog> result =
+                    readAll(new ParallelFileLogReader(file.toString(), ',', 4, 100));
+
+            assertEquals(1000, expected.size());
+            assertEquals(expected.size(), result.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getDate(), result.get(i).getDate());
+                assertEquals(expected.get(i).getStatus(), result.get(i).getStatus());
+                assertEquals(expected.get(i).getRequest(), result.get(i).getRequest());
+                assertEquals(expected.get(i).getRemoteHost(), result.get(i).getRemoteHost());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void failedChunk() throws IOException, InterruptedException {
+        String input = generateInput(1000);
+        Path file = Files.createTempFile("logs", ".csv");
+        long middle = input.length() / 2;
+        AtomicLong failedStart = new AtomicLong(-1);
+        Set<Thread> workers = ConcurrentHashMap.newKeySet();
+        try {
+            Files.writeString(file, input);
+            // Fails the chunk of the middle of the file
+            LogReader reader = new ParallelFileLogReader(file.toString(), ',', 2, 100) {
+                @Override
+                List<TrafficLog> parseChunk(long start, int length) throws IOException {
+                    workers.add(Thread.currentThread());
+                    if (start <= middle && middle < start + length) {
+                        failedStart.set(start);
+                        throw new IOException("Input/output error");
+                    }
+                    return super.parseChunk(start, length);
+                }
+            };
+            List<TrafficLog> result = readAll(reader);
+
+            // The reading stops at the chunk instead of skipping it
+            long lineCount = input.substring(0, (int) failedStart.get()).chars()
+                    .filter(c -> c == '\n').count() - 1;
+            assertEquals(lineCount, result.size());
+            for (int i = 0; i < result.size(); i++) {
+                assertEquals(i, result.get(i).getBytes());
+            }
+            assertFalse(reader.getLine().isPresent());
+            // Closed: the workers are stopped
+            for (Thread worker : workers) {
+                worker.join(10_000);
+                assertFalse(worker.isAlive());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
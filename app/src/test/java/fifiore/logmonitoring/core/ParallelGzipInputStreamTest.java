@@ -0,0 +1,141 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+class ParallelGzipInputStreamTest {
+
+    // Random bytes counts, compressed into several chunks
+    private static String logs() {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            text.append("\"10.0.0.").append(random.nextInt(256)).append("\",\"-\",\"apache\",")
+                    .append(1549573860 + i / 100).append(",\"GET /api/").append(i % 13)
+                    .append(" HTTP/1.0\",200,").append(random.nextLong()).append('\n');
+        }
+        return text.toString();
+    }
+
+    // One member for each {memberSize} bytes of the text
+    private static byte[] gzip(byte[] text, int memberSize) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int start = 0; start < text.length; start += memberSize) {
+            try (OutputStream member = new GZIPOutputStream(output) {
+                // Keeps the output open for the next member
+                @Override
+                public void close() throws IOException {
+                    finish();
+                }
+            }) {
+                member.write(text, start, Math.min(memberSize, text.length - start));
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static String read(Path file, int threadCount) throws IOException {
+        try (InputStream input = new ParallelGzipInputStream(file, threadCount)) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void members() throws IOException {
+        String text = logs();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Path directory = Files.createTempDirectory("gzip");
+
+        Path single = directory.resolve("single.gz");
+        Files.write(single, gzip(bytes, bytes.length));
+        assertTrue(ParallelGzipInputStream.isGzip(single));
+        assertEquals(text, read(single, 1));
+        assertEquals(text, read(single, 4));
+
+        // Members of a few kilobytes, found in every chunk
+        Path multiple = directory.resolve("multiple.gz");
+        Files.write(multiple, gzip(bytes, 5000));
+        assertTrue(Files.size(multiple) > 4 * ParallelGzipInputStream.CHUNK_SIZE);
+        assertEquals(text, read(multiple, 4));
+    }
+
+    @Test
+    void trailingData() throws IOException {
+        String text = logs();
+        byte[] members = gzip(text.getBytes(StandardCharsets.UTF_8), 100000);
+        Path directory = Files.createTempDirectory("gzip");
+        Path file = directory.resolve("trailing.gz");
+        Files.write(file, members);
+        Files.write(file, new byte[] {0x1f, (byte) 0x8b, 0, 0, 1, 2, 3},
+                StandardOpenOption.APPEND);
+        assertEquals(text, read(file, 3));
+
+        Path plain = directory.resolve("plain.csv");
+        Files.write(plain, text.getBytes(StandardCharsets.UTF_8));
+        assertFalse(ParallelGzipInputStream.isGzip(plain));
+    }
+
+    // Waits for the inflating threads to end, false if one is still running after a while
+    private static boolean inflatingEnded() throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            if (Thread.getAllStackTraces().keySet().stream()
+                    .noneMatch(thread -> thread.getName().equals("gzip-inflate"))) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    @Test
+    void corruptMember() throws IOException, InterruptedException {
+        byte[] text = logs().getBytes(StandardCharsets.UTF_8);
+        byte[] members = gzip(text, 100000);
+        // Trailer of a member in the middle of the file: the CRC32, then the size
+        int trailer = 0;
+        for (int start = 0; start < text.length / 2; start += 100000) {
+            trailer += gzip(Arrays.copyOfRange(text, start, start + 100000), 100000).length;
+        }
+        trailer -= 8;
+        Path file = Files.createTempFile("corrupt", ".gz");
+        try {
+            for (int field = 0; field < 2; field++) {
+                byte[] corrupt = members.clone();
+                corrupt[trailer + 4 * field] ^= 1;
+                Files.write(file, corrupt);
+                IOException exception = assertThrows(IOException.class, () -> read(file, 4));
+                assertTrue(exception.getMessage().startsWith("Corrupt gzip member"));
+                assertTrue(inflatingEnded());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void truncatedMember() throws IOException, InterruptedException {
+        byte[] members = gzip(logs().getBytes(StandardCharsets.UTF_8), 100000);
+        Path file = Files.createTempFile("truncated", ".gz");
+        try {
+            // In the deflate data of the last member
+            Files.write(file, Arrays.copyOf(members, members.length - 1000));
+            assertThrows(EOFException.class, () -> read(file, 4));
+            assertTrue(inflatingEnded());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
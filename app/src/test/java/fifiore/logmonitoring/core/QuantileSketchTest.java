@@ -0,0 +1,60 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Arrays;
+import java.util.Random;
+
+class QuantileSketchTest {
+
+    private void checkQuantile(long[] sortedValues, QuantileSketch sketch, double quantile) {
+        long exact = sortedValues[(int) (quantile * (sortedValues.length - 1))];
+        assertEquals(exact, sketch.quantile(quantile),
+                exact * QuantileSketch.RELATIVE_ACCURACY + 1e-9);
+    }
+
+    @Test
+    void quantiles() {
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        // Per-second sketches merged into a window sketch
+        QuantileSketch window = new QuantileSketch();
+        long total = 0;
+        for (int second = 0; second < 10; second++) {
+            QuantileSketch bucket = new QuantileSketch();
+            for (int i = 0; i < 10_000; i++) {
+                // Mostly small responses with a long tail, some without a body
+                long value = random.nextInt(50) == 0 ? 0
+                        : (long) Math.exp(5 + random.nextGaussian() * 2);
+                values[second * 10_000 + i] = value;
+                total += value;
+                bucket.add(value);
+            }
+            window.merge(bucket);
+        }
+        Arrays.sort(values);
+
+        assertEquals(100_000, window.getCount());
+        assertEquals(total, window.getSum());
+        checkQuantile(values, window, 0.01);
+        checkQuantile(values, window, 0.5);
+        checkQuantile(values, window, 0.95);
+        checkQuantile(values, window, 0.99);
+        checkQuantile(values, window, 1);
+
+        window.clear();
+        assertEquals(0, window.quantile(0.5));
+    }
+
+    @Test
+    void collapsedRange() {
+        QuantileSketch sketch = new QuantileSketch();
+        // Values too far apart for the bins: the lowest ones are collapsed
+        sketch.add(1);
+        sketch.add(Long.MAX_VALUE / 2);
+        sketch.add(Long.MAX_VALUE / 2);
+        assertEquals(Long.MAX_VALUE / 2, sketch.quantile(1),
+                Long.MAX_VALUE / 2 * QuantileSketch.RELATIVE_ACCURACY);
+        assertTrue(sketch.quantile(0) < sketch.quantile(1));
+    }
+}
@@ -0,0 +1,64 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.charset.StandardCharsets;
+
+class RequestCacheTest {
+
+    private static TrafficLog fill(RequestCache cache, String field) {
+        byte[] bytes = ("x," + field + ",y").getBytes(StandardCharsets.UTF_8);
+        TrafficLog log = new TrafficLog();
+        cache.fill(log, bytes, 2, bytes.length - 2);
+        return log;
+    }
+
+    @Test
+    void execution() {
+        RequestCache cache = new RequestCache();
+        TrafficLog first = fill(cache, "\"GET /api/user HTTP/1.0\"");
+        TrafficLog second = fill(cache, "\"GET /api/user HTTP/1.0\"");
+        assertEquals("GET /api/user HTTP/1.0", first.getRequest());
+        assertTrue(first.getRequest() == second.getRequest());
+        assertEquals("/api", first.getSectionText());
+        assertEquals(Sections.id("/api"), second.getSection());
+        assertEquals(HttpVerb.Values.GET, second.getVerb());
+
+        // Escaped quotes decoded on a miss only
+        TrafficLog quoted = fill(cache, "\"POST /say/\"\"hi\"\" HTTP/1.0\"");
+        assertEquals("POST /say/\"hi\" HTTP/1.0", quoted.getRequest());
+        assertEquals("/say", quoted.getSectionText());
+        assertEquals(HttpVerb.Values.POST, quoted.getVerb());
+
+        TrafficLog text = new TrafficLog();
+        cache.fill(text, "DELETE /report HTTP/1.0");
+        assertEquals("/report", Sections.text(text.getSection()));
+        assertEquals(HttpVerb.Values.DELETE, text.getVerb());
+    }
+
+    @Test
+    void eviction() {
+        RequestCache cache = new RequestCache();
+        // More requests than slots, each one read twice in a row
+        for (int i = 0; i < 10000; i++) {
+            String request = "PUT /section" + i % 50 + "/" + i + " HTTP/1.0";
+            for (int repeat = 0; repeat < 2; repeat++) {
+                TrafficLog log = fill(cache, request);
+                assertEquals(request, log.getRequest());
+                assertEquals("/section" + i % 50, log.getSectionText());
+                assertEquals(HttpVerb.Values.PUT, log.getVerb());
+            }
+        }
+    }
+
+    @Test
+    void withoutCache() {
+        TrafficLog log = new TrafficLog();
+        log.setRequest("PATCH /api/user HTTP/1.0");
+        assertEquals(Sections.id("/api"), log.getSection());
+        assertEquals(HttpVerb.Values.PATCH, log.getVerb());
+        log.setRequest("-");
+        assertEquals("", log.getSectionText());
+        assertEquals(HttpVerb.Values.NONE, log.getVerb());
+    }
+}
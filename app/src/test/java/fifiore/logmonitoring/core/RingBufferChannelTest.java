@@ -0,0 +1,64 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+class RingBufferChannelTest {
+
+    private static final int MESSAGE_COUNT = 100_000;
+    // The spinning threads only run in turn on a single core
+    private static final int SPIN_MESSAGE_COUNT = 1_000;
+
+    private void produce(Pipe<Integer> pipe, int messageCount) {
+        for (int i = 0; i < messageCount; i++) {
+            pipe.push(i);
+        }
+        pipe.close();
+    }
+
+    @Test
+    void execution() {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            // Small capacity: the producer is often blocked by the consumer
+            Pipe<Integer> pipe = new RingBufferChannel<>(8, waitStrategy);
+            int messageCount =
+                    waitStrategy == WaitStrategy.SPIN ? SPIN_MESSAGE_COUNT : MESSAGE_COUNT;
+            CompletableFuture<Void> producer =
+                    CompletableFuture.runAsync(() -> produce(pipe, messageCount));
+
+            List<Integer> batch = new ArrayList<>();
+            int expected = 0;
+            int count = pipe.drainTo(batch, 5);
+            while (count >= 0) {
+                assertTrue(count > 0 && count <= 5);
+                assertEquals(count, batch.size());
+                for (int message : batch) {
+                    assertEquals(expected++, message);
+                }
+                batch.clear();
+                count = pipe.drainTo(batch, 5);
+            }
+            producer.join();
+
+            assertEquals(messageCount, expected);
+            assertEquals(Optional.empty(), pipe.read());
+        }
+    }
+
+    @Test
+    void read() {
+        Pipe<String> pipe = new RingBufferChannel<>(3, WaitStrategy.SPIN);
+        pipe.push("a");
+        pipe.push("b");
+        pipe.close();
+
+        assertEquals(Optional.of("a"), pipe.read());
+        assertEquals(Optional.of("b"), pipe.read());
+        assertEquals(Optional.empty(), pipe.read());
+        assertEquals(-1, pipe.drainTo(new ArrayList<>(), 10));
+    }
+}
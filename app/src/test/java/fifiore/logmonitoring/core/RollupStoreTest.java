@@ -0,0 +1,123 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class RollupStoreTest {
+
+    // Start of an hour partition
+    private static final long HOUR = 1549573200;
+
+    private static WindowsMetrics window(long start, int hits) {
+        WindowsMetrics metrics = new WindowsMetrics();
+        metrics.setStartDate(start);
+        metrics.setEndDate(start + 9);
+        metrics.setHitNB(hits);
+        metrics.getMostHitSections().add("/api");
+        metrics.setMostHitSectionCount(hits / 2);
+        metrics.getOperationCount()[HttpVerb.Values.GET.ordinal()] = hits;
+        metrics.setBytes(new BytesSummary(hits * 100L, 100, 150, 200));
+        metrics.setSuccessRate(90);
+        metrics.setLowestSuccessRateHost("10.0.0.1");
+        metrics.setLowestSuccessRate(50);
+        return metrics;
+    }
+
+    @Test
+    void record() {
+        WindowsMetrics metrics = window(HOUR, 10);
+        metrics.getMostHitSections().clear();
+        metrics.getTopSections().add(new SectionCount("/report", 7, 0));
+        metrics.getTopSections().add(new SectionCount("\u00e9".repeat(20), 5, 2));
+        metrics.setAmended(true);
+        metrics.setDistinctHostCount(42);
+        ByteBuffer buffer = ByteBuffer.allocate(RollupStore.RECORD_SIZE);
+        RollupStore.encode(metrics, buffer);
+        assertEquals(RollupStore.RECORD_SIZE, buffer.position());
+
+        buffer.flip();
+        WindowsMetrics decoded = RollupStore.decode(buffer);
+        assertEquals(HOUR + 9, decoded.getEndDate());
+        assertTrue(decoded.isAmended());
+        assertEquals(10, decoded.getOperationCount()[HttpVerb.Values.GET.ordinal()]);
+        assertEquals(1000, decoded.getBytes().getTotal());
+        assertEquals(42, decoded.getDistinctHostCount());
+        assertEquals("10.0.0.1", decoded.getLowestSuccessRateHost());
+        assertEquals(List.of("/report"), decoded.getMostHitSections());
+        assertEquals(7, decoded.getMostHitSectionCount());
+        // Truncated on a character boundary
+        SectionCount truncated = decoded.getTopSections().get(1);
+        assertEquals("\u00e9".repeat(15), truncated.getSection());
+        assertEquals(2, truncated.getError());
+    }
+
+    @Test
+    void rangeQuery() throws IOException {
+        Path directory = Files.createTempDirectory("rollup");
+        // 2 hour partitions with indexed blocks
+        try (RollupStore store =
+                new RollupStore(directory, MonitoringOptions.StorePartition.HOUR)) {
+            for (long start = HOUR; start < HOUR + 7200; start += 10) {
+                store.append(window(start, 20));
+            }
+            // Amended window of the first partition after the second one
+            WindowsMetrics amended = window(HOUR + 3590, 30);
+            amended.setAmended(true);
+            store.append(amended);
+        }
+        // Continued by another run
+        try (RollupStore store =
+                new RollupStore(directory, MonitoringOptions.StorePartition.HOUR)) {
+            store.append(window(HOUR + 7200, 40));
+        }
+        assertEquals(360 / RollupStore.INDEX_BLOCK * 16,
+                Files.size(directory.resolve(RollupStore.partitionName(HOUR, 3600)
+                        + ".index")));
+
+        List<WindowsMetrics> windows = RollupStore.windows(directory, HOUR + 3585, HOUR + 3605);
+        assertEquals(3, windows.size());
+        assertEquals(HOUR + 3580, windows.get(0).getStartDate());
+        assertEquals(30, windows.get(1).getHitNB());
+        assertTrue(windows.get(1).isAmended());
+        assertEquals(HOUR + 3600, windows.get(2).getStartDate());
+
+        // Across two indexed blocks, and within the first one
+        windows = RollupStore.windows(directory, HOUR + 1000, HOUR + 1300);
+        assertEquals(31, windows.size());
+        assertEquals(HOUR + 1000, windows.get(0).getStartDate());
+        assertEquals(HOUR + 1300, windows.get(30).getStartDate());
+        assertEquals(2, RollupStore.windows(directory, HOUR + 15, HOUR + 20).size());
+
+        assertEquals(721, RollupStore.windows(directory, Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertEquals(40, RollupStore.windows(directory, HOUR + 7200, HOUR + 7200).get(0)
+                .getHitNB());
+        assertTrue(RollupStore.windows(directory, HOUR + 8000, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void aggregate() {
+        WindowsMetrics first = window(HOUR, 10);
+        WindowsMetrics second = window(HOUR + 10, 30);
+        second.getMostHitSections().set(0, "/report");
+        second.setSuccessRate(70);
+        second.setLowestSuccessRateHost("10.0.0.2");
+        second.setLowestSuccessRate(20);
+
+        WindowsMetrics total = RollupQuery.aggregate(List.of(first, second));
+        assertEquals(HOUR, total.getStartDate());
+        assertEquals(HOUR + 19, total.getEndDate());
+        assertEquals(40, total.getHitNB());
+        assertEquals(40, total.getOperationCount()[HttpVerb.Values.GET.ordinal()]);
+        assertEquals(4000, total.getBytes().getTotal());
+        assertEquals(75, total.getSuccessRate(), 1e-9);
+        assertEquals("10.0.0.2", total.getLowestSuccessRateHost());
+        assertEquals(List.of("/report"), total.getMostHitSections());
+        assertEquals(2, total.getTopSections().size());
+        assertEquals(5, total.getTopSections().get(1).getCount());
+    }
+}
@@ -0,0 +1,84 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+class ShardedMetricsTrackingTest {
+
+    private final String[] verbs = {"GET", "POST", "PUT", "PATCH", "DELETE"};
+
+    private List<TrafficLog> generateLogs(int count) {
+        Random random = new Random(42);
+        List<TrafficLog> logs = new ArrayList<>();
+        long date = 1000;
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(10) == 0) {
+                date++;
+            } else if (random.nextInt(1000) == 0) {
+                date += random.nextInt(100);
+            }
+            TrafficLog log = new TrafficLog();
+            // Some logs are late, within the delay or not
+            log.setDate(random.nextInt(20) == 0 ? date - random.nextInt(8) : date);
+            log.setStatus(random.nextInt(5) == 0 ? 500 : 200);
+            log.setRequest(verbs[random.nextInt(verbs.length)] + " /section"
+                    + random.nextInt(12) + "/page HTTP/1.0");
+            log.setRemoteHost("10.0.0." + random.nextInt(40));
+            logs.add(log);
+        }
+        return logs;
+    }
+
+    private List<WindowsMetrics> readAll(Pipe<WindowsMetrics> outputPipe) {
+        List<WindowsMetrics> result = new ArrayList<>();
+        Optional<WindowsMetrics> metrics = outputPipe.read();
+        while (metrics.isPresent()) {
+            result.add(metrics.get());
+            metrics = outputPipe.read();
+        }
+        return result;
+    }
+
+    @Test
+    void execution() {
+        List<TrafficLog> logs = generateLogs(50_000);
+
+        MessageChannel<WindowsMetrics> expectedPipe = new MessageChannel<>();
+        MetricsTracking metricsTracking = new MetricsTracking(expectedPipe, 10, 4);
+        logs.forEach(metricsTracking::pushLog);
+        metricsTracking.finish();
+        expectedPipe.close();
+        List<WindowsMetrics> expected = readAll(expectedPipe);
+
+        MessageChannel<WindowsMetrics> outputPipe = new MessageChannel<>();
+        MetricsTracking sharded =
+                new ShardedMetricsTracking(outputPipe, 10, 4, 0, MetricsAggregate::new, 3,
+                        WaitStrategy.YIELD);
+        logs.forEach(sharded::pushLog);
+        sharded.finish();
+        outputPipe.close();
+        List<WindowsMetrics> result = readAll(outputPipe);
+
+        assertTrue(expected.size() > 100);
+        assertEquals(expected.size(), result.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStartDate(), result.get(i).getStartDate());
+            assertEquals(expected.get(i).getHitNB(), result.get(i).getHitNB());
+            assertEquals(expected.get(i).getMostHitSections(), result.get(i).getMostHitSections());
+            assertEquals(expected.get(i).getMostHitSectionCount(),
+                    result.get(i).getMostHitSectionCount());
+            assertTrue(Arrays.equals(expected.get(i).getOperationCount(),
+                    result.get(i).getOperationCount()));
+            assertEquals(expected.get(i).getSuccessRate(), result.get(i).getSuccessRate());
+            assertEquals(expected.get(i).getLowestSuccessRateHost(),
+                    result.get(i).getLowestSuccessRateHost());
+            assertEquals(expected.get(i).getLowestSuccessRate(),
+                    result.get(i).getLowestSuccessRate());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package fifiore.logmonitoring.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+class SpaceSavingSketchTest {
+
+    // A few heavy sections among many sections hit once or twice
+    private List<String> generateSections(Random random, int count) {
+        List<String> sections = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int draw = random.nextInt(100);
+            if (draw < 30) {
+                sections.add("/heavy" + draw % 5);
+            } else {
+                sections.add("/crawl" + random.nextInt(1_000_000));
+            }
+        }
+        return sections;
+    }
+
+    private void checkBounds(List<SectionCount> top, Map<String, Integer> exactCounts) {
+        for (SectionCount section : top) {
+            long exact = exactCounts.getOrDefault(section.getSection(), 0);
+            assertTrue(section.getCount() >= exact);
+            assertTrue(section.getCount() - section.getError() <= exact);
+        }
+    }
+
+    @Test
+    void exactBelowCapacity() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+        String[] sections = {"/a", "/b", "/a", "/c", "/a", "/b"};
+        for (String section : sections) {
+            sketch.add(section, 100);
+        }
+        List<SectionCount> top = sketch.top(2);
+        assertEquals(2, top.size());
+        assertEquals("/a", top.get(0).getSection());
+        assertEquals(3, top.get(0).getCount());
+        assertEquals(0, top.get(0).getError());
+        assertEquals("/b", top.get(1).getSection());
+        assertEquals(2, top.get(1).getCount());
+        assertEquals(3, sketch.bytes("/a").getCount());
+        assertEquals(300, sketch.bytes("/a").getSum());
+        assertNull(sketch.bytes("/d"));
+    }
+
+    @Test
+    void heavyHitters() {
+        Random random = new Random(42);
+        Map<String, Integer> exactCounts = new HashMap<>();
+        // Per-second summaries merged into a window, as in the metrics buckets
+        SpaceSavingSketch window = new SpaceSavingSketch(50);
+        for (int second = 0; second < 10; second++) {
+            SpaceSavingSketch bucket = new SpaceSavingSketch(50);
+            Map<String, Integer> bucketCounts = new HashMap<>();
+            for (String section : generateSections(random, 5_000)) {
+                bucket.add(section, section.length());
+                bucketCounts.merge(section, 1, Integer::sum);
+                exactCounts.merge(section, 1, Integer::sum);
+            }
+            checkBounds(bucket.top(50), bucketCounts);
+            window.merge(bucket);
+        }
+
+        List<SectionCount> top = window.top(5);
+        assertEquals(5, top.size());
+        for (SectionCount section : top) {
+            assertTrue(section.getSection().startsWith("/heavy"));
+        }
+        checkBounds(window.top(50), exactCounts);
+
+        window.clear();
+        assertTrue(window.top(5).isEmpty());
+    }
+}